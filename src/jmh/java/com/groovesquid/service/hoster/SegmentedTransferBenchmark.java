@@ -0,0 +1,142 @@
+package com.groovesquid.service.hoster;
+
+import com.groovesquid.Groovesquid;
+import com.groovesquid.model.Artist;
+import com.groovesquid.model.FileStore;
+import com.groovesquid.model.Song;
+import com.groovesquid.model.Track;
+import com.groovesquid.service.DownloadService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads a file of LENGTH bytes with Hoster.download from a local stand-in for a CDN that sends each connection
+ * at most BYTES_PER_SECOND, over one connection when the server does not send ranges and in segments when it does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SegmentedTransferBenchmark {
+
+    private static final int LENGTH = 16 * 1024 * 1024;
+    private static final int BYTES_PER_SECOND = 16 * 1024 * 1024;
+    private static final int BLOCK = 64 * 1024;
+
+    @Param({"false", "true"})
+    public boolean acceptRanges;
+
+    private HttpServer server;
+    private byte[] body;
+    private String url;
+    private File downloadDir;
+    private DownloadService downloadService;
+    private Hoster hoster;
+    private int downloads;
+
+    @Setup
+    public void setUp() throws IOException {
+        Groovesquid.loadConfig();
+        body = new byte[LENGTH];
+        new Random(1).nextBytes(body);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/track.mp3";
+        downloadDir = File.createTempFile("segments", "");
+        downloadDir.delete();
+        downloadDir.mkdirs();
+        downloadService = new DownloadService();
+        hoster = new Hoster();
+        hoster.setName("local");
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        for (File file : downloadDir.listFiles()) {
+            file.delete();
+        }
+        downloadDir.delete();
+    }
+
+    @Benchmark
+    public long download() throws IOException {
+        String fileName = "track" + downloads++ + ".mp3";
+        Track track = new Track(new Song(null, "track", new ArrayList<Artist>()), new FileStore(fileName, downloadDir));
+        track.setDownloadUrl(url);
+        hoster.download(track, downloadService.new DownloadTask(track, null, null));
+        File file = new File(downloadDir, fileName);
+        long length = file.length();
+        if (length != LENGTH) {
+            throw new IllegalStateException(file + " has " + length + " bytes");
+        }
+        file.delete();
+        return length;
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        int start = 0;
+        int end = LENGTH;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (acceptRanges) {
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        }
+        if (acceptRanges && range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring(6).split("-");
+            start = Integer.parseInt(bounds[0]);
+            end = bounds.length > 1 ? Integer.parseInt(bounds[1]) + 1 : LENGTH;
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + LENGTH);
+            exchange.sendResponseHeaders(206, end - start);
+        } else {
+            exchange.sendResponseHeaders(200, LENGTH);
+        }
+        OutputStream outputStream = exchange.getResponseBody();
+        try {
+            long begin = System.nanoTime();
+            for (int position = start; position < end; position += BLOCK) {
+                outputStream.write(body, position, Math.min(BLOCK, end - position));
+                long due = begin + (long) (position + BLOCK - start) * 1000000000L / BYTES_PER_SECOND;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ignore) {
+            // the client aborts the first response after the first segment
+        } finally {
+            exchange.close();
+        }
+    }
+}
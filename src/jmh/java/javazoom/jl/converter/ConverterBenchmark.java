@@ -0,0 +1,132 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.converter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.MpegFixtures;
+import javazoom.jl.decoder.Obuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Converts a file of FRAMES frames to a wave file, one file per
+ * operation, with 1 to 8 threads. The speed-up of the parallel
+ * conversion is the score of a thread count relative to that of
+ * 1 thread; it is bounded by the number of cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConverterBenchmark
+{
+	static private final int	FRAMES = 4000;
+
+	@Param({
+		"mpeg1-l3-stereo-cbr",
+		"mpeg1-l2-joint-cbr"
+	})
+	public String	fixture;
+
+	@Param({"1", "2", "4", "8"})
+	public int		threads;
+
+	private File		source;
+	private File		dest;
+	private Converter	converter;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		source = File.createTempFile("converter", ".mp3");
+		dest = File.createTempFile("converter", ".wav");
+		FileOutputStream out = new FileOutputStream(source);
+		try
+		{
+			out.write(MpegFixtures.generate(fixture, FRAMES));
+		}
+		finally
+		{
+			out.close();
+		}
+		converter = new Converter();
+		converter.setThreads(threads);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		source.delete();
+		dest.delete();
+	}
+
+	@Benchmark
+	public long convert() throws JavaLayerException
+	{
+		converter.convert(source.getPath(), dest.getPath(), new QuietListener(), null);
+		return dest.length();
+	}
+
+	/**
+	 * Ignores progress, so the benchmark does not measure printing.
+	 */
+	static private class QuietListener implements Converter.ProgressListener
+	{
+		public void converterUpdate(int updateID, int param1, int param2)
+		{
+		}
+
+		public void parsedFrame(int frameNo, Header header)
+		{
+		}
+
+		public void readFrame(int frameNo, Header header)
+		{
+		}
+
+		public void decodedFrame(int frameNo, Header header, Obuffer o)
+		{
+		}
+
+		public boolean converterException(Throwable t)
+		{
+			return false;
+		}
+	}
+}
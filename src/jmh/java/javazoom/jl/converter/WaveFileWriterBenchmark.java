@@ -0,0 +1,102 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.converter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Writes a long wave file, FRAMES stereo frames of 1152 samples as
+ * WaveFileObuffer does, one file per operation: with WaveFile,
+ * which makes a write and allocates a byte array for every frame,
+ * and with WaveFileWriter. gc.alloc.rate.norm is the number of bytes
+ * allocated per file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WaveFileWriterBenchmark
+{
+	/**
+	 * About 4 minutes of audio at 44.1 kHz.
+	 */
+	static private final int	FRAMES = 10000;
+
+	@Param({"WaveFile", "WaveFileWriter"})
+	public String	writer;
+
+	private File		dest;
+	private short[]		frame;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		dest = File.createTempFile("writer", ".wav");
+		frame = new short[2 * 1152];
+		Random random = new Random(1);
+		for (int i = 0; i < frame.length; i++)
+			frame[i] = (short)random.nextInt();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		dest.delete();
+	}
+
+	@Benchmark
+	public long write() throws IOException
+	{
+		if ("WaveFile".equals(writer))
+		{
+			WaveFile out = new WaveFile();
+			out.OpenForWrite(dest.getPath(), 44100, (short)16, (short)2);
+			for (int i = 0; i < FRAMES; i++)
+				out.WriteData(frame, frame.length);
+			out.Close();
+		}
+		else
+		{
+			WaveFileWriter out = new WaveFileWriter(dest.getPath(), 44100, 2);
+			for (int i = 0; i < FRAMES; i++)
+				out.write(frame, 0, frame.length);
+			out.close();
+		}
+		return dest.length();
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Frame syncing and unpacking in Bitstream.readFrame(), one frame per
+ * operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitstreamBenchmark
+{
+	@Param({
+		"mpeg1-l1-stereo-cbr",
+		"mpeg1-l2-joint-cbr",
+		"mpeg1-l3-stereo-cbr",
+		"mpeg1-l3-joint-vbr",
+		"mpeg2-l3-joint-cbr",
+		"mpeg25-l3-mono-cbr"
+	})
+	public String	fixture;
+
+	private Bitstream	bitstream;
+
+	@Setup
+	public void setUp()
+	{
+		bitstream = new Bitstream(new LoopingInputStream(MpegFixtures.generate(fixture)));
+	}
+
+	@Benchmark
+	public Header readFrame() throws BitstreamException
+	{
+		Header header = bitstream.readFrame();
+		bitstream.closeFrame();
+		return header;
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.concurrent.TimeUnit;
+
+import javazoom.jl.player.JavaSoundAudioDevice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decodes a frame into the bytes written to the audio line, one frame
+ * per operation: into a SampleBuffer converted by
+ * JavaSoundAudioDevice.toByteArray(), as before, or directly into a
+ * ByteSampleBuffer. At 44.1 kHz a second of playback is 38.3 frames,
+ * so the CPU time per second of playback is 38.3 times the time per
+ * frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteSampleBufferBenchmark
+{
+	@Param({
+		"mpeg1-l3-stereo-cbr",
+		"mpeg1-l2-joint-cbr"
+	})
+	public String	fixture;
+
+	@Param({"SampleBuffer", "ByteSampleBuffer"})
+	public String	output;
+
+	private Bitstream	bitstream;
+	private Decoder		decoder;
+	private Device		device;
+
+	@Setup
+	public void setUp() throws JavaLayerException
+	{
+		bitstream = new Bitstream(new LoopingInputStream(MpegFixtures.generate(fixture)));
+		decoder = new Decoder();
+		device = new Device();
+		if ("ByteSampleBuffer".equals(output))
+		{
+			Header header = bitstream.readFrame();
+			int channels = (header.mode() == Header.SINGLE_CHANNEL) ? 1 : 2;
+			decoder.setOutputBuffer(new ByteSampleBuffer(header.frequency(), channels, false));
+			decoder.decodeFrame(header, bitstream);
+			bitstream.closeFrame();
+		}
+	}
+
+	@Benchmark
+	public byte[] decodeFrame() throws JavaLayerException
+	{
+		Header header = bitstream.readFrame();
+		Obuffer out = decoder.decodeFrame(header, bitstream);
+		bitstream.closeFrame();
+		if (out instanceof ByteSampleBuffer)
+			return ((ByteSampleBuffer)out).getBuffer();
+		SampleBuffer samples = (SampleBuffer)out;
+		return device.bytes(samples.getBuffer(), samples.getBufferLength());
+	}
+
+	/**
+	 * Gives access to the conversion of JavaSoundAudioDevice.
+	 */
+	static private class Device extends JavaSoundAudioDevice
+	{
+		byte[] bytes(short[] samples, int length)
+		{
+			return toByteArray(samples, 0, length);
+		}
+	}
+}
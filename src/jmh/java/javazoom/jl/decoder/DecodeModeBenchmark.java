@@ -0,0 +1,84 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decodes a frame per operation in each of the reduced-cost modes:
+ * the full output, both channels downmixed to mono, half and quarter
+ * sample rate output, and mono at a quarter of the sample rate. The
+ * saving of a mode is its time per frame against that of the full
+ * output.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeModeBenchmark
+{
+	@Param({
+		"mpeg1-l3-stereo-cbr",
+		"mpeg1-l2-joint-cbr"
+	})
+	public String	fixture;
+
+	@Param({"full", "downmix", "2to1", "4to1", "downmix-4to1"})
+	public String	mode;
+
+	private Bitstream	bitstream;
+	private Decoder		decoder;
+
+	@Setup
+	public void setUp()
+	{
+		Decoder.Params params = new Decoder.Params();
+		if (mode.startsWith("downmix"))
+			params.setOutputChannels(OutputChannels.DOWNMIX);
+		if (mode.endsWith("2to1"))
+			params.setDownSample(2);
+		else if (mode.endsWith("4to1"))
+			params.setDownSample(4);
+		bitstream = new Bitstream(new LoopingInputStream(MpegFixtures.generate(fixture)));
+		decoder = new Decoder(params);
+	}
+
+	@Benchmark
+	public Obuffer decodeFrame() throws JavaLayerException
+	{
+		Header header = bitstream.readFrame();
+		Obuffer out = decoder.decodeFrame(header, bitstream);
+		bitstream.closeFrame();
+		return out;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decodes STREAMS short streams per operation on 1 to 8 threads, with
+ * decoders taken from a DecoderPool or created for each stream. The
+ * speed-up is the score of a thread count relative to that of 1
+ * thread; it is bounded by the number of cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoderPoolBenchmark
+{
+	static private final int	STREAMS = 64;
+	static private final int	FRAMES = 20;
+
+	@Param({
+		"mpeg1-l3-stereo-cbr",
+		"mpeg1-l2-joint-cbr"
+	})
+	public String	fixture;
+
+	@Param({"1", "2", "4", "8"})
+	public int		threads;
+
+	@Param({"pool", "new"})
+	public String	decoders;
+
+	private byte[]			data;
+	private DecoderPool		pool;
+	private ExecutorService	executor;
+
+	@Setup
+	public void setUp()
+	{
+		data = MpegFixtures.generate(fixture, FRAMES);
+		pool = new DecoderPool(null, threads);
+		executor = Executors.newFixedThreadPool(threads);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		executor.shutdown();
+	}
+
+	@Benchmark
+	public long decodeStreams() throws InterruptedException, ExecutionException
+	{
+		List<Future<Long>> results = new ArrayList<Future<Long>>(STREAMS);
+		for (int i = 0; i < STREAMS; i++)
+		{
+			results.add(executor.submit(new Callable<Long>()
+			{
+				public Long call() throws JavaLayerException
+				{
+					return Long.valueOf(decodeStream());
+				}
+			}));
+		}
+		long samples = 0;
+		for (int i = 0; i < STREAMS; i++)
+			samples += results.get(i).get().longValue();
+		return samples;
+	}
+
+	private long decodeStream() throws JavaLayerException
+	{
+		boolean pooled = "pool".equals(decoders);
+		Decoder decoder = pooled ? pool.acquire() : new Decoder();
+		Bitstream stream = MpegFixtures.open(data);
+		long samples = 0;
+		Header header;
+		while ((header = stream.readFrame()) != null)
+		{
+			samples += ((SampleBuffer)decoder.decodeFrame(header, stream)).getBufferLength();
+			stream.closeFrame();
+		}
+		stream.close();
+		if (pooled)
+			pool.release(decoder);
+		return samples;
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+package javazoom.jl.decoder;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scanning a whole file for frame count and duration, one file per
+ * operation, with FrameScanner on a mapped file and on a stream, and
+ * for comparison by reading every frame through Bitstream. The file
+ * holds 20000 frames (about 4 to 8 minutes of audio); divide its size
+ * by the average time to get bytes/sec.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameScannerBenchmark
+{
+	@Param({
+		"mpeg1-l2-joint-cbr",
+		"mpeg1-l3-stereo-cbr",
+		"mpeg1-l3-joint-vbr",
+		"mpeg25-l3-mono-cbr"
+	})
+	public String	fixture;
+
+	private final FrameScanner	scanner = new FrameScanner();
+	private File				file;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		file = File.createTempFile("scan", ".mp3");
+		FileOutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(MpegFixtures.generate(fixture, 20000));
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		file.delete();
+	}
+
+	@Benchmark
+	public int scanMapped() throws IOException
+	{
+		MappedFileSource source = new MappedFileSource(file);
+		try
+		{
+			scanner.scan(source);
+			return scanner.frames();
+		}
+		finally
+		{
+			source.close();
+		}
+	}
+
+	@Benchmark
+	public int scanStream() throws IOException
+	{
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			scanner.scan(in);
+			return scanner.frames();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	@Benchmark
+	public int readFrames() throws IOException, BitstreamException
+	{
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try
+		{
+			Bitstream bitstream = new Bitstream(in);
+			int frames = 0;
+			while (bitstream.readFrame() != null)
+			{
+				bitstream.closeFrame();
+				frames++;
+			}
+			return frames;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
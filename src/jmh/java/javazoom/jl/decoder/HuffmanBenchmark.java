@@ -0,0 +1,92 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Layer III Huffman decoding in huffcodetab.huffman_decoder(), one
+ * codeword per operation, over random reservoir contents. The
+ * tree benchmark walks the decoder tree bit by bit instead of
+ * using the lookup tables, for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HuffmanBenchmark
+{
+	/** Table number; 32 and 33 are the count1 quadruple tables. */
+	@Param({"1", "7", "13", "15", "16", "24", "31", "32", "33"})
+	public int		table;
+
+	private final int[]	x = new int[1];
+	private final int[]	y = new int[1];
+	private final int[]	v = new int[1];
+	private final int[]	w = new int[1];
+	private huffcodetab	h;
+	private BitReserve	br;
+
+	@Setup
+	public void setUp()
+	{
+		huffcodetab.inithuff();
+		h = huffcodetab.ht[table];
+	}
+
+	@Setup(Level.Iteration)
+	public void fillReserve()
+	{
+		// the reserve is circular, so a full buffer can be read forever
+		Random random = new Random(42);
+		br = new BitReserve();
+		for (int i = 0; i < 4096; i++)
+			br.hputbuf(random.nextInt(256));
+	}
+
+	@Benchmark
+	public int huffman_decoder()
+	{
+		huffcodetab.huffman_decoder(h, x, y, v, w, br);
+		return x[0] + y[0] + v[0] + w[0];
+	}
+
+	@Benchmark
+	public int huffman_decoder_tree()
+	{
+		huffcodetab.huffman_decoder_tree(h, x, y, v, w, br);
+		return x[0] + y[0] + v[0] + w[0];
+	}
+}
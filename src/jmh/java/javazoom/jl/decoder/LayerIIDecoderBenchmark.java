@@ -0,0 +1,85 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * LayerIIDecoder.decodeFrame() driven directly, without the Decoder
+ * front end, one frame per operation. Run with the GC profiler (the
+ * jmh task adds it): gc.alloc.rate.norm is the number of bytes
+ * allocated per frame, which should be about 0 after warm-up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayerIIDecoderBenchmark
+{
+	@Param({
+		"mpeg1-l2-joint-cbr",
+		"mpeg1-l2-mono-vbr",
+		"mpeg2-l2-dual-cbr"
+	})
+	public String	fixture;
+
+	private Bitstream		bitstream;
+	private SampleBuffer	buffer;
+	private LayerIIDecoder	decoder;
+
+	@Setup
+	public void setUp() throws BitstreamException
+	{
+		bitstream = new Bitstream(new LoopingInputStream(MpegFixtures.generate(fixture)));
+		Header header = bitstream.readFrame();
+		int channels = (header.mode() == Header.SINGLE_CHANNEL) ? 1 : 2;
+		buffer = new SampleBuffer(header.frequency(), channels);
+		SynthesisFilter filter1 = new SynthesisFilter(0, 32700.0f, null);
+		SynthesisFilter filter2 = (channels == 2) ? new SynthesisFilter(1, 32700.0f, null) : null;
+		decoder = new LayerIIDecoder();
+		decoder.create(bitstream, header, filter1, filter2, buffer,
+				OutputChannels.BOTH_CHANNELS);
+		bitstream.closeFrame();
+	}
+
+	@Benchmark
+	public SampleBuffer decodeFrame() throws BitstreamException
+	{
+		bitstream.readFrame();
+		buffer.clear_buffer();
+		decoder.decodeFrame();
+		bitstream.closeFrame();
+		return buffer;
+	}
+}
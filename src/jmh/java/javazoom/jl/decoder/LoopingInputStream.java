@@ -0,0 +1,57 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.InputStream;
+
+/**
+ * Replays a fixture endlessly, so a benchmark can read one frame per
+ * operation without ever hitting the end of the stream.
+ */
+final class LoopingInputStream extends InputStream
+{
+	private final byte[]	data;
+	private int				pos;
+
+	LoopingInputStream(byte[] data)
+	{
+		this.data = data;
+	}
+
+	public int read()
+	{
+		int b = data[pos++] & 0xFF;
+		if (pos == data.length) pos = 0;
+		return b;
+	}
+
+	public int read(byte[] b, int off, int len)
+	{
+		int n = Math.min(len, data.length - pos);
+		System.arraycopy(data, pos, b, off, n);
+		pos += n;
+		if (pos == data.length) pos = 0;
+		return n;
+	}
+
+	public int available()
+	{
+		return data.length - pos;
+	}
+}
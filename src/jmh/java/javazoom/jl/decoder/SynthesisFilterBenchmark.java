@@ -0,0 +1,88 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Polyphase synthesis in SynthesisFilter.calculate_pcm_samples().
+ * One operation synthesizes one channel of a Layer II/III frame,
+ * i.e. 36 blocks of 32 subband samples. The downSample parameter
+ * selects the output at the full, half or quarter sample rate, and
+ * the vectors parameter the windowing with the vector API, which
+ * needs Java 17 and the jdk.incubator.vector module.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SynthesisFilterBenchmark
+{
+	private static final int	BLOCKS = 36;
+
+	@Param({"1", "2", "4"})
+	public int			downSample;
+
+	@Param({"false", "true"})
+	public boolean		vectors;
+
+	private final float[][]	samples = new float[BLOCKS][32];
+	private SynthesisFilter		filter;
+	private SampleBuffer		buffer;
+
+	@Setup
+	public void setUp()
+	{
+		Random random = new Random(42);
+		for (int i = 0; i < BLOCKS; i++)
+			for (int sb = 0; sb < 32; sb++)
+				samples[i][sb] = (random.nextFloat() * 2.0f - 1.0f) / (sb + 1);
+		filter = new SynthesisFilter(0, 32700.0f, null);
+		filter.set_down_sample(downSample >>> 1);
+		filter.set_vectors(vectors);
+		buffer = new SampleBuffer(44100, 1);
+	}
+
+	@Benchmark
+	public SampleBuffer calculate_pcm_samples()
+	{
+		buffer.clear_buffer();
+		for (int i = 0; i < BLOCKS; i++)
+		{
+			filter.input_samples(samples[i]);
+			filter.calculate_pcm_samples(buffer);
+		}
+		return buffer;
+	}
+}
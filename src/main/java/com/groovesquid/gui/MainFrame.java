@@ -1100,6 +1100,8 @@ public class MainFrame extends JFrame {
 
     private final PlaybackListener playbackListener = new PlaybackListener() {
         public void playbackStarted(Track track) {
+            // also for a track following the previous one without a gap, which was downloaded ahead
+            updateCurrentlyPlayingTrack(track);
             playPauseButton.setIcon(style.getPauseIcon());
             playPauseButton.setToolTipText("Pause");
         }
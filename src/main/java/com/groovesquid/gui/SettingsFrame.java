@@ -22,6 +22,7 @@ import java.util.Locale;
 public class SettingsFrame extends JFrame {
 
     private String originalDownloadDirectory, originalMaxParallelDownloads, originalFileNameScheme, originalProxyHost, originalProxyPort;
+    private String originalMaxHosterLookupsPerSecond, originalMaxHostRequestsPerSecond, originalMaxDownloadRate;
     private boolean originalAutocompleteEnabled;
     private int originalDownloadComplete;
     private Locale originalLocale;
@@ -44,6 +45,12 @@ public class SettingsFrame extends JFrame {
     private JLabel proxyHostLabel;
     private JComboBox languageComboBox;
     private JSpinner maxParallelDownloadsSpinner;
+    private JLabel maxHosterLookupsPerSecondLabel;
+    private JSpinner maxHosterLookupsPerSecondSpinner;
+    private JLabel maxHostRequestsPerSecondLabel;
+    private JSpinner maxHostRequestsPerSecondSpinner;
+    private JLabel maxDownloadRateLabel;
+    private JSpinner maxDownloadRateSpinner;
     private JTextField proxyHostTextField;
     private JTextField proxyPortTextField;
     private JButton resetOriginalSettingsButton;
@@ -87,6 +94,24 @@ public class SettingsFrame extends JFrame {
         maxParallelDownloadsSpinner.setModel(new SpinnerNumberModel(Integer.valueOf(10), Integer.valueOf(1), null, Integer.valueOf(1)));
         maxParallelDownloadsSpinner.setValue(10);
 
+        maxHosterLookupsPerSecondLabel = new JLabel(I18n.getLocaleString("MAX_HOSTER_LOOKUPS_PER_SECOND"));
+        maxHosterLookupsPerSecondLabel.setFont(new Font(maxHosterLookupsPerSecondLabel.getFont().getName(), Font.BOLD, 11));
+
+        maxHosterLookupsPerSecondSpinner = new JSpinner();
+        maxHosterLookupsPerSecondSpinner.setModel(new SpinnerNumberModel(Integer.valueOf(1), Integer.valueOf(0), null, Integer.valueOf(1)));
+
+        maxHostRequestsPerSecondLabel = new JLabel(I18n.getLocaleString("MAX_HOST_REQUESTS_PER_SECOND"));
+        maxHostRequestsPerSecondLabel.setFont(new Font(maxHostRequestsPerSecondLabel.getFont().getName(), Font.BOLD, 11));
+
+        maxHostRequestsPerSecondSpinner = new JSpinner();
+        maxHostRequestsPerSecondSpinner.setModel(new SpinnerNumberModel(Integer.valueOf(10), Integer.valueOf(0), null, Integer.valueOf(1)));
+
+        maxDownloadRateLabel = new JLabel(I18n.getLocaleString("MAX_DOWNLOAD_RATE"));
+        maxDownloadRateLabel.setFont(new Font(maxDownloadRateLabel.getFont().getName(), Font.BOLD, 11));
+
+        maxDownloadRateSpinner = new JSpinner();
+        maxDownloadRateSpinner.setModel(new SpinnerNumberModel(Integer.valueOf(0), Integer.valueOf(0), null, Integer.valueOf(100)));
+
         saveSettingsButton = new JButton(I18n.getLocaleString("SAVE_AND_CLOSE"));
         saveSettingsButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent evt) {
@@ -226,6 +251,9 @@ public class SettingsFrame extends JFrame {
                                     .add(languageLabel, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                                     .add(fileExistsLabel, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                                     .add(maxParallelDownloadsLabel, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                                    .add(maxHosterLookupsPerSecondLabel, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                                    .add(maxHostRequestsPerSecondLabel, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                                    .add(maxDownloadRateLabel, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                                     .add(filenameSchemeLabel, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                                     .add(downloadDirectoryLabel, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                                     .add(searchAutocompleteLabel, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
@@ -245,6 +273,9 @@ public class SettingsFrame extends JFrame {
                                             .add(downloadCompletedComboBox, 0, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                                             .add(searchAutocompleteCheckBox)
                                             .add(maxParallelDownloadsSpinner, GroupLayout.PREFERRED_SIZE, 60, GroupLayout.PREFERRED_SIZE)
+                                            .add(maxHosterLookupsPerSecondSpinner, GroupLayout.PREFERRED_SIZE, 60, GroupLayout.PREFERRED_SIZE)
+                                            .add(maxHostRequestsPerSecondSpinner, GroupLayout.PREFERRED_SIZE, 60, GroupLayout.PREFERRED_SIZE)
+                                            .add(maxDownloadRateSpinner, GroupLayout.PREFERRED_SIZE, 80, GroupLayout.PREFERRED_SIZE)
                                             .add(fileExistsComboBox, 0, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                                             .add(languageComboBox, 0, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                                     .add(proxyHostTextField)
@@ -264,6 +295,18 @@ public class SettingsFrame extends JFrame {
                     .add(layout.createParallelGroup(GroupLayout.LEADING, false)
                             .add(maxParallelDownloadsSpinner)
                             .add(maxParallelDownloadsLabel, GroupLayout.PREFERRED_SIZE, 20, GroupLayout.PREFERRED_SIZE))
+                    .addPreferredGap(LayoutStyle.RELATED)
+                    .add(layout.createParallelGroup(GroupLayout.LEADING, false)
+                            .add(maxHosterLookupsPerSecondSpinner)
+                            .add(maxHosterLookupsPerSecondLabel, GroupLayout.PREFERRED_SIZE, 20, GroupLayout.PREFERRED_SIZE))
+                    .addPreferredGap(LayoutStyle.RELATED)
+                    .add(layout.createParallelGroup(GroupLayout.LEADING, false)
+                            .add(maxHostRequestsPerSecondSpinner)
+                            .add(maxHostRequestsPerSecondLabel, GroupLayout.PREFERRED_SIZE, 20, GroupLayout.PREFERRED_SIZE))
+                    .addPreferredGap(LayoutStyle.RELATED)
+                    .add(layout.createParallelGroup(GroupLayout.LEADING, false)
+                            .add(maxDownloadRateSpinner)
+                            .add(maxDownloadRateLabel, GroupLayout.PREFERRED_SIZE, 20, GroupLayout.PREFERRED_SIZE))
                     .add(18, 18, 18)
                     .add(layout.createParallelGroup(GroupLayout.BASELINE)
                             .add(filenameSchemeLabel, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
@@ -301,7 +344,7 @@ public class SettingsFrame extends JFrame {
                     .addContainerGap())
         );
 
-        setMinimumSize(new Dimension(700, 620));
+        setMinimumSize(new Dimension(700, 720));
 
         pack();
     }
@@ -350,6 +393,9 @@ public class SettingsFrame extends JFrame {
         if(checkSettings()) {
             Groovesquid.getConfig().setDownloadDirectory(downloadDirectoryTextField.getText());
             Groovesquid.getConfig().setMaxParallelDownloads((Integer) (maxParallelDownloadsSpinner.getValue()));
+            Groovesquid.getConfig().setMaxHosterLookupsPerSecond((Integer) (maxHosterLookupsPerSecondSpinner.getValue()));
+            Groovesquid.getConfig().setMaxHostRequestsPerSecond((Integer) (maxHostRequestsPerSecondSpinner.getValue()));
+            Groovesquid.getConfig().setMaxDownloadRate((Integer) (maxDownloadRateSpinner.getValue()));
             Groovesquid.getConfig().setFileNameScheme(fileNameSchemeTextField.getText());
             Groovesquid.getConfig().setAutocompleteEnabled(searchAutocompleteCheckBox.isSelected());
             Groovesquid.getConfig().setDownloadComplete(downloadCompletedComboBox.getSelectedIndex());
@@ -379,7 +425,7 @@ public class SettingsFrame extends JFrame {
     }
     
     public boolean settingsChanged() {
-        return !originalDownloadDirectory.equals(downloadDirectoryTextField.getText()) || !originalMaxParallelDownloads.equals(maxParallelDownloadsSpinner.getValue().toString()) || !originalFileNameScheme.equals(fileNameSchemeTextField.getText()) || originalAutocompleteEnabled != searchAutocompleteCheckBox.isSelected() || originalDownloadComplete != downloadCompletedComboBox.getSelectedIndex() || originalLocale != languageComboBox.getSelectedItem() && !originalProxyHost.equals(proxyHostTextField.getText()) && !originalProxyPort.equals(proxyPortTextField.getText());
+        return !originalDownloadDirectory.equals(downloadDirectoryTextField.getText()) || !originalMaxParallelDownloads.equals(maxParallelDownloadsSpinner.getValue().toString()) || !originalMaxHosterLookupsPerSecond.equals(maxHosterLookupsPerSecondSpinner.getValue().toString()) || !originalMaxHostRequestsPerSecond.equals(maxHostRequestsPerSecondSpinner.getValue().toString()) || !originalMaxDownloadRate.equals(maxDownloadRateSpinner.getValue().toString()) || !originalFileNameScheme.equals(fileNameSchemeTextField.getText()) || originalAutocompleteEnabled != searchAutocompleteCheckBox.isSelected() || originalDownloadComplete != downloadCompletedComboBox.getSelectedIndex() || originalLocale != languageComboBox.getSelectedItem() && !originalProxyHost.equals(proxyHostTextField.getText()) && !originalProxyPort.equals(proxyPortTextField.getText());
     }
     
     public boolean checkSettings() {
@@ -402,6 +448,9 @@ public class SettingsFrame extends JFrame {
     private void resetSettings() {
         downloadDirectoryTextField.setText(Groovesquid.getConfig().getDownloadDirectory());
         maxParallelDownloadsSpinner.setValue(Groovesquid.getConfig().getMaxParallelDownloads());
+        maxHosterLookupsPerSecondSpinner.setValue(Groovesquid.getConfig().getMaxHosterLookupsPerSecond());
+        maxHostRequestsPerSecondSpinner.setValue(Groovesquid.getConfig().getMaxHostRequestsPerSecond());
+        maxDownloadRateSpinner.setValue(Groovesquid.getConfig().getMaxDownloadRate());
         fileNameSchemeTextField.setText(Groovesquid.getConfig().getFileNameScheme());
         searchAutocompleteCheckBox.setSelected(Groovesquid.getConfig().getAutocompleteEnabled());
         
@@ -430,6 +479,9 @@ public class SettingsFrame extends JFrame {
     private void setOriginalSettings() {
         originalDownloadDirectory = downloadDirectoryTextField.getText();
         originalMaxParallelDownloads = maxParallelDownloadsSpinner.getValue().toString();
+        originalMaxHosterLookupsPerSecond = maxHosterLookupsPerSecondSpinner.getValue().toString();
+        originalMaxHostRequestsPerSecond = maxHostRequestsPerSecondSpinner.getValue().toString();
+        originalMaxDownloadRate = maxDownloadRateSpinner.getValue().toString();
         originalFileNameScheme = fileNameSchemeTextField.getText();
         originalAutocompleteEnabled = searchAutocompleteCheckBox.isSelected();
         originalDownloadComplete = downloadCompletedComboBox.getSelectedIndex();
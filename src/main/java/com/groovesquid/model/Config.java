@@ -65,6 +65,9 @@ public class Config {
     private String proxyHost, originalProxyHost;
     private Integer proxyPort, originalProxyPort;
     private String preferredHoster, originalPreferredHoster;
+    private int maxHosterLookupsPerSecond, originalMaxHosterLookupsPerSecond;
+    private int maxHostRequestsPerSecond, originalMaxHostRequestsPerSecond;
+    private int maxDownloadRate, originalMaxDownloadRate;
 
     public Config() {
         originalVersion = Groovesquid.getVersion();
@@ -78,6 +81,10 @@ public class Config {
         originalLocale = Locale.getDefault().toString();
         originalProxyHost = null;
         originalProxyPort = null;
+        originalPreferredHoster = Hoster.DEEZER.name();
+        originalMaxHosterLookupsPerSecond = 1;
+        originalMaxHostRequestsPerSecond = 10;
+        originalMaxDownloadRate = 0;
         resetSettings();
     }
     
@@ -92,6 +99,10 @@ public class Config {
         locale = originalLocale;
         proxyHost = originalProxyHost;
         proxyPort = originalProxyPort;
+        preferredHoster = originalPreferredHoster;
+        maxHosterLookupsPerSecond = originalMaxHosterLookupsPerSecond;
+        maxHostRequestsPerSecond = originalMaxHostRequestsPerSecond;
+        maxDownloadRate = originalMaxDownloadRate;
     }
     
     public synchronized List<Track> getDownloads() {
@@ -174,4 +185,52 @@ public class Config {
     public void setProxyPort(Integer proxyPort) {
         this.proxyPort = proxyPort;
     }
+
+    /**
+     * @return the name of the {@link Hoster} to download from when several have a track, or null for none
+     */
+    public synchronized String getPreferredHoster() {
+        return preferredHoster;
+    }
+
+    public synchronized void setPreferredHoster(String preferredHoster) {
+        this.preferredHoster = preferredHoster;
+        Groovesquid.saveConfig();
+    }
+
+    /**
+     * @return the number of tracks that may be looked up at a hoster per second, or 0 for no limit
+     */
+    public synchronized int getMaxHosterLookupsPerSecond() {
+        return maxHosterLookupsPerSecond;
+    }
+
+    public synchronized void setMaxHosterLookupsPerSecond(int maxHosterLookupsPerSecond) {
+        this.maxHosterLookupsPerSecond = maxHosterLookupsPerSecond;
+        Groovesquid.saveConfig();
+    }
+
+    /**
+     * @return the number of requests that may be sent to a host per second, or 0 for no limit
+     */
+    public synchronized int getMaxHostRequestsPerSecond() {
+        return maxHostRequestsPerSecond;
+    }
+
+    public synchronized void setMaxHostRequestsPerSecond(int maxHostRequestsPerSecond) {
+        this.maxHostRequestsPerSecond = maxHostRequestsPerSecond;
+        Groovesquid.saveConfig();
+    }
+
+    /**
+     * @return the number of kilobytes that may be downloaded per second over all downloads, or 0 for no limit
+     */
+    public synchronized int getMaxDownloadRate() {
+        return maxDownloadRate;
+    }
+
+    public synchronized void setMaxDownloadRate(int maxDownloadRate) {
+        this.maxDownloadRate = maxDownloadRate;
+        Groovesquid.saveConfig();
+    }
 }
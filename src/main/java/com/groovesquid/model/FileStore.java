@@ -1,13 +1,16 @@
 package com.groovesquid.model;
 
+import com.google.gson.Gson;
 import com.groovesquid.Groovesquid;
 import com.groovesquid.util.Utils;
 import com.mpatric.mp3agic.*;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 
 public class FileStore implements Store {
 
@@ -23,7 +26,8 @@ public class FileStore implements Store {
         this.outputFile = new File(downloadDir, fileName);
         this.downloadDir = downloadDir;
 
-        if (downloadFile.exists()) {
+        // a partial download with a resume file is continued rather than downloaded anew
+        if (downloadFile.exists() && !getResumeFile().exists()) {
             if (Groovesquid.getConfig().getFileExists() == Config.FileExists.RENAME.ordinal()) {
                 int i = 1;
                 fileName = FilenameUtils.removeExtension(downloadFile.getAbsolutePath());
@@ -39,6 +43,11 @@ public class FileStore implements Store {
     }
 
     public OutputStream getOutputStream() throws IOException {
+        makeDirectory();
+        return new FileOutputStream(downloadFile);
+    }
+
+    private void makeDirectory() throws IOException {
         File dir = downloadFile.getParentFile();
         if (!dir.exists()) {
             dir.mkdirs();
@@ -46,7 +55,34 @@ public class FileStore implements Store {
                 throw new IOException("could not create directory " + dir);
             }
         }
-        return new FileOutputStream(downloadFile);
+    }
+
+    public OutputStream getOutputStream(long offset) throws IOException {
+        if (offset == 0) {
+            return getOutputStream();
+        }
+        RandomAccessFile file = new RandomAccessFile(downloadFile, "rw");
+        try {
+            if (file.length() < offset) {
+                throw new IOException("cannot continue " + downloadFile + " of " + file.length() + " bytes at " + offset);
+            }
+            file.setLength(offset);
+        } finally {
+            file.close();
+        }
+        return new FileOutputStream(downloadFile, true);
+    }
+
+    public FileChannel getChannel(long length) throws IOException {
+        makeDirectory();
+        RandomAccessFile file = new RandomAccessFile(downloadFile, "rw");
+        try {
+            file.setLength(length);
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+        return file.getChannel();
     }
 
     public InputStream getInputStream() throws IOException {
@@ -113,6 +149,7 @@ public class FileStore implements Store {
         } catch (Exception e) {
             downloadFile.renameTo(outputFile);
         }
+        setPartialDownload(null);
     }
 
      public void deleteStore() {
@@ -122,6 +159,10 @@ public class FileStore implements Store {
             else
                  log.debug("could not delete: " + outputFile);
         }
+        setPartialDownload(null);
+        if (downloadFile.exists() && !downloadFile.delete()) {
+            log.debug("could not delete: " + downloadFile);
+        }
 
         // delete empty directories, recursively up to (but not including) the top download dir
          File dir = outputFile.getParentFile();
@@ -139,6 +180,48 @@ public class FileStore implements Store {
         }
     }
 
+    /**
+     * The bytes of the partial download are those in the download file, as the resume file is only updated when a
+     * download stops and is behind after a crash. A file written out of order is longer than the bytes downloaded from
+     * its start, so for those the bytes recorded while downloading are taken.
+     */
+    public PartialDownload getPartialDownload() {
+        File resumeFile = getResumeFile();
+        if (!resumeFile.exists() || !downloadFile.exists()) {
+            return null;
+        }
+        try {
+            PartialDownload partialDownload = new Gson().fromJson(FileUtils.readFileToString(resumeFile, "UTF-8"), PartialDownload.class);
+            if (partialDownload != null) {
+                partialDownload.setBytes(partialDownload.isTracked()
+                        ? Math.min(partialDownload.getBytes(), downloadFile.length()) : downloadFile.length());
+            }
+            return partialDownload;
+        } catch (Exception ex) {
+            log.warn("could not read " + resumeFile, ex);
+            return null;
+        }
+    }
+
+    public void setPartialDownload(PartialDownload partialDownload) {
+        File resumeFile = getResumeFile();
+        if (partialDownload == null) {
+            if (resumeFile.exists() && !resumeFile.delete()) {
+                log.debug("could not delete: " + resumeFile);
+            }
+            return;
+        }
+        try {
+            FileUtils.writeStringToFile(resumeFile, new Gson().toJson(partialDownload), "UTF-8");
+        } catch (IOException ex) {
+            log.warn("could not write " + resumeFile, ex);
+        }
+    }
+
+    private File getResumeFile() {
+        return new File(downloadFile.getPath() + ".resume");
+    }
+
     public String getDescription() {
         return outputFile.getAbsolutePath();
     }
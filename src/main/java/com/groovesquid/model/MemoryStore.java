@@ -5,6 +5,7 @@ import com.groovesquid.util.ByteBuffer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 public class MemoryStore implements Store {
     private final String description;
@@ -18,6 +19,13 @@ public class MemoryStore implements Store {
         return buf;
     }
 
+    public OutputStream getOutputStream(long offset) throws IOException {
+        if (offset != 0) {
+            throw new IOException("cannot continue " + getDescription() + " at " + offset);
+        }
+        return buf;
+    }
+
     public InputStream getInputStream() throws IOException {
         return buf.getInputStream();
     }
@@ -25,15 +33,28 @@ public class MemoryStore implements Store {
     public void writeTrackInfo(Track track) {
     }
 
+    public FileChannel getChannel(long length) {
+        return null;
+    }
+
     public void deleteStore() {
     }
 
+    public PartialDownload getPartialDownload() {
+        // played tracks are not kept, so there is nothing to continue
+        return null;
+    }
+
+    public void setPartialDownload(PartialDownload partialDownload) {
+    }
+
     public String getDescription() {
         return "mem{size=" + buf.size() + ", " + description + "}";
     }
 
     public boolean isSameLocation(Store other) {
-        return other instanceof MemoryStore;
+        // every track played has a store of its own, so the next one can be downloaded ahead
+        return other == this;
     }
 
 }
\ No newline at end of file
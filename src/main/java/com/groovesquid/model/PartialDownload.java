@@ -0,0 +1,64 @@
+package com.groovesquid.model;
+
+/**
+ * What a store keeps about contents downloaded partly, so a later download can continue them with a range request
+ * if the server still has the same file.
+ */
+public class PartialDownload {
+    private String url;
+    private String eTag;
+    private String lastModified;
+    private String hoster;
+    private long bytes;
+    private boolean tracked;
+
+    public PartialDownload(String url, String eTag, String lastModified, String hoster) {
+        this.url = url;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.hoster = hoster;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public String getHoster() {
+        return hoster;
+    }
+
+    /**
+     * @return the number of bytes downloaded
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return true if the bytes are recorded while downloading, as the file is written out of order and may be longer
+     * than the bytes downloaded from its start
+     */
+    public boolean isTracked() {
+        return tracked;
+    }
+
+    public void setTracked(boolean tracked) {
+        this.tracked = tracked;
+    }
+
+    public String toString() {
+        return hoster + " " + url + " (" + bytes + " bytes)";
+    }
+}
@@ -3,12 +3,19 @@ package com.groovesquid.model;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 public interface Store {
 
     // return a new instance of an OutputStream to write the store contents to
     OutputStream getOutputStream() throws IOException;
 
+    // return a new instance of an OutputStream that keeps the first offset bytes of the store contents and writes after them
+    OutputStream getOutputStream(long offset) throws IOException;
+
+    // return a new channel to write the store contents of the given length at any position, or null if the store can only be written in order
+    FileChannel getChannel(long length) throws IOException;
+
     // return a new instance of an InputStream to read the store contents
     InputStream getInputStream() throws IOException;
 
@@ -16,6 +23,12 @@ public interface Store {
 
     void deleteStore();
 
+    // return what is known about the partly downloaded store contents, or null if they cannot be continued
+    PartialDownload getPartialDownload();
+
+    // remember how the store contents are being downloaded, so a later download can continue them; null forgets it
+    void setPartialDownload(PartialDownload partialDownload);
+
     String getDescription();
 
     boolean isSameLocation(Store other);
@@ -80,7 +80,7 @@ public class Track {
         return totalBytes;
     }
     
-    public long getDownloadedBytes() {
+    public synchronized long getDownloadedBytes() {
         return downloadedBytes;
     }
 
@@ -92,9 +92,13 @@ public class Track {
         downloadedBytes++;
     }
     
-    public void incDownloadedBytes(long increment) {
+    public synchronized void incDownloadedBytes(long increment) {
         this.downloadedBytes += increment;
     }
+
+    public synchronized void resetDownloadedBytes() {
+        this.downloadedBytes = 0;
+    }
     
     public String getDownloadedSize() {
         return Utils.humanReadableByteCount(downloadedBytes, true);
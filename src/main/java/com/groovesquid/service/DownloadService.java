@@ -4,14 +4,19 @@ import com.groovesquid.Groovesquid;
 import com.groovesquid.model.*;
 import com.groovesquid.service.hoster.Deezer;
 import com.groovesquid.service.hoster.Hoster;
+import com.groovesquid.service.hoster.HosterResolver;
+import com.groovesquid.service.hoster.ResolutionCache;
 import com.groovesquid.service.hoster.Netease;
 import com.groovesquid.service.hoster.Soundcloud;
 import com.groovesquid.util.FilenameSchemeParser;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.methods.HttpGet;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
@@ -30,8 +35,9 @@ public class DownloadService extends HttpService {
     private final List<DownloadTask> currentlyRunningDownloads = new ArrayList<DownloadTask>();
     private final FilenameSchemeParser filenameSchemeParser;
     private List<Hoster> hosters = new ArrayList<Hoster>();
+    private final HosterResolver hosterResolver;
 
-    private long nextSongMustSleepUntil;
+    private final RequestScheduler requestScheduler = RequestScheduler.getDefault();
 
     public DownloadService() {
         executorService = Executors.newFixedThreadPool(Groovesquid.getConfig().getMaxParallelDownloads());
@@ -41,6 +47,7 @@ public class DownloadService extends HttpService {
         hosters.add(new Deezer());
         hosters.add(new Netease());
         hosters.add(new Soundcloud());
+        hosterResolver = new HosterResolver(hosters, new ResolutionCache(new File(Groovesquid.getDataDirectory(), "resolutions.json")));
     }
 
     public FilenameSchemeParser getFilenameSchemeParser() {
@@ -74,15 +81,14 @@ public class DownloadService extends HttpService {
         boolean downloadWasInterrupted = cancelDownload(track, true);
         if (downloadWasInterrupted && !forPlay)
             additionalAbortDelay += 5000;
-        additionalAbortDelay += Math.max(nextSongMustSleepUntil - System.currentTimeMillis(), 0);
-        DownloadTask downloadTask = new DownloadTask(track, additionalAbortDelay, downloadListener);
-        currentlyRunningDownloads.add(downloadTask);
-        if (forPlay) {
-            executorServiceForPlay.submit(downloadTask);
-        } else {
-            executorService.submit(downloadTask);
+        // take the turn for looking the track up at the first hoster now, and start the download when it has come
+        Hoster firstHoster = hosterResolver.getFirstHoster();
+        if (firstHoster != null) {
+            additionalAbortDelay += requestScheduler.reserveLookup(firstHoster.getName());
         }
-        nextSongMustSleepUntil = Math.max(System.currentTimeMillis(), nextSongMustSleepUntil + 1000);
+        DownloadTask downloadTask = new DownloadTask(track, firstHoster, downloadListener);
+        currentlyRunningDownloads.add(downloadTask);
+        requestScheduler.submit(forPlay ? executorServiceForPlay : executorService, downloadTask, additionalAbortDelay);
         return track;
     }
     
@@ -94,7 +100,7 @@ public class DownloadService extends HttpService {
         DownloadTask downloadTask = findDownloadTask(track);
         if(safeDelete) {
             if(downloadTask == null) {
-                downloadTask = new DownloadTask(track, 0, null);
+                downloadTask = new DownloadTask(track, null, null);
                 currentlyRunningDownloads.add(downloadTask);
             }
         }
@@ -145,14 +151,17 @@ public class DownloadService extends HttpService {
 
     public class DownloadTask implements Runnable {
         private final Track track;
-        private final int initialDelay;
+        private final Hoster reservedHoster;
         private final DownloadListener downloadListener;
         private volatile HttpGet httpGet;
         private volatile boolean aborted;
 
-        public DownloadTask(Track track, int initialDelay, DownloadListener downloadListener) {
+        /**
+         * @param reservedHoster the hoster whose turn for looking up the track has been taken, or null
+         */
+        public DownloadTask(Track track, Hoster reservedHoster, DownloadListener downloadListener) {
             this.track = track;
-            this.initialDelay = initialDelay;
+            this.reservedHoster = reservedHoster;
             this.downloadListener = downloadListener;
         }
 
@@ -160,35 +169,43 @@ public class DownloadService extends HttpService {
             try {
                 if (track.getStatus() == Track.Status.CANCELLED)
                     return;
-                Thread.sleep(initialDelay);
-                if (track.getStatus() == Track.Status.CANCELLED)
-                    return;
-
-                for (Hoster hoster : hosters) {
-                    track.setStatus(Track.Status.INITIALIZING);
-                    fireDownloadStatusChanged();
-
-                    String downloadUrl = hoster.getDownloadUrl(track);
-                    if (downloadUrl != null) {
-                        try {
-                            track.setHoster(hoster.getName());
-                            track.setDownloadUrl(downloadUrl);
-
-                            track.setStatus(Track.Status.DOWNLOADING);
-                            track.setStartDownloadTime(System.currentTimeMillis());
-                            fireDownloadStatusChanged();
-
-                            hoster.download(track, this);
 
-                            track.setStatus(Track.Status.FINISHED);
-                            fireDownloadStatusChanged();
-                            log.info("download completed: " + track.toString());
-                            //Notify.getInstance().notify(MessageType.INFO, "Groovesquid", "Download complete");
+                track.setStatus(Track.Status.INITIALIZING);
+                fireDownloadStatusChanged();
 
-                            break;
-                        } catch (Exception ex) {
-                            log.log(Level.SEVERE, ex.getMessage(), ex);
+                List<Hoster> failedHosters = new ArrayList<Hoster>();
+                HosterResolver.Resolution resolution;
+                while ((resolution = hosterResolver.resolve(track, failedHosters, failedHosters.isEmpty() ? reservedHoster : null)) != null) {
+                    Hoster hoster = resolution.getHoster();
+                    try {
+                        track.setHoster(hoster.getName());
+                        track.setDownloadUrl(resolution.getDownloadUrl());
+
+                        track.setStatus(Track.Status.DOWNLOADING);
+                        track.setStartDownloadTime(System.currentTimeMillis());
+                        // count only what this hoster sends, not the bytes of a hoster that failed before
+                        track.resetDownloadedBytes();
+                        fireDownloadStatusChanged();
+
+                        hoster.download(track, this);
+
+                        track.setStatus(Track.Status.FINISHED);
+                        fireDownloadStatusChanged();
+                        log.info("download completed: " + track.toString());
+                        //Notify.getInstance().notify(MessageType.INFO, "Groovesquid", "Download complete");
+
+                        break;
+                    } catch (Exception ex) {
+                        log.log(Level.SEVERE, ex.getMessage(), ex);
+                        if (ex instanceof HttpResponseException) {
+                            int statusCode = ((HttpResponseException) ex).getStatusCode();
+                            if (statusCode == HttpStatus.SC_FORBIDDEN || statusCode == HttpStatus.SC_NOT_FOUND) {
+                                hosterResolver.invalidate(hoster, track);
+                            }
                         }
+                        failedHosters.add(hoster);
+                        track.setStatus(Track.Status.INITIALIZING);
+                        fireDownloadStatusChanged();
                     }
                 }
 
@@ -201,7 +218,9 @@ public class DownloadService extends HttpService {
                     track.setStatus(Track.Status.ERROR);
                     //track.setFault(ex);
                 }
-                track.getStore().deleteStore();
+                if (track.getStore().getPartialDownload() == null) {
+                    track.getStore().deleteStore();
+                }
                 fireDownloadStatusChanged();
             } finally {
                 track.setStopDownloadTime(System.currentTimeMillis());
@@ -234,7 +253,7 @@ public class DownloadService extends HttpService {
                 downloadListener.downloadedBytesChanged(track);
         }
 
-        public OutputStream makeMonitoredOutputStream(OutputStream out) {
+        public MonitoredOutputStream makeMonitoredOutputStream(OutputStream out) {
             return new MonitoredOutputStream(out);
         }
 
@@ -244,11 +263,19 @@ public class DownloadService extends HttpService {
 
         public class MonitoredOutputStream extends OutputStream {
             private final OutputStream outputStream;
+            private long bytesWritten;
 
             public MonitoredOutputStream(OutputStream outputStream) {
                 this.outputStream = outputStream;
             }
 
+            /**
+             * @return the number of bytes written through this stream
+             */
+            public long getBytesWritten() {
+                return bytesWritten;
+            }
+
             @Override
             public void close() throws IOException {
                 outputStream.close();
@@ -261,24 +288,41 @@ public class DownloadService extends HttpService {
 
             @Override
             public void write(byte[] b) throws IOException {
+                throttle(b.length);
                 outputStream.write(b);
+                bytesWritten += b.length;
                 track.incDownloadedBytes(b.length);
                 fireDownloadBytesChanged();
             }
 
             @Override
             public void write(byte[] b, int off, int len) throws IOException {
+                throttle(len);
                 outputStream.write(b, off, len);
+                bytesWritten += len;
                 track.incDownloadedBytes(len);
                 fireDownloadBytesChanged();
             }
 
             @Override
             public void write(int b) throws IOException {
+                throttle(1);
                 outputStream.write(b);
+                bytesWritten += 1;
                 track.incDownloadedBytes(1);
                 fireDownloadBytesChanged();
             }
+
+            /**
+             * Waits until the bytes fit into the download rate.
+             */
+            private void throttle(long bytes) throws IOException {
+                try {
+                    requestScheduler.acquireBytes(bytes);
+                } catch (InterruptedException ex) {
+                    throw new InterruptedIOException("download of " + track + " interrupted");
+                }
+            }
         }
 
         public class MonitoredByteArrayOutputStream extends ByteArrayOutputStream {
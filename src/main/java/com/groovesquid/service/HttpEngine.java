@@ -0,0 +1,162 @@
+package com.groovesquid.service;
+
+import com.groovesquid.Groovesquid;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The connection pool shared by all {@link HttpService}s. Every service builds its client on this pool, so searches,
+ * hoster lookups and downloads reuse the same keep-alive connections to a host and are held to the same limits,
+ * while each client keeps its own cookies.
+ */
+public class HttpEngine {
+
+    private final static Logger log = Logger.getLogger(HttpEngine.class.getName());
+
+    /**
+     * Connections per host besides the parallel downloads: the download for playing, the one ahead of it, and
+     * searches or hoster lookups.
+     */
+    private static final int SPARE_CONNECTIONS_PER_ROUTE = 4;
+    /**
+     * Hosts that may be connected to at the same time with all connections of a host.
+     */
+    private static final int ROUTES = 4;
+    private static final long IDLE_TIMEOUT_SECONDS = 30;
+    private static final long EVICTION_INTERVAL_SECONDS = 10;
+
+    private static HttpEngine defaultEngine;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final ScheduledExecutorService evictor;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+
+    /**
+     * @return the engine of the application, sized for the configured number of parallel downloads
+     */
+    public static synchronized HttpEngine getDefault() {
+        if (defaultEngine == null) {
+            int maxPerRoute = Groovesquid.getConfig().getMaxParallelDownloads() + SPARE_CONNECTIONS_PER_ROUTE;
+            defaultEngine = new HttpEngine(maxPerRoute, maxPerRoute * ROUTES);
+        }
+        return defaultEngine;
+    }
+
+    public HttpEngine(int maxPerRoute, int maxTotal) {
+        final HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connectionFactory = ManagedHttpClientConnectionFactory.INSTANCE;
+        connectionManager = new PoolingHttpClientConnectionManager(new HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection>() {
+            public ManagedHttpClientConnection create(HttpRoute route, ConnectionConfig config) {
+                connections.incrementAndGet();
+                return connectionFactory.create(route, config);
+            }
+        });
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setMaxTotal(maxTotal);
+
+        evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "http-connection-evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                evictIdleConnections();
+            }
+        }, EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a builder for a client on the shared pool, using the configured proxy. Each client gets its own
+     * cookie store, and waits for the turn of a host before sending a request to it.
+     */
+    public HttpClientBuilder newClientBuilder() {
+        HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
+        httpClientBuilder.setConnectionManager(connectionManager);
+        httpClientBuilder.addInterceptorFirst(new HttpRequestInterceptor() {
+            public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+                HttpHost target = HttpCoreContext.adapt(context).getTargetHost();
+                if (target != null) {
+                    try {
+                        RequestScheduler.getDefault().acquireRequest(target.getHostName());
+                    } catch (InterruptedException ex) {
+                        throw new InterruptedIOException("request to " + target + " interrupted");
+                    }
+                }
+                requests.incrementAndGet();
+            }
+        });
+        if (Groovesquid.getConfig().getProxyHost() != null && Groovesquid.getConfig().getProxyPort() != null) {
+            httpClientBuilder.setProxy(new HttpHost(Groovesquid.getConfig().getProxyHost(), Groovesquid.getConfig().getProxyPort()));
+        }
+        return httpClientBuilder;
+    }
+
+    /**
+     * Closes connections the server has expired, and connections idle for longer than the idle timeout, which
+     * servers and NAT routers tend to drop silently.
+     */
+    public void evictIdleConnections() {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (log.isLoggable(Level.FINE)) {
+            log.fine(getStatistics());
+        }
+    }
+
+    /**
+     * @return the number of requests sent, including redirects
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of connections opened
+     */
+    public long getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * @return the share of requests sent on a connection that was already open, from 0 to 1
+     */
+    public double getReuseRatio() {
+        long sent = requests.get();
+        return sent > 0 ? Math.max(0, sent - connections.get()) / (double) sent : 0;
+    }
+
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    public String getStatistics() {
+        PoolStats stats = getPoolStats();
+        return String.format("http: %d requests on %d connections (%.0f%% reused), %d leased, %d idle, %d pending, max %d",
+                getRequestCount(), getConnectionCount(), 100 * getReuseRatio(), stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax());
+    }
+}
@@ -2,8 +2,11 @@ package com.groovesquid.service;
 
 import com.groovesquid.model.Song;
 import com.groovesquid.model.Track;
+import javazoom.jl.decoder.FrameIndex;
+import javazoom.jl.player.JavaSoundAudioDevice;
 import javazoom.jl.player.MP3Player;
 import javazoom.jl.player.PlayThread;
+import javazoom.jl.player.SourceLineManager;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -11,7 +14,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Plays the songs of a playlist. The state of the service is guarded by the service itself; locks are taken in the
+ * order PlayService before DownloadService. What the play thread reports is handled on a thread of its own, as the
+ * play thread must not wait for the service while the service waits for it to stop.
+ */
 public class PlayService {
 
     public enum AddMode {
@@ -29,10 +40,32 @@ public class PlayService {
     private final List<Song> playlist = new ArrayList<Song>();
     private int currentSongIndex = -1;
     private Track currentTrack;
+    private FrameIndex frameIndex;
     private int pausedFrame = -1;
     private int pausedAudioPosition = 0;
     private PlaybackListener listener;
     private PlayThread playThread;
+    /**
+     * Keeps the audio line open from one track to the next, so skipping need not open a new line.
+     */
+    private final SourceLineManager lines = new SourceLineManager();
+    /**
+     * The next song of the playlist, downloaded ahead once the current track has been downloaded, and
+     * queued on the play thread to follow the current track without a gap.
+     */
+    private Track nextTrack;
+    private FrameIndex nextFrameIndex;
+    private PlayThread nextQueuedOn;
+    /**
+     * Handles the events of the play thread that change the state of the service, one after the other.
+     */
+    private final ExecutorService playbackEvents = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "playback-events");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
     private boolean radio;
     private float gain = 0.0f;
 
@@ -74,6 +107,8 @@ public class PlayService {
             Song song = songs.get(0);
             stopPlaying();
             startPlaying(song, 0, 0);
+        } else {
+            updateNext();
         }
     }
 
@@ -93,6 +128,8 @@ public class PlayService {
         Song currentSong = getCurrentSong();
         if (currentSong != null) log.info("stopping: " + currentSong);
         stopPlaying();
+        cancelNext();
+        lines.close();
     }
 
     public synchronized void skipForward() {
@@ -111,14 +148,15 @@ public class PlayService {
 
     public synchronized void pause() {
         Song currentSong = getCurrentSong();
-        if (currentSong != null && !playThread.isStopForced()) {
+        if (currentSong != null && pausedFrame == -1 && !playThread.isStopForced()) {
             log.info("pausing: " + currentSong);
             pausedAudioPosition = playThread.getCurrentPosition();
-            pausedFrame = playThread.forceStop();
-            try {
-                playThread.join();
-            } catch (InterruptedException e) {
-                // ignored
+            if (playThread.isAlive()) {
+                // keeps the decoder, the stream and the audio line, so resume() continues at once
+                playThread.pausePlayback();
+                pausedFrame = playThread.getCurrentFrame();
+            } else {
+                pausedFrame = playThread.forceStop();
             }
             log.debug("paused at frame: " + pausedFrame + ", audioPosition: " + pausedAudioPosition);
             if (listener != null)
@@ -131,6 +169,14 @@ public class PlayService {
     public synchronized void resume() {
         Song currentSong = getCurrentSong();
         if (currentSong != null && pausedFrame != -1) {
+            if (playThread.isPaused() && playThread.isAlive()) {
+                log.info("resuming at frame: " + pausedFrame + ", audioPosition: " + pausedAudioPosition + ": " + currentSong);
+                playThread.resumePlayback();
+                pausedFrame = -1;
+                if (listener != null)
+                    listener.playbackStarted(currentTrack);
+                return;
+            }
             log.info("resuming from frame: " + pausedFrame + ", audioPosition: " + pausedAudioPosition + ": " + currentSong);
             startPlaying(currentSong, pausedFrame, pausedAudioPosition);
             pausedFrame = -1;
@@ -141,12 +187,17 @@ public class PlayService {
         return pausedFrame != -1;
     }
 
+    /**
+     * @return true if a track is being played; a paused track keeps its play thread, but is not playing
+     */
     public synchronized boolean isPlaying() {
-        return playThread.isAlive();
+        return playThread.isAlive() && !isPaused();
     }
 
     public synchronized void clearPlaylist() {
         stopPlaying();
+        cancelNext();
+        lines.close();
         currentSongIndex = -1;
         playlist.clear();
         radio = false;
@@ -218,14 +269,22 @@ public class PlayService {
             stopPlaying();
         log.info("starting from " + framePosition + ": " + song);
         if (currentTrack == null || currentTrack.getSong() != song) {
-            currentTrack = downloadService.downloadToMemory(song, new ChainedPlaybackListener(listener) {
-                @Override public void downloadedBytesChanged(Track track) {
-                    if (!isPlaying() && !isPaused() && track == currentTrack && track.getDownloadedBytes() > PLAY_BUFFER_SIZE) {
-                        startPlayingCurrentTrack(framePosition, audioPosition);
-                    }
-                    super.downloadedBytesChanged(track);
-                }
-            });
+            if (nextTrack != null && nextTrack.getSong() == song) {
+                // downloaded ahead already
+                currentTrack = nextTrack;
+                frameIndex = nextFrameIndex;
+                nextTrack = null;
+                nextFrameIndex = null;
+                nextQueuedOn = null;
+            } else {
+                cancelNext();
+            }
+            if (currentTrack == null) {
+                frameIndex = new FrameIndex();
+                currentTrack = downloadService.downloadToMemory(song, new TrackDownloadListener(false, framePosition, audioPosition));
+            } else if (currentTrack.getDownloadedBytes() > PLAY_BUFFER_SIZE) {
+                startPlayingCurrentTrack(framePosition, audioPosition);
+            }
         } else {
             startPlayingCurrentTrack(framePosition, audioPosition);
         }
@@ -234,21 +293,96 @@ public class PlayService {
     private void startPlayingCurrentTrack(int framePosition, int audioPosition) {
         try {
             InputStream inputStream = currentTrack.getStore().getInputStream();
-            playThread = new PlayThread(inputStream, framePosition);
+            playThread = new PlayThread(inputStream, framePosition, new JavaSoundAudioDevice(lines), frameIndex);
             playThread.setPlaybackListener(new PlayThreadListener(currentTrack, audioPosition));
             playThread.start();
         } catch (IOException ex) {
             handlePlayException(currentTrack, ex);
+            return;
+        }
+        if (currentTrack.getStatus().isSuccessful())
+            prefetchNext();
+    }
+
+    /**
+     * Downloads the song after the current one ahead, unless it is downloaded already, and queues it
+     * on the play thread to follow the current track without a gap.
+     */
+    private void prefetchNext() {
+        if (nextTrack == null) {
+            int nextIndex = currentSongIndex + 1;
+            if (currentTrack == null || nextIndex <= 0 || nextIndex >= playlist.size())
+                return;
+            Song song = playlist.get(nextIndex);
+            log.info("downloading ahead: " + song);
+            nextFrameIndex = new FrameIndex();
+            nextTrack = downloadService.downloadToMemory(song, new TrackDownloadListener(true, 0, 0));
+        } else if (nextQueuedOn == playThread) {
+            return;
         }
+        try {
+            InputStream inputStream = nextTrack.getStore().getInputStream();
+            if (playThread.queue(inputStream, nextFrameIndex, new PlayThreadListener(nextTrack, 0)))
+                nextQueuedOn = playThread;
+            else
+                inputStream.close();
+        } catch (IOException ex) {
+            log.error("error queueing track " + nextTrack, ex);
+        }
+    }
+
+    /**
+     * Makes the track downloaded ahead the current track once the play thread has started playing it,
+     * unless it has been cancelled in the meantime, e.g. by a skip or a change of the playlist.
+     */
+    private void adoptNext(Track track) {
+        if (track != nextTrack || nextQueuedOn != playThread)
+            return;
+        currentSongIndex++;
+        currentTrack = nextTrack;
+        frameIndex = nextFrameIndex;
+        nextTrack = null;
+        nextFrameIndex = null;
+        nextQueuedOn = null;
+        log.info("continuing without a gap with: " + track);
+        if (track.getStatus().isSuccessful())
+            prefetchNext();
+    }
+
+    /**
+     * Cancels the download ahead of the next song if the playlist has changed after the current song,
+     * and downloads the new next song ahead if the current track has been downloaded.
+     */
+    private void updateNext() {
+        int nextIndex = currentSongIndex + 1;
+        if (nextTrack != null && (nextIndex >= playlist.size() || playlist.get(nextIndex) != nextTrack.getSong()))
+            cancelNext();
+        if (currentTrack != null && currentTrack.getStatus().isSuccessful())
+            prefetchNext();
+    }
+
+    private void cancelNext() {
+        if (nextTrack == null)
+            return;
+        log.info("cancelling download ahead: " + nextTrack);
+        playThread.clearQueue();
+        Track track = nextTrack;
+        nextTrack = null;
+        nextFrameIndex = null;
+        nextQueuedOn = null;
+        downloadService.cancelDownload(track, true);
     }
 
     private void stopPlaying() {
         int stopFrame = playThread.forceStop();
-        playThread.interrupt();
-        try {
-            playThread.join();
-        } catch (InterruptedException ignore) {
-            // intentionally ignored
+        if (playThread != Thread.currentThread()) {
+            // a listener of the play thread may stop it, e.g. to skip to the next song
+            playThread.interrupt();
+            try {
+                playThread.join();
+            } catch (InterruptedException ignore) {
+                // intentionally ignored
+            }
         }
         if (stopFrame == 0 && currentTrack != null) // player didn't start yet
             if (listener != null)
@@ -256,6 +390,7 @@ public class PlayService {
         if (currentTrack != null)
             downloadService.cancelDownload(currentTrack, true);
         currentTrack = null;
+        frameIndex = null;
         pausedFrame = -1;
         pausedAudioPosition = 0;
     }
@@ -320,6 +455,19 @@ public class PlayService {
     }
 
 
+    /**
+     * Runs a task on the playback events thread, holding the service monitor.
+     */
+    private void handlePlaybackEvent(final Runnable task) {
+        playbackEvents.execute(new Runnable() {
+            public void run() {
+                synchronized (PlayService.this) {
+                    task.run();
+                }
+            }
+        });
+    }
+
     private class PlayThreadListener implements javazoom.jl.player.PlaybackListener {
         private final Track track;
         private final int audioPositionOffset;
@@ -331,17 +479,28 @@ public class PlayService {
 
         public void playbackStarted(MP3Player player, int audioPosition) {
             log.info("playback started: " + track);
-            if (listener != null)
-                listener.playbackStarted(track);
+            handlePlaybackEvent(new Runnable() {
+                public void run() {
+                    adoptNext(track);
+                    if (listener != null)
+                        listener.playbackStarted(track);
+                }
+            });
         }
 
-        public void playbackFinished(MP3Player player, int audioPosition) {
-            log.info("playback finished: " + track);
-            if (listener != null)
-                listener.playbackFinished(track, audioPositionOffset + audioPosition);
-            if (player.isComplete()) {
-                skipToNext();
-            }
+        public void playbackFinished(MP3Player player, final int audioPosition) {
+            log.info("playback finished: " + track + ", " + player.getUnderruns() + " underruns");
+            // the next track follows on the play thread if it was queued in time
+            final boolean skip = player.isComplete() && !player.isContinued();
+            handlePlaybackEvent(new Runnable() {
+                public void run() {
+                    if (listener != null)
+                        listener.playbackFinished(track, audioPositionOffset + audioPosition);
+                    if (skip && track == currentTrack) {
+                        skipToNext();
+                    }
+                }
+            });
         }
 
         public void positionChanged(MP3Player player, int audioPosition) {
@@ -350,8 +509,57 @@ public class PlayService {
             setGain();
         }
 
-        public void exception(MP3Player player, Exception ex) {
-            handlePlayException(track, ex);
+        public void exception(MP3Player player, final Exception ex) {
+            handlePlaybackEvent(new Runnable() {
+                public void run() {
+                    if (track == currentTrack) {
+                        handlePlayException(track, ex);
+                    } else {
+                        log.error("error playing track " + track, ex);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Listens to the download of a track: starts playing once enough has been downloaded, and downloads
+     * the next song ahead once the track is the current track and has been downloaded. Events of a track
+     * downloaded ahead are passed on only once it has become the current track.
+     */
+    private class TrackDownloadListener extends ChainedPlaybackListener {
+        private final boolean ahead;
+        private final int framePosition;
+        private final int audioPosition;
+
+        private TrackDownloadListener(boolean ahead, int framePosition, int audioPosition) {
+            super(listener);
+            this.ahead = ahead;
+            this.framePosition = framePosition;
+            this.audioPosition = audioPosition;
+        }
+
+        @Override public void downloadedBytesChanged(Track track) {
+            synchronized (PlayService.this) {
+                if (!isPlaying() && !isPaused() && track == currentTrack && track.getDownloadedBytes() > PLAY_BUFFER_SIZE) {
+                    startPlayingCurrentTrack(framePosition, audioPosition);
+                }
+            }
+            if (!ahead || track == currentTrack)
+                super.downloadedBytesChanged(track);
+        }
+
+        @Override public void statusChanged(Track track) {
+            if (!ahead || track == currentTrack)
+                super.statusChanged(track);
+            // cancelDownload() reports the cancelled status holding the DownloadService, which must not be
+            // followed by the service monitor
+            if (track.getStatus().isSuccessful()) {
+                synchronized (PlayService.this) {
+                    if (track == currentTrack)
+                        prefetchNext();
+                }
+            }
         }
     }
 
@@ -0,0 +1,110 @@
+package com.groovesquid.service;
+
+import com.groovesquid.Groovesquid;
+import com.groovesquid.model.Config;
+import com.groovesquid.util.TokenBucket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces the traffic of the application with the limits of the config: lookups per second at each hoster, requests per
+ * second to each host, and bytes per second downloaded over all downloads. Tasks that have to wait for their turn are
+ * handed to their executor when it has come, so they do not hold a thread of the executor while waiting.
+ */
+public class RequestScheduler {
+
+    private static RequestScheduler defaultScheduler;
+
+    private final Map<String, TokenBucket> hosterBuckets = new HashMap<String, TokenBucket>();
+    private final Map<String, TokenBucket> hostBuckets = new HashMap<String, TokenBucket>();
+    private final TokenBucket bandwidth = new TokenBucket(0);
+    private final ScheduledExecutorService timer;
+
+    public static synchronized RequestScheduler getDefault() {
+        if (defaultScheduler == null) {
+            defaultScheduler = new RequestScheduler();
+        }
+        return defaultScheduler;
+    }
+
+    public RequestScheduler() {
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "request-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Hands a task to an executor after a delay, without holding a thread of the executor until then.
+     */
+    public void submit(final ExecutorService executorService, final Runnable task, long delayMillis) {
+        if (delayMillis <= 0) {
+            executorService.submit(task);
+            return;
+        }
+        timer.schedule(new Runnable() {
+            public void run() {
+                if (!executorService.isShutdown()) {
+                    executorService.submit(task);
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes the turn for a lookup at a hoster.
+     *
+     * @return how long to wait until the turn has come, in milliseconds
+     */
+    public long reserveLookup(String hoster) {
+        return TimeUnit.NANOSECONDS.toMillis(bucket(hosterBuckets, hoster, getConfig().getMaxHosterLookupsPerSecond()).reserve(1));
+    }
+
+    /**
+     * Waits for the turn for a lookup at a hoster.
+     */
+    public void acquireLookup(String hoster) throws InterruptedException {
+        bucket(hosterBuckets, hoster, getConfig().getMaxHosterLookupsPerSecond()).acquire(1);
+    }
+
+    /**
+     * Waits for the turn for a request to a host.
+     */
+    public void acquireRequest(String host) throws InterruptedException {
+        bucket(hostBuckets, host, getConfig().getMaxHostRequestsPerSecond()).acquire(1);
+    }
+
+    /**
+     * Waits until bytes downloaded may be written.
+     */
+    public void acquireBytes(long bytes) throws InterruptedException {
+        bandwidth.setRate(getConfig().getMaxDownloadRate() * 1024.0);
+        bandwidth.acquire(bytes);
+    }
+
+    private TokenBucket bucket(Map<String, TokenBucket> buckets, String name, double rate) {
+        TokenBucket bucket;
+        synchronized (buckets) {
+            bucket = buckets.get(name);
+            if (bucket == null) {
+                bucket = new TokenBucket(rate);
+                buckets.put(name, bucket);
+            }
+        }
+        bucket.setRate(rate);
+        return bucket;
+    }
+
+    private static Config getConfig() {
+        return Groovesquid.getConfig();
+    }
+}
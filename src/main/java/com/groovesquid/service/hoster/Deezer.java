@@ -2,6 +2,7 @@ package com.groovesquid.service.hoster;
 
 import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
+import com.groovesquid.model.PartialDownload;
 import com.groovesquid.model.Track;
 import com.groovesquid.service.DownloadService;
 import com.groovesquid.util.Utils;
@@ -29,7 +30,11 @@ import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -47,7 +52,22 @@ public class Deezer extends Hoster {
                     + "(([\\w\\-]+\\.){1,}?([\\w\\-.~]+\\/?)*"
                     + "[\\p{Alnum}.,%_=?&#\\-+()\\[\\]\\*$~@!:/{};']*)",
             Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
-    byte[] blowfishKey = new byte[16];
+    private static final int MAX_BLOWFISH_KEYS = 100;
+    /**
+     * Every third chunk of the stream is encrypted.
+     */
+    private static final int CHUNK_SIZE = 2048;
+    private static final int INTERVAL_CHUNK = 3;
+
+    /**
+     * The keys to decrypt the MP3s, by URL; each URL looked up has its own.
+     */
+    private final Map<String, byte[]> blowfishKeys = Collections.synchronizedMap(new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > MAX_BLOWFISH_KEYS;
+        }
+    });
 
     public String getDownloadUrl(Track track) {
         String query = "";
@@ -95,10 +115,7 @@ public class Deezer extends Hoster {
             Pattern p = Pattern.compile("\\[(.*?)\\]");
             Matcher m = p.matcher(rezeedResponse);
             m.find();
-            String[] keyStrSplit = m.group(1).split(",");
-            for (int i = 0; i < keyStrSplit.length; i++) {
-                blowfishKey[i] = (byte) Integer.parseInt(keyStrSplit[i]);
-            }
+            setDownloadKey(mp3Url, m.group(1));
 
             return mp3Url;
         }
@@ -106,20 +123,61 @@ public class Deezer extends Hoster {
         return null;
     }
 
+    /**
+     * The stream URLs are signed and expire after a while.
+     */
+    public long getUrlTimeToLive() {
+        return TimeUnit.MINUTES.toMillis(30);
+    }
+
+    public String getDownloadKey(String downloadUrl) {
+        byte[] blowfishKey = blowfishKeys.get(downloadUrl);
+        if (blowfishKey == null) {
+            return null;
+        }
+        StringBuilder downloadKey = new StringBuilder();
+        for (byte b : blowfishKey) {
+            if (downloadKey.length() > 0) {
+                downloadKey.append(',');
+            }
+            downloadKey.append(b);
+        }
+        return downloadKey.toString();
+    }
+
+    public void setDownloadKey(String downloadUrl, String downloadKey) {
+        byte[] blowfishKey = new byte[16];
+        String[] keyStrSplit = downloadKey.split(",");
+        for (int i = 0; i < keyStrSplit.length; i++) {
+            blowfishKey[i] = (byte) Integer.parseInt(keyStrSplit[i].trim());
+        }
+        blowfishKeys.put(downloadUrl, blowfishKey);
+    }
+
     public void download(Track track, DownloadService.DownloadTask task) throws IOException {
+        byte[] blowfishKey = blowfishKeys.get(track.getDownloadUrl());
+        if (blowfishKey == null) {
+            throw new IOException("no key to decrypt " + track.getDownloadUrl());
+        }
         HttpGet httpGet = new HttpGet(track.getDownloadUrl());
         httpGet.setHeaders(browserHeaders);
+        // continue at the start of an encrypted chunk
+        long offset = requestRest(track, httpGet, CHUNK_SIZE * INTERVAL_CHUNK);
         HttpResponse httpResponse = httpClient.execute(httpGet);
         HttpEntity httpEntity = httpResponse.getEntity();
-        OutputStream outputStream = task.makeMonitoredOutputStream(track.getStore().getOutputStream());
+        DownloadService.DownloadTask.MonitoredOutputStream outputStream = null;
+        PartialDownload partialDownload = null;
         try {
             StatusLine statusLine = httpResponse.getStatusLine();
             int statusCode = statusLine.getStatusCode();
-            if (statusCode == HttpStatus.SC_OK) {
-                track.setTotalBytes(httpEntity.getContentLength());
-
-                int chunkSize = 2048;
-                int intervalChunk = 3;
+            if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_PARTIAL_CONTENT) {
+                offset = startAt(track, httpResponse, offset);
+                partialDownload = startPartialDownload(track, httpResponse);
+                outputStream = task.makeMonitoredOutputStream(track.getStore().getOutputStream(offset));
+                track.setTotalBytes(offset + httpEntity.getContentLength());
+
+                int chunkSize = CHUNK_SIZE;
+                int intervalChunk = INTERVAL_CHUNK;
                 InputStream inputStream = httpEntity.getContent();
 
                 byte[] chunk = new byte[chunkSize];
@@ -152,6 +210,10 @@ public class Deezer extends Hoster {
                 // write ID tags
                 track.getStore().writeTrackInfo(track);
             } else {
+                if (statusCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                    // the partial download does not fit the file, start over next time
+                    track.getStore().setPartialDownload(null);
+                }
                 throw new HttpResponseException(statusCode, format("%s: %d %s", track.getDownloadUrl(), statusCode, statusLine.getReasonPhrase()));
             }
         } finally {
@@ -161,6 +223,7 @@ public class Deezer extends Hoster {
                 // ignored
             }
             Utils.closeQuietly(outputStream, track.getStore().getDescription());
+            stopPartialDownload(track, partialDownload, offset, outputStream);
         }
     }
 
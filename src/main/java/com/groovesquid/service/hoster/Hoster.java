@@ -1,9 +1,11 @@
 package com.groovesquid.service.hoster;
 
+import com.groovesquid.model.PartialDownload;
 import com.groovesquid.model.Track;
 import com.groovesquid.service.DownloadService;
 import com.groovesquid.service.HttpService;
 import com.groovesquid.util.Utils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
@@ -14,7 +16,8 @@ import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.String.format;
 
@@ -26,30 +29,71 @@ public class Hoster extends HttpService {
         return null;
     }
 
+    /**
+     * @return how long a URL looked up by this hoster may be downloaded from, in milliseconds
+     */
+    public long getUrlTimeToLive() {
+        return TimeUnit.HOURS.toMillis(1);
+    }
+
+    /**
+     * @return what is needed besides the URL to download from a URL this hoster has looked up, or null
+     */
+    public String getDownloadKey(String downloadUrl) {
+        return null;
+    }
+
+    /**
+     * Restores the key returned by {@link #getDownloadKey(String)} for a URL looked up before.
+     */
+    public void setDownloadKey(String downloadUrl, String downloadKey) {
+    }
+
     public void download(Track track, DownloadService.DownloadTask task) throws IOException {
         HttpGet httpGet = new HttpGet(track.getDownloadUrl());
         httpGet.setHeaders(browserHeaders);
+        long offset = requestRest(track, httpGet, 1);
         HttpResponse httpResponse = httpClient.execute(httpGet);
         HttpEntity httpEntity = httpResponse.getEntity();
-        OutputStream outputStream = task.makeMonitoredOutputStream(track.getStore().getOutputStream());
+        DownloadService.DownloadTask.MonitoredOutputStream outputStream = null;
+        PartialDownload partialDownload = null;
         try {
             StatusLine statusLine = httpResponse.getStatusLine();
             int statusCode = statusLine.getStatusCode();
-            if (statusCode == HttpStatus.SC_OK) {
-                track.setTotalBytes(httpEntity.getContentLength());
-
-                InputStream instream = httpEntity.getContent();
-                byte[] buf = new byte[10240];
-                int l;
-                while ((l = instream.read(buf)) != -1) {
-                    outputStream.write(buf, 0, l);
+            if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_PARTIAL_CONTENT) {
+                offset = startAt(track, httpResponse, offset);
+                partialDownload = startPartialDownload(track, httpResponse);
+                track.setTotalBytes(offset + httpEntity.getContentLength());
+
+                FileChannel channel = null;
+                if (SegmentedTransfer.accepts(httpResponse, offset)) {
+                    // the file is of the full length from the start, so how far it has come is recorded as it grows
+                    partialDownload.setTracked(true);
+                    track.getStore().setPartialDownload(partialDownload);
+                    channel = track.getStore().getChannel(httpEntity.getContentLength());
+                }
+                if (channel != null) {
+                    new SegmentedTransfer(httpClient, browserHeaders, track, task, httpEntity.getContentLength())
+                            .transfer(httpGet, httpResponse, channel, partialDownload);
+                } else {
+                    outputStream = task.makeMonitoredOutputStream(track.getStore().getOutputStream(offset));
+                    InputStream instream = httpEntity.getContent();
+                    byte[] buf = new byte[10240];
+                    int l;
+                    while ((l = instream.read(buf)) != -1) {
+                        outputStream.write(buf, 0, l);
+                    }
+                    // need to close immediately otherwise we cannot write ID tags
+                    outputStream.close();
+                    outputStream = null;
                 }
-                // need to close immediately otherwise we cannot write ID tags
-                outputStream.close();
-                outputStream = null;
                 // write ID tags
                 track.getStore().writeTrackInfo(track);
             } else {
+                if (statusCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                    // the partial download does not fit the file, start over next time
+                    track.getStore().setPartialDownload(null);
+                }
                 throw new HttpResponseException(statusCode, format("%s: %d %s", track.getDownloadUrl(), statusCode, statusLine.getReasonPhrase()));
             }
         } finally {
@@ -59,6 +103,77 @@ public class Hoster extends HttpService {
                 // ignored
             }
             Utils.closeQuietly(outputStream, track.getStore().getDescription());
+            stopPartialDownload(track, partialDownload, offset, outputStream);
+        }
+    }
+
+    /**
+     * Asks for the rest of a partial download of the track by this hoster, if there is one. Unless the URL is the
+     * same, the server is asked to send the rest only if it still has the same file, and the whole file otherwise.
+     *
+     * @param alignment the number of bytes the partial download is cut down to a multiple of
+     * @return the offset asked for, or 0
+     */
+    protected long requestRest(Track track, HttpGet httpGet, long alignment) {
+        PartialDownload partialDownload = track.getStore().getPartialDownload();
+        if (partialDownload == null || !name.equals(partialDownload.getHoster())) {
+            return 0;
+        }
+        long offset = partialDownload.getBytes() - partialDownload.getBytes() % alignment;
+        String validator = partialDownload.getETag();
+        if (validator == null || validator.startsWith("W/")) {
+            // weak entity tags cannot be used for ranges
+            validator = partialDownload.getLastModified();
+        }
+        if (offset <= 0 || validator == null && !track.getDownloadUrl().equals(partialDownload.getUrl())) {
+            return 0;
+        }
+        httpGet.setHeader("Range", "bytes=" + offset + "-");
+        if (validator != null) {
+            httpGet.setHeader("If-Range", validator);
+        }
+        log.info(format("continuing %s at %d bytes", track, offset));
+        return offset;
+    }
+
+    /**
+     * @return the offset the response starts at, which is 0 unless the server sent the range asked for
+     */
+    protected long startAt(Track track, HttpResponse httpResponse, long offset) throws IOException {
+        if (httpResponse.getStatusLine().getStatusCode() != HttpStatus.SC_PARTIAL_CONTENT) {
+            return 0;
+        }
+        Header contentRange = httpResponse.getFirstHeader("Content-Range");
+        if (contentRange == null || !contentRange.getValue().startsWith("bytes " + offset + "-")) {
+            throw new IOException(format("%s: asked for bytes from %d, got %s", track.getDownloadUrl(), offset, contentRange));
+        }
+        track.incDownloadedBytes(offset);
+        return offset;
+    }
+
+    /**
+     * Remembers the file being downloaded, so the download can be continued if it stops.
+     */
+    protected PartialDownload startPartialDownload(Track track, HttpResponse httpResponse) {
+        Header eTag = httpResponse.getFirstHeader("ETag");
+        Header lastModified = httpResponse.getFirstHeader("Last-Modified");
+        PartialDownload partialDownload = new PartialDownload(track.getDownloadUrl(),
+                eTag != null ? eTag.getValue() : null, lastModified != null ? lastModified.getValue() : null, name);
+        track.getStore().setPartialDownload(partialDownload);
+        return partialDownload;
+    }
+
+    /**
+     * Records how far a download that stopped before the end has come: the offset it started at and the bytes written
+     * since, but not bytes the track was credited with by attempts before.
+     *
+     * @param outputStream the stream the download was written to, or null if it was not stopped before the end
+     */
+    protected void stopPartialDownload(Track track, PartialDownload partialDownload, long offset,
+                                       DownloadService.DownloadTask.MonitoredOutputStream outputStream) {
+        if (partialDownload != null && outputStream != null) {
+            partialDownload.setBytes(offset + outputStream.getBytesWritten());
+            track.getStore().setPartialDownload(partialDownload);
         }
     }
 
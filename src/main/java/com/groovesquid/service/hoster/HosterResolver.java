@@ -0,0 +1,306 @@
+package com.groovesquid.service.hoster;
+
+import com.groovesquid.Groovesquid;
+import com.groovesquid.model.Track;
+import com.groovesquid.service.RequestScheduler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds a hoster that has a track. The hosters are ranked with the preferred hoster of the config first; the first one
+ * is asked right away, and each further one is asked as well once the hosters asked so far have failed or have not
+ * answered within a short delay. The best ranked download URL found is taken, waiting that delay for better ranked
+ * hosters still asked, and the other lookups are cancelled. URLs found are kept in a {@link ResolutionCache}, and the
+ * best ranked hoster with a URL in the cache is taken without asking any hoster.
+ */
+public class HosterResolver {
+
+    private final static Logger log = Logger.getLogger(HosterResolver.class.getName());
+
+    /**
+     * How long a hoster may take before the next one is asked too, and how long a URL found is held back for a better
+     * ranked hoster.
+     */
+    private static final long HEDGE_DELAY_MILLIS = 1000;
+
+    private final List<Hoster> hosters;
+    private final ResolutionCache cache;
+    private final ExecutorService executorService;
+    private final Map<String, Latency> latencies = new LinkedHashMap<String, Latency>();
+
+    /**
+     * @param hosters the hosters in the order to ask them without a preferred hoster
+     * @param cache    the cache for the URLs found, or null
+     */
+    public HosterResolver(List<Hoster> hosters, ResolutionCache cache) {
+        this.hosters = new ArrayList<Hoster>(hosters);
+        this.cache = cache;
+        executorService = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "hoster-resolver");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Looks up a download URL for a track.
+     *
+     * @param track    the track
+     * @param excluded hosters not to ask, e.g. because downloading from them has failed
+     * @param reserved a hoster whose turn for a lookup has been taken already with
+     *                 {@link RequestScheduler#reserveLookup(String)}, or null
+     * @return the hoster and URL, or null if no hoster has the track
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public Resolution resolve(Track track, Collection<Hoster> excluded, Hoster reserved) throws InterruptedException {
+        List<Hoster> ranked = rank(excluded);
+        int n = ranked.size();
+        if (n == 0) {
+            return null;
+        }
+        if (cache != null) {
+            for (int i = 0; i < n; i++) {
+                String downloadUrl = cache.get(ranked.get(i), track.getSong());
+                if (downloadUrl != null) {
+                    recordCached(ranked.get(i));
+                    log.fine(ranked.get(i).getName() + " URL cached: " + track);
+                    return new Resolution(i, ranked.get(i), downloadUrl, 0);
+                }
+            }
+        }
+        CompletionService<Resolution> completionService = new ExecutorCompletionService<Resolution>(executorService);
+        List<Future<Resolution>> futures = new ArrayList<Future<Resolution>>();
+        Resolution[] results = new Resolution[n];
+        boolean[] finished = new boolean[n];
+        int running = 0;
+        long nextStart = 0;
+        long holdUntil = -1;
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                int best = -1;
+                boolean betterPending = false;
+                for (int i = 0; i < futures.size() && best < 0; i++) {
+                    if (results[i] != null) {
+                        best = i;
+                    } else if (!finished[i]) {
+                        betterPending = true;
+                    }
+                }
+                if (best >= 0) {
+                    if (!betterPending || now >= holdUntil) {
+                        return results[best];
+                    }
+                } else if (running == 0 && futures.size() == n) {
+                    return null;
+                }
+                if (futures.size() < n && (running == 0 || now >= nextStart) && best < 0) {
+                    Hoster hoster = ranked.get(futures.size());
+                    futures.add(completionService.submit(lookup(futures.size(), hoster, track, hoster != reserved)));
+                    running++;
+                    nextStart = now + HEDGE_DELAY_MILLIS;
+                    continue;
+                }
+                long until = best >= 0 ? holdUntil : (futures.size() < n ? nextStart : Long.MAX_VALUE);
+                Future<Resolution> done = until == Long.MAX_VALUE ? completionService.take()
+                        : completionService.poll(Math.max(1, until - now), TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    continue;
+                }
+                running--;
+                Resolution resolution;
+                try {
+                    resolution = done.get();
+                } catch (ExecutionException ex) {
+                    log.log(Level.WARNING, "failed to look up " + track, ex.getCause());
+                    finished[futures.indexOf(done)] = true;
+                    continue;
+                }
+                finished[resolution.rank] = true;
+                if (resolution.downloadUrl != null) {
+                    results[resolution.rank] = resolution;
+                    if (holdUntil < 0) {
+                        holdUntil = System.currentTimeMillis() + HEDGE_DELAY_MILLIS;
+                    }
+                }
+            }
+        } finally {
+            for (Future<Resolution> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @return the hoster asked first for a track, or null if there are no hosters
+     */
+    public Hoster getFirstHoster() {
+        List<Hoster> ranked = rank(null);
+        return ranked.isEmpty() ? null : ranked.get(0);
+    }
+
+    private List<Hoster> rank(Collection<Hoster> excluded) {
+        String preferred = Groovesquid.getConfig().getPreferredHoster();
+        List<Hoster> ranked = new ArrayList<Hoster>();
+        for (Hoster hoster : hosters) {
+            if (excluded == null || !excluded.contains(hoster)) {
+                if (preferred != null && preferred.equalsIgnoreCase(hoster.getName())) {
+                    ranked.add(0, hoster);
+                } else {
+                    ranked.add(hoster);
+                }
+            }
+        }
+        return ranked;
+    }
+
+    /**
+     * @param paced true to wait for the turn of the hoster first
+     */
+    private Callable<Resolution> lookup(final int rank, final Hoster hoster, final Track track, final boolean paced) {
+        return new Callable<Resolution>() {
+            public Resolution call() {
+                if (paced) {
+                    try {
+                        RequestScheduler.getDefault().acquireLookup(hoster.getName());
+                    } catch (InterruptedException ex) {
+                        // cancelled
+                        return new Resolution(rank, hoster, null, 0);
+                    }
+                }
+                long start = System.currentTimeMillis();
+                String downloadUrl = null;
+                try {
+                    downloadUrl = hoster.getDownloadUrl(track);
+                } catch (RuntimeException ex) {
+                    log.log(Level.WARNING, hoster.getName() + " failed to look up " + track, ex);
+                }
+                long millis = System.currentTimeMillis() - start;
+                if (downloadUrl != null && cache != null) {
+                    cache.put(hoster, track.getSong(), downloadUrl);
+                }
+                record(hoster, millis, downloadUrl != null);
+                log.fine(format(hoster, millis, downloadUrl != null) + ": " + track);
+                return new Resolution(rank, hoster, downloadUrl, millis);
+            }
+        };
+    }
+
+    /**
+     * Forgets the URL found for a track, e.g. because the hoster refused to serve it.
+     */
+    public void invalidate(Hoster hoster, Track track) {
+        if (cache != null) {
+            cache.invalidate(hoster, track.getSong());
+        }
+    }
+
+    private synchronized void recordCached(Hoster hoster) {
+        latency(hoster).cached++;
+    }
+
+    private synchronized void record(Hoster hoster, long millis, boolean found) {
+        Latency latency = latency(hoster);
+        latency.lookups++;
+        if (!found) {
+            latency.misses++;
+        }
+        latency.totalMillis += millis;
+        latency.maxMillis = Math.max(latency.maxMillis, millis);
+    }
+
+    private Latency latency(Hoster hoster) {
+        Latency latency = latencies.get(hoster.getName());
+        if (latency == null) {
+            latency = new Latency();
+            latencies.put(hoster.getName(), latency);
+        }
+        return latency;
+    }
+
+    private static String format(Hoster hoster, long millis, boolean found) {
+        return hoster.getName() + (found ? " found" : " did not find") + " the track in " + millis + " ms";
+    }
+
+    /**
+     * @return the average time in milliseconds a hoster took to look up a track, or -1 if it has not been asked yet
+     */
+    public synchronized long getAverageLatency(Hoster hoster) {
+        Latency latency = latencies.get(hoster.getName());
+        return latency != null && latency.lookups > 0 ? latency.totalMillis / latency.lookups : -1;
+    }
+
+    /**
+     * @return lookups, misses, average and maximum lookup time, and URLs taken from the cache per hoster
+     */
+    public synchronized String getStatistics() {
+        StringBuilder statistics = new StringBuilder();
+        for (Map.Entry<String, Latency> entry : latencies.entrySet()) {
+            Latency latency = entry.getValue();
+            if (statistics.length() > 0) {
+                statistics.append(", ");
+            }
+            statistics.append(String.format("%s: %d lookups, %d misses, avg %d ms, max %d ms, %d cached", entry.getKey(),
+                    latency.lookups, latency.misses, latency.lookups > 0 ? latency.totalMillis / latency.lookups : 0,
+                    latency.maxMillis, latency.cached));
+        }
+        return statistics.toString();
+    }
+
+    private static class Latency {
+        private int lookups;
+        private int misses;
+        private long totalMillis;
+        private long maxMillis;
+        private int cached;
+    }
+
+    /**
+     * The result of looking up a track at a hoster.
+     */
+    public static class Resolution {
+        private final int rank;
+        private final Hoster hoster;
+        private final String downloadUrl;
+        private final long millis;
+
+        private Resolution(int rank, Hoster hoster, String downloadUrl, long millis) {
+            this.rank = rank;
+            this.hoster = hoster;
+            this.downloadUrl = downloadUrl;
+            this.millis = millis;
+        }
+
+        public Hoster getHoster() {
+            return hoster;
+        }
+
+        public String getDownloadUrl() {
+            return downloadUrl;
+        }
+
+        /**
+         * @return how long the lookup took, in milliseconds
+         */
+        public long getMillis() {
+            return millis;
+        }
+    }
+}
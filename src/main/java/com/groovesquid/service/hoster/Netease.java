@@ -14,6 +14,7 @@ import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class Netease extends Hoster {
 
@@ -68,6 +69,13 @@ public class Netease extends Hoster {
         return null;
     }
 
+    /**
+     * The URLs are derived from the file ids, which do not change.
+     */
+    public long getUrlTimeToLive() {
+        return TimeUnit.DAYS.toMillis(7);
+    }
+
     private String makeNeteaseUrl(Long dfsId) {
         byte[] byte1 = "3go8&$8*3*3h0k(2)2".getBytes();
         byte[] byte2 = dfsId.toString().getBytes();
@@ -0,0 +1,170 @@
+package com.groovesquid.service.hoster;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.groovesquid.model.Artist;
+import com.groovesquid.model.Song;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Download URLs the hosters have looked up, so downloading or playing a song again does not ask the hoster again
+ * while the URL is valid. A song is identified by its MusicBrainz id, or by its artists and title. The most recently
+ * used URLs are kept in memory and written to a file in the background, and each URL expires after the time to live
+ * of its hoster.
+ */
+public class ResolutionCache {
+
+    private final static Logger log = Logger.getLogger(ResolutionCache.class.getName());
+
+    private static final int MAX_ENTRIES = 1000;
+
+    private final File file;
+    private final Map<String, CachedUrl> entries = new LinkedHashMap<String, CachedUrl>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedUrl> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final ExecutorService writer;
+    private boolean writePending;
+
+    /**
+     * @param file the file to keep the URLs in, or null to keep them in memory only
+     */
+    public ResolutionCache(File file) {
+        this.file = file;
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "resolution-cache-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        read();
+    }
+
+    /**
+     * @return the URL of the song at the hoster if it has not expired, or null; the hoster gets the download key
+     * kept with it
+     */
+    public synchronized String get(Hoster hoster, Song song) {
+        String key = key(hoster, song);
+        CachedUrl entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expires <= System.currentTimeMillis()) {
+            entries.remove(key);
+            write();
+            return null;
+        }
+        if (entry.downloadKey != null) {
+            hoster.setDownloadKey(entry.url, entry.downloadKey);
+        }
+        return entry.url;
+    }
+
+    public synchronized void put(Hoster hoster, Song song, String url) {
+        CachedUrl entry = new CachedUrl();
+        entry.key = key(hoster, song);
+        entry.url = url;
+        entry.downloadKey = hoster.getDownloadKey(url);
+        entry.expires = System.currentTimeMillis() + hoster.getUrlTimeToLive();
+        entries.put(entry.key, entry);
+        write();
+    }
+
+    /**
+     * Forgets the URL of the song at the hoster, e.g. because the hoster no longer serves it.
+     */
+    public synchronized void invalidate(Hoster hoster, Song song) {
+        if (entries.remove(key(hoster, song)) != null) {
+            log.fine("invalidated " + hoster.getName() + " URL of " + song);
+            write();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static String key(Hoster hoster, Song song) {
+        if (song.getId() != null) {
+            return hoster.getName() + ":" + song.getId();
+        }
+        StringBuilder key = new StringBuilder(hoster.getName()).append(':');
+        for (Artist artist : song.getArtists()) {
+            key.append(normalize(artist.getName())).append(',');
+        }
+        return key.append(normalize(song.getName())).toString();
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ENGLISH).replaceAll("[\\p{Punct}\\s]+", " ").trim();
+    }
+
+    private void read() {
+        if (file == null || !file.exists()) {
+            return;
+        }
+        try {
+            List<CachedUrl> list = new Gson().fromJson(FileUtils.readFileToString(file, "UTF-8"), new TypeToken<List<CachedUrl>>() {
+            }.getType());
+            long now = System.currentTimeMillis();
+            if (list != null) {
+                for (CachedUrl entry : list) {
+                    if (entry.expires > now) {
+                        entries.put(entry.key, entry);
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            log.log(Level.WARNING, "failed to read " + file, ex);
+            file.delete();
+        }
+    }
+
+    /**
+     * Writes the entries in the background, once for all changes made until the writer gets to it.
+     */
+    private void write() {
+        if (file == null || writePending) {
+            return;
+        }
+        writePending = true;
+        writer.execute(new Runnable() {
+            public void run() {
+                List<CachedUrl> list;
+                synchronized (ResolutionCache.this) {
+                    writePending = false;
+                    list = new ArrayList<CachedUrl>(entries.values());
+                }
+                try {
+                    FileUtils.writeStringToFile(file, new Gson().toJson(list), "UTF-8");
+                } catch (IOException ex) {
+                    log.log(Level.WARNING, "failed to write " + file, ex);
+                }
+            }
+        });
+    }
+
+    private static class CachedUrl {
+        private String key;
+        private String url;
+        private String downloadKey;
+        private long expires;
+    }
+}
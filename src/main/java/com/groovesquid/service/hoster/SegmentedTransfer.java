@@ -0,0 +1,368 @@
+package com.groovesquid.service.hoster;
+
+import com.groovesquid.model.PartialDownload;
+import com.groovesquid.model.Track;
+import com.groovesquid.service.DownloadService;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+import static java.lang.String.format;
+
+/**
+ * Downloads a large file in segments over several connections at once, writing each segment at its position in a
+ * file of the full length. The first segment is read from the response already received for the whole file, the
+ * others are asked for with range requests. The number of extra connections to a host is limited over all
+ * downloads; segments no extra connection is left for are downloaded one after the other.
+ */
+class SegmentedTransfer {
+
+    private final static Logger log = Logger.getLogger(SegmentedTransfer.class.getName());
+
+    /**
+     * Files smaller than this are downloaded over one connection.
+     */
+    static final long MIN_LENGTH = 8 * 1024 * 1024;
+    private static final long MIN_SEGMENT_LENGTH = 2 * 1024 * 1024;
+    static final int MAX_SEGMENTS = 4;
+    /**
+     * Connections to a host, over all downloads, besides the one each download has anyway.
+     */
+    static final int MAX_EXTRA_CONNECTIONS_PER_HOST = 4;
+    /**
+     * How long an extra connection waits for the connection pool before leaving its segments to the others.
+     */
+    private static final int CONNECTION_REQUEST_TIMEOUT_MILLIS = 2000;
+    private static final int BUFFER_SIZE = 65536;
+    /**
+     * How many bytes the start of the file grows by before the partial download is recorded again.
+     */
+    private static final long RECORD_INTERVAL = 1024 * 1024;
+
+    private static final Map<String, Semaphore> hostPermits = new HashMap<String, Semaphore>();
+    private static final ExecutorService executorService = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "segmented-transfer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final HttpClient httpClient;
+    private final Header[] headers;
+    private final Track track;
+    private final DownloadService.DownloadTask task;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] written;
+    private final Queue<Integer> pending = new ConcurrentLinkedQueue<Integer>();
+    private volatile String validator;
+    private volatile IOException failure;
+    private PartialDownload partialDownload;
+    private long recorded;
+
+    /**
+     * @return true if the response is for a whole file long enough to be split, from a server that sends ranges
+     */
+    static boolean accepts(HttpResponse httpResponse, long offset) {
+        Header acceptRanges = httpResponse.getFirstHeader("Accept-Ranges");
+        return offset == 0 && httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_OK
+                && acceptRanges != null && "bytes".equalsIgnoreCase(acceptRanges.getValue().trim())
+                && httpResponse.getEntity() != null && httpResponse.getEntity().getContentLength() >= MIN_LENGTH;
+    }
+
+    SegmentedTransfer(HttpClient httpClient, Header[] headers, Track track, DownloadService.DownloadTask task, long length) {
+        this.httpClient = httpClient;
+        this.headers = headers;
+        this.track = track;
+        this.task = task;
+        int segments = (int) Math.max(1, Math.min(MAX_SEGMENTS, length / MIN_SEGMENT_LENGTH));
+        long segmentLength = (length + segments - 1) / segments;
+        starts = new long[segments];
+        ends = new long[segments];
+        written = new long[segments];
+        for (int i = 0; i < segments; i++) {
+            starts[i] = i * segmentLength;
+            ends[i] = Math.min(length, starts[i] + segmentLength);
+            if (i > 0) {
+                pending.add(i);
+            }
+        }
+    }
+
+    /**
+     * Downloads the file into the channel and closes it. The bytes downloaded from the start of the file are recorded
+     * as partial download as they grow; if the download fails, the file is cut down to them.
+     *
+     * @param httpGet      the request for the whole file, which is aborted once the first segment has been read
+     * @param httpResponse the response for the whole file
+     * @param channel      the channel to write to, of the length of the file
+     */
+    void transfer(HttpGet httpGet, HttpResponse httpResponse, FileChannel channel, PartialDownload partialDownload) throws IOException {
+        Header eTag = httpResponse.getFirstHeader("ETag");
+        Header lastModified = httpResponse.getFirstHeader("Last-Modified");
+        validator = eTag != null && !eTag.getValue().startsWith("W/") ? eTag.getValue() : lastModified != null ? lastModified.getValue() : null;
+        this.partialDownload = partialDownload;
+        Semaphore permits = permits(URI.create(track.getDownloadUrl()).getHost());
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+        boolean complete = false;
+        try {
+            for (int i = 1; i < starts.length && permits.tryAcquire(); i++) {
+                workers.add(executorService.submit(worker(channel, permits)));
+            }
+            log.fine(format("downloading %s in %d segments on %d connections", track, starts.length, workers.size() + 1));
+            try {
+                copy(httpResponse.getEntity().getContent(), channel, 0);
+            } finally {
+                httpGet.abort();
+            }
+            do {
+                fetchPending(channel, false);
+                join(workers);
+            } while (failure == null && !pending.isEmpty());
+            if (failure != null) {
+                throw failure;
+            }
+            for (int i = 0; i < starts.length; i++) {
+                if (written[i] != ends[i] - starts[i]) {
+                    throw new IOException(format("%s: segment %d has %d of %d bytes", track.getDownloadUrl(), i, written[i], ends[i] - starts[i]));
+                }
+            }
+            if (channel.size() != ends[ends.length - 1]) {
+                throw new IOException(format("%s: %d of %d bytes", track.getDownloadUrl(), channel.size(), ends[ends.length - 1]));
+            }
+            complete = true;
+        } catch (IOException ex) {
+            fail(ex);
+            throw ex;
+        } catch (RuntimeException ex) {
+            fail(new IOException(ex));
+            throw ex;
+        } finally {
+            try {
+                if (!complete) {
+                    stop(workers, channel, partialDownload);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private Runnable worker(final FileChannel channel, final Semaphore permits) {
+        return new Runnable() {
+            public void run() {
+                try {
+                    fetchPending(channel, true);
+                } catch (IOException ex) {
+                    fail(ex);
+                } catch (RuntimeException ex) {
+                    fail(new IOException(ex));
+                } finally {
+                    permits.release();
+                }
+            }
+        };
+    }
+
+    /**
+     * Downloads segments nobody has started until there are none left.
+     *
+     * @param extra true on an extra connection, which leaves its segment to the others if the pool has no connection
+     */
+    private void fetchPending(FileChannel channel, boolean extra) throws IOException {
+        Integer segment;
+        while (failure == null && (segment = pending.poll()) != null) {
+            try {
+                fetch(segment, channel, extra);
+            } catch (ConnectionPoolTimeoutException ex) {
+                pending.add(segment);
+                return;
+            }
+        }
+    }
+
+    private void fetch(int segment, FileChannel channel, boolean extra) throws IOException {
+        HttpGet httpGet = new HttpGet(track.getDownloadUrl());
+        httpGet.setHeaders(headers);
+        httpGet.setHeader("Range", "bytes=" + starts[segment] + "-" + (ends[segment] - 1));
+        if (validator != null) {
+            httpGet.setHeader("If-Range", validator);
+        }
+        if (extra) {
+            httpGet.setConfig(RequestConfig.custom().setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT_MILLIS).build());
+        }
+        HttpResponse httpResponse = httpClient.execute(httpGet);
+        HttpEntity httpEntity = httpResponse.getEntity();
+        boolean read = false;
+        try {
+            int statusCode = httpResponse.getStatusLine().getStatusCode();
+            if (statusCode != HttpStatus.SC_PARTIAL_CONTENT) {
+                throw new HttpResponseException(statusCode, format("%s: %d %s for segment %d", track.getDownloadUrl(), statusCode, httpResponse.getStatusLine().getReasonPhrase(), segment));
+            }
+            Header contentRange = httpResponse.getFirstHeader("Content-Range");
+            if (contentRange == null || !contentRange.getValue().startsWith("bytes " + starts[segment] + "-")) {
+                throw new IOException(format("%s: asked for bytes from %d, got %s", track.getDownloadUrl(), starts[segment], contentRange));
+            }
+            copy(httpEntity.getContent(), channel, segment);
+            read = written[segment] == ends[segment] - starts[segment];
+        } finally {
+            if (read) {
+                EntityUtils.consume(httpEntity);
+            } else {
+                httpGet.abort();
+            }
+        }
+    }
+
+    private void copy(InputStream inputStream, FileChannel channel, int segment) throws IOException {
+        OutputStream outputStream = task.makeMonitoredOutputStream(new ChannelOutputStream(channel, starts[segment]));
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = ends[segment] - starts[segment];
+        while (remaining > 0 && failure == null) {
+            int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                break;
+            }
+            outputStream.write(buffer, 0, read);
+            advance(segment, read);
+            remaining -= read;
+        }
+        if (remaining > 0 && failure == null) {
+            throw new IOException(format("%s: segment %d ended %d bytes early", track.getDownloadUrl(), segment, remaining));
+        }
+    }
+
+    /**
+     * Counts bytes written to a segment, and records the partial download once the bytes downloaded from the start
+     * of the file have grown by the record interval.
+     */
+    private synchronized void advance(int segment, int bytes) {
+        written[segment] += bytes;
+        long contiguous = contiguous();
+        if (partialDownload != null && contiguous - recorded >= RECORD_INTERVAL) {
+            recorded = contiguous;
+            partialDownload.setBytes(contiguous);
+            track.getStore().setPartialDownload(partialDownload);
+        }
+    }
+
+    /**
+     * @return the number of bytes downloaded from the start of the file
+     */
+    private synchronized long contiguous() {
+        long bytes = 0;
+        for (int i = 0; i < starts.length; i++) {
+            bytes += written[i];
+            if (written[i] != ends[i] - starts[i]) {
+                break;
+            }
+        }
+        return bytes;
+    }
+
+    private void join(List<Future<?>> workers) throws IOException {
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException("interrupted while downloading " + track);
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    private synchronized void fail(IOException ex) {
+        if (failure == null) {
+            failure = ex;
+        }
+    }
+
+    /**
+     * Waits for the extra connections to stop, then keeps the bytes downloaded from the start of the file.
+     */
+    private void stop(List<Future<?>> workers, FileChannel channel, PartialDownload partialDownload) throws IOException {
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException ignore) {
+                // recorded as failure
+            }
+        }
+        long bytes = contiguous();
+        channel.truncate(bytes);
+        if (partialDownload != null) {
+            partialDownload.setBytes(bytes);
+            track.getStore().setPartialDownload(partialDownload);
+        }
+    }
+
+    private static Semaphore permits(String host) {
+        synchronized (hostPermits) {
+            Semaphore permits = hostPermits.get(host);
+            if (permits == null) {
+                permits = new Semaphore(MAX_EXTRA_CONNECTIONS_PER_HOST);
+                hostPermits.put(host, permits);
+            }
+            return permits;
+        }
+    }
+
+    /**
+     * Writes to a channel from a position on, without moving the position of the channel.
+     */
+    private static class ChannelOutputStream extends OutputStream {
+        private final FileChannel channel;
+        private long position;
+
+        private ChannelOutputStream(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.groovesquid.model.Track;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 public class Soundcloud extends Hoster {
 
@@ -27,4 +28,11 @@ public class Soundcloud extends Hoster {
         return null;
     }
 
+    /**
+     * The URLs are made of the track ids, which do not change.
+     */
+    public long getUrlTimeToLive() {
+        return TimeUnit.DAYS.toMillis(7);
+    }
+
 }
@@ -46,8 +46,13 @@ public class ByteBuffer extends ByteArrayOutputStream {
     }
 
 
+    /**
+     * Reads the bytes written so far and waits for more until the buffer is closed. Several streams may
+     * read the same buffer; closing one of them does not close the buffer.
+     */
     private class ByteBufferInputStream extends InputStream {
         private int pos = 0;
+        private volatile boolean streamClosed;
 
         @Override public int read() throws IOException {
             while (true) {
@@ -76,6 +81,18 @@ public class ByteBuffer extends ByteArrayOutputStream {
             }
         }
 
+        /**
+         * Skips within the data written so far, waiting for more if needed.
+         */
+        @Override public long skip(long n) throws IOException {
+            if (n <= 0 || isEof()) {
+                return 0;
+            }
+            int skipped = (int) Math.min(n, count - pos);
+            pos += skipped;
+            return skipped;
+        }
+
         /**
          * Waits for next data, returns if data is available or eof reached.
          *
@@ -83,27 +100,34 @@ public class ByteBuffer extends ByteArrayOutputStream {
          * @throws IOException on i/o error
          */
         private boolean isEof() throws IOException {
-            if (closed && pos >= count) {
+            if (streamClosed || closed && pos >= count) {
                 return true;
             }
             if (pos >= count) {
                 synchronized (lock) {
                     try {
-                        lock.wait();
+                        if (!streamClosed && !closed && pos >= count)
+                            lock.wait();
                     } catch (InterruptedException ex) {
                         throw new IOException(ex);
                     }
                 }
             }
-            return closed && pos >= count;
+            return streamClosed || closed && pos >= count;
         }
 
         @Override public int available() throws IOException {
             return count - pos;
         }
 
+        /**
+         * Closes this stream, waking it up if it waits for data.
+         */
         @Override public void close() throws IOException {
-            ByteBuffer.this.close();
+            streamClosed = true;
+            synchronized (lock) {
+                lock.notifyAll();
+            }
         }
     }
 }
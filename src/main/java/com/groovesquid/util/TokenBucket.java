@@ -0,0 +1,76 @@
+package com.groovesquid.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits a rate, e.g. of requests or bytes, to a number of tokens per second, allowing bursts of up to one second's
+ * tokens. Tokens can be reserved ahead: a reservation the bucket cannot cover yet returns how long to wait, and later
+ * reservations wait behind it.
+ */
+public class TokenBucket {
+
+    private double rate;
+    private double tokens;
+    private long updated = System.nanoTime();
+
+    /**
+     * @param rate tokens per second, or 0 for no limit
+     */
+    public TokenBucket(double rate) {
+        this.rate = rate;
+        this.tokens = capacity();
+    }
+
+    /**
+     * Changes the rate; tokens reserved so far stay reserved.
+     *
+     * @param rate tokens per second, or 0 for no limit
+     */
+    public synchronized void setRate(double rate) {
+        if (rate != this.rate) {
+            refill();
+            this.rate = rate;
+            tokens = Math.min(tokens, capacity());
+        }
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * Takes tokens, whether or not the bucket has them yet.
+     *
+     * @return how long to wait until the tokens are there, in nanoseconds
+     */
+    public synchronized long reserve(double permits) {
+        if (rate <= 0) {
+            return 0;
+        }
+        refill();
+        tokens -= permits;
+        return tokens >= 0 ? 0 : (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Takes tokens, waiting until the bucket has them.
+     */
+    public void acquire(double permits) throws InterruptedException {
+        long nanos = reserve(permits);
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+
+    private double capacity() {
+        return Math.max(1, rate);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (rate > 0) {
+            tokens = Math.min(capacity(), tokens + (now - updated) * rate / TimeUnit.SECONDS.toNanos(1));
+        }
+        updated = now;
+    }
+}
@@ -26,12 +26,28 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javazoom.jl.decoder.Bitstream;
 import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.FrameIndex;
 import javazoom.jl.decoder.Header;
 import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.MappedFileSource;
 import javazoom.jl.decoder.Obuffer;
+import javazoom.jl.decoder.Source;
 
 /**
  * The <code>Converter</code> class implements the conversion of
@@ -46,6 +62,19 @@ import javazoom.jl.decoder.Obuffer;
  */
 public class Converter
 {
+	/**
+	 * Frames decoded by one task when converting a file in parallel.
+	 */
+	static private final int	SEGMENT_FRAMES = 512;
+
+	private int					threads = 1;
+
+	/**
+	 * Frames per segment of <code>convertParallel()</code>; tests use
+	 * short segments to split a file at many frames.
+	 */
+	int							segmentFrames = SEGMENT_FRAMES;
+
 	/**
 	 * Creates a new converter instance.
 	 */
@@ -53,6 +82,25 @@ public class Converter
 	{
 	}
 
+	/**
+	 * Sets the number of threads files are decoded with. With more
+	 * than one thread, a file is split into segments at frame
+	 * boundaries that are decoded in parallel, see
+	 * <code>convertParallel()</code>, and <code>convertBatch()</code>
+	 * converts that many files at a time.
+	 */
+	public void setThreads(int threads)
+	{
+		if (threads < 1)
+			throw new IllegalArgumentException("threads");
+		this.threads = threads;
+	}
+
+	public int getThreads()
+	{
+		return threads;
+	}
+
 	public synchronized void convert(String sourceName, String destName)
 		throws JavaLayerException
 	{
@@ -74,9 +122,18 @@ public class Converter
 		if (destName.length()==0)
 			destName = null;
 		try {
-			InputStream in = openInput(sourceName);
-			convert(in, destName, progressListener, decoderParams);
-			in.close();
+			MappedFileSource in = openSource(sourceName);
+			try
+			{
+				if (threads > 1)
+					convertParallel(in, destName, progressListener, decoderParams);
+				else
+					convert(in, destName, progressListener, decoderParams);
+			}
+			finally
+			{
+				in.close();
+			}
 		} catch(IOException ioe) {
 			throw new JavaLayerException(ioe.getLocalizedMessage(), ioe);
 		}
@@ -100,84 +157,609 @@ public class Converter
 			}
 			progressListener.converterUpdate(ProgressListener.UPDATE_FRAME_COUNT, frameCount, 0);
 
+			convert(new Bitstream(sourceStream), frameCount, destName, progressListener, decoderParams);
+		}
+		catch (IOException ex)
+		{
+			throw new JavaLayerException(ex.getLocalizedMessage(), ex);
+		}
+	}
 
-			Obuffer output = null;
-			Decoder decoder = new Decoder(decoderParams);
-			Bitstream stream = new Bitstream(sourceStream);
+	/**
+	 * Converts MPEG audio read from a <code>Source</code>. Seekable
+	 * sources such as a <code>MappedFileSource</code> are read
+	 * directly, without buffering and pushing back frame data.
+	 */
+	public synchronized void convert(Source source, String destName,
+		ProgressListener progressListener, Decoder.Params decoderParams)
+		throws JavaLayerException
+	{
+		if (progressListener==null)
+			progressListener = PrintWriterProgressListener.newStdOut(
+					PrintWriterProgressListener.NO_DETAIL);
+		progressListener.converterUpdate(ProgressListener.UPDATE_FRAME_COUNT, -1, 0);
 
-			if (frameCount==-1)
-				frameCount = Integer.MAX_VALUE;
+		Bitstream stream = new Bitstream(source);
+		convert(stream, -1, destName, progressListener, decoderParams);
+	}
 
-			int frame = 0;
-			long startTime = System.currentTimeMillis();
+	/**
+	 * Converts a file on several threads. The frames of the file are
+	 * indexed first. Then segments of the file are decoded in parallel,
+	 * each with its own decoder. Every segment starts decoding a few
+	 * frames early to rebuild the bit reservoir and the synthesis
+	 * state (see <code>FrameIndex.priming_frame()</code>), so the
+	 * output is the same as that of the sequential conversion.
+	 *
+	 * Progress of the first pass is reported through parsedFrame().
+	 * readFrame() and decodedFrame() are called on the calling thread,
+	 * in order, once a segment has been decoded; their header is that
+	 * of the last frame of the segment. If decoding a frame fails and
+	 * the listener continues, the rest of that segment is skipped.
+	 */
+	public synchronized void convertParallel(MappedFileSource source, String destName,
+		ProgressListener progressListener, Decoder.Params decoderParams)
+		throws JavaLayerException
+	{
+		if (progressListener==null)
+			progressListener = PrintWriterProgressListener.newStdOut(
+					PrintWriterProgressListener.NO_DETAIL);
+
+		long startTime = System.currentTimeMillis();
+		FrameIndex index = new FrameIndex();
+		Bitstream stream = new Bitstream(source.duplicate());
+		int channels = 0;
+		int freq = 0;
+		int frameCount = 0;
+		for (Header header; (header = stream.readFrame())!=null; frameCount++)
+		{
+			if (frameCount==0)
+			{
+				channels = outputChannels(header, decoderParams);
+				freq = outputFrequency(header, decoderParams);
+				index.set_first_frame(header, stream.frame_pos());
+			}
+			index.add(frameCount, stream.frame_pos());
+			progressListener.parsedFrame(frameCount, header);
+			stream.closeFrame();
+		}
+		progressListener.converterUpdate(ProgressListener.UPDATE_FRAME_COUNT, frameCount, 0);
 
+		int frame = 0;
+		if (frameCount > 0)
+		{
+			ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "converter");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			WaveFileObuffer output = new WaveFileObuffer(channels, freq, destName);
 			try
 			{
-				for (; frame<frameCount; frame++)
+				LinkedList<Future<Segment>> pending = new LinkedList<Future<Segment>>();
+				int next = 0;
+				while (next < frameCount || !pending.isEmpty())
+				{
+					// keep every thread busy, with a bounded amount of decoded audio
+					while (next < frameCount && pending.size() < threads * 2)
+					{
+						int last = Math.min(next + segmentFrames, frameCount);
+						pending.add(pool.submit(new SegmentTask(source, index, next, last,
+							channels, decoderParams)));
+						next = last;
+					}
+
+					Segment segment = pending.removeFirst().get();
+					output.write_samples(segment.samples, segment.length);
+					for (int i = 0; i < segment.frames; i++, frame++)
+					{
+						progressListener.readFrame(frame, segment.header);
+						progressListener.decodedFrame(frame, segment.header, output);
+					}
+					if (segment.failure!=null)
+					{
+						frame = segment.last;
+						if (!progressListener.converterException(segment.failure))
+							throw new JavaLayerException(segment.failure.getLocalizedMessage(), segment.failure);
+					}
+				}
+			}
+			catch (InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+				throw new JavaLayerException("Conversion interrupted", ex);
+			}
+			catch (ExecutionException ex)
+			{
+				throw new JavaLayerException(ex.getCause().getLocalizedMessage(), ex.getCause());
+			}
+			finally
+			{
+				pool.shutdownNow();
+				output.close();
+			}
+		}
+
+		int time = (int)(System.currentTimeMillis()-startTime);
+		progressListener.converterUpdate(ProgressListener.UPDATE_CONVERT_COMPLETE,
+			time, frame);
+	}
+
+	/**
+	 * Converts several files, <code>getThreads()</code> files at a
+	 * time. Each file is converted on one worker thread with its own
+	 * decoder. Files whose output is at least as recent as the file
+	 * itself are skipped.
+	 *
+	 * The output of a file is written to <code>destDir</code>, or next
+	 * to the file if <code>destDir</code> is null, under the name of
+	 * the file with a <code>.wav</code> extension; see
+	 * <code>destination()</code>. It is written with a further
+	 * <code>.part</code> extension and renamed once it is complete.
+	 *
+	 * The listener is only notified on the calling thread, except for
+	 * converterException(), and is not told about single frames. For
+	 * every file, in the order the files are done, it gets either
+	 * UPDATE_FILE_SKIPPED, or UPDATE_CONVERT_COMPLETE for the file
+	 * followed by UPDATE_FILE_COMPLETE. UPDATE_BATCH_COMPLETE comes
+	 * last. If a file fails and the listener does not continue, the
+	 * files not started yet are not converted and the exception is
+	 * thrown once the files being converted are done.
+	 *
+	 * @return the number of files converted
+	 */
+	public synchronized int convertBatch(File[] sources, File destDir,
+		ProgressListener progressListener, Decoder.Params decoderParams)
+		throws JavaLayerException
+	{
+		if (progressListener==null)
+			progressListener = PrintWriterProgressListener.newStdOut(
+					PrintWriterProgressListener.NO_DETAIL);
+
+		long startTime = System.currentTimeMillis();
+		ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "converter");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		CompletionService<BatchResult> done = new ExecutorCompletionService<BatchResult>(pool);
+		List<Future<BatchResult>> pending = new ArrayList<Future<BatchResult>>();
+		for (int i = 0; i < sources.length; i++)
+		{
+			pending.add(done.submit(new BatchTask(i, sources[i],
+				destination(sources[i], destDir), progressListener, decoderParams)));
+		}
+
+		int converted = 0;
+		long frames = 0;
+		JavaLayerException failure = null;
+		try
+		{
+			for (int i = 0; i < sources.length; i++)
+			{
+				BatchResult result;
+				try
+				{
+					result = done.take().get();
+				}
+				catch (CancellationException ex)
 				{
-					try
+					continue;
+				}
+				catch (ExecutionException ex)
+				{
+					if (failure==null)
 					{
-						Header header = stream.readFrame();
-						if (header==null)
-							break;
+						Throwable cause = ex.getCause();
+						failure = (cause instanceof JavaLayerException) ?
+							(JavaLayerException)cause :
+							new JavaLayerException(cause.getLocalizedMessage(), cause);
+						for (Future<BatchResult> f : pending)
+							f.cancel(false);
+					}
+					continue;
+				}
 
-						progressListener.readFrame(frame, header);
+				if (result.skipped)
+				{
+					progressListener.converterUpdate(ProgressListener.UPDATE_FILE_SKIPPED,
+						result.index, 0);
+				}
+				else
+				{
+					progressListener.converterUpdate(ProgressListener.UPDATE_CONVERT_COMPLETE,
+						result.time, result.frames);
+					progressListener.converterUpdate(ProgressListener.UPDATE_FILE_COMPLETE,
+						result.index, result.time);
+					converted++;
+					frames += result.frames;
+				}
+			}
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new JavaLayerException("Conversion interrupted", ex);
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		if (failure!=null)
+			throw failure;
 
-						if (output==null)
-						{
-							// REVIEW: Incorrect functionality.
-							// the decoder should provide decoded
-							// frequency and channels output as it may differ from
-							// the source (e.g. when downmixing stereo to mono.)
-							int channels = (header.mode()==Header.SINGLE_CHANNEL) ? 1 : 2;
-							int freq = header.frequency();
-							output = new WaveFileObuffer(channels, freq, destName);
-							decoder.setOutputBuffer(output);
-						}
+		int time = (int)(System.currentTimeMillis()-startTime);
+		progressListener.converterUpdate(ProgressListener.UPDATE_BATCH_COMPLETE,
+			time, (int)Math.min(frames, Integer.MAX_VALUE));
+		return converted;
+	}
 
-						Obuffer decoderOutput = decoder.decodeFrame(header, stream);
+	/**
+	 * Lists the MPEG audio files of a directory, that is the files
+	 * with an <code>.mp1</code>, <code>.mp2</code> or <code>.mp3</code>
+	 * extension, sorted by name.
+	 */
+	static public File[] listSources(File dir)
+	{
+		File[] files = dir.listFiles();
+		if (files==null)
+			return new File[0];
 
-						// REVIEW: the way the output buffer is set
-						// on the decoder is a bit dodgy. Even though
-						// this exception should never happen, we test to be sure.
-						if (decoderOutput!=output)
-							throw new InternalError("Output buffers are different.");
+		List<File> sources = new ArrayList<File>();
+		for (int i = 0; i < files.length; i++)
+		{
+			String name = files[i].getName().toLowerCase();
+			if (files[i].isFile() && (name.endsWith(".mp1") ||
+				name.endsWith(".mp2") || name.endsWith(".mp3")))
+				sources.add(files[i]);
+		}
+		File[] result = sources.toArray(new File[sources.size()]);
+		Arrays.sort(result);
+		return result;
+	}
 
+	/**
+	 * Returns the wave file a file is converted to by
+	 * <code>convertBatch()</code>.
+	 */
+	static public File destination(File source, File destDir)
+	{
+		String name = source.getName();
+		int dot = name.lastIndexOf('.');
+		if (dot > 0)
+			name = name.substring(0, dot);
+		return new File(destDir!=null ? destDir : source.getAbsoluteFile().getParentFile(),
+			name+".wav");
+	}
 
-						progressListener.decodedFrame(frame, header, output);
+	private void convert(Bitstream stream, int frameCount, String destName,
+		ProgressListener progressListener, Decoder.Params decoderParams)
+		throws JavaLayerException
+	{
+		Obuffer output = null;
+		Decoder decoder = new Decoder(decoderParams);
 
-						stream.closeFrame();
+		if (frameCount==-1)
+			frameCount = Integer.MAX_VALUE;
 
-					}
-					catch (Exception ex)
+		int frame = 0;
+		long startTime = System.currentTimeMillis();
+
+		try
+		{
+			for (; frame<frameCount; frame++)
+			{
+				try
+				{
+					Header header = stream.readFrame();
+					if (header==null)
+						break;
+
+					progressListener.readFrame(frame, header);
+
+					if (output==null)
 					{
-						boolean stop = !progressListener.converterException(ex);
+						int channels = outputChannels(header, decoderParams);
+						int freq = outputFrequency(header, decoderParams);
+						output = new WaveFileObuffer(channels, freq, destName);
+						decoder.setOutputBuffer(output);
+					}
+
+					Obuffer decoderOutput = decoder.decodeFrame(header, stream);
+
+					// REVIEW: the way the output buffer is set
+					// on the decoder is a bit dodgy. Even though
+					// this exception should never happen, we test to be sure.
+					if (decoderOutput!=output)
+						throw new InternalError("Output buffers are different.");
+
+
+					progressListener.decodedFrame(frame, header, output);
+
+					stream.closeFrame();
 
-						if (stop)
-						{
-							throw new JavaLayerException(ex.getLocalizedMessage(), ex);
-						}
+				}
+				catch (Exception ex)
+				{
+					boolean stop = !progressListener.converterException(ex);
+
+					if (stop)
+					{
+						throw new JavaLayerException(ex.getLocalizedMessage(), ex);
 					}
 				}
+			}
+
+		}
+		finally
+		{
+
+			if (output!=null)
+				output.close();
+		}
+
+		int time = (int)(System.currentTimeMillis()-startTime);
+		progressListener.converterUpdate(ProgressListener.UPDATE_CONVERT_COMPLETE,
+			time, frame);
+	}
+
+
+	static private class BatchResult
+	{
+		int			index;
+		boolean		skipped;
+		int			time;
+		int			frames;
+	}
+
+	/**
+	 * Converts one file of a batch, unless its output is up to date.
+	 */
+	private class BatchTask implements Callable<BatchResult>, ProgressListener
+	{
+		private final BatchResult			result = new BatchResult();
+		private final File					source;
+		private final File					dest;
+		private final ProgressListener		listener;
+		private final Decoder.Params		params;
+
+		BatchTask(int index, File source, File dest, ProgressListener listener,
+			Decoder.Params params)
+		{
+			result.index = index;
+			this.source = source;
+			this.dest = dest;
+			this.listener = listener;
+			this.params = params;
+		}
 
+		public BatchResult call() throws Exception
+		{
+			if (dest.exists() && dest.lastModified() >= source.lastModified())
+			{
+				result.skipped = true;
+				return result;
+			}
+
+			// The output is written under another name and renamed when
+			// it is complete, so a conversion that fails or is cut short
+			// does not leave a file that a later batch takes as up to date.
+			File part = new File(dest.getPath()+".part");
+			MappedFileSource in = openSource(source.getPath());
+			boolean complete = false;
+			try
+			{
+				convert(new Bitstream(in), -1, part.getPath(), this, params);
+				complete = true;
 			}
 			finally
 			{
+				in.close();
+				if (!complete)
+					part.delete();
+			}
 
-				if (output!=null)
-					output.close();
+			if (part.exists())
+			{
+				dest.delete();
+				if (!part.renameTo(dest))
+				{
+					part.delete();
+					throw new JavaLayerException("Cannot rename "+part+" to "+dest);
+				}
 			}
+			return result;
+		}
 
-			int time = (int)(System.currentTimeMillis()-startTime);
-			progressListener.converterUpdate(ProgressListener.UPDATE_CONVERT_COMPLETE,
-				time, frame);
+		public void converterUpdate(int updateID, int param1, int param2)
+		{
+			if (updateID==UPDATE_CONVERT_COMPLETE)
+			{
+				result.time = param1;
+				result.frames = param2;
+			}
 		}
-		catch (IOException ex)
+
+		public void parsedFrame(int frameNo, Header header)
 		{
-			throw new JavaLayerException(ex.getLocalizedMessage(), ex);
+		}
+
+		public void readFrame(int frameNo, Header header)
+		{
+		}
+
+		public void decodedFrame(int frameNo, Header header, Obuffer o)
+		{
+		}
+
+		public boolean converterException(Throwable t)
+		{
+			synchronized (listener)
+			{
+				return listener.converterException(t);
+			}
+		}
+	}
+
+	/**
+	 * Decoded PCM of frames <code>first</code> to <code>last-1</code>.
+	 */
+	static private class Segment
+	{
+		final int		last;
+		short[]			samples;
+		int				length;
+		int				frames;
+		Header			header;
+		Exception		failure;
+
+		Segment(int last, int capacity)
+		{
+			this.last = last;
+			samples = new short[capacity];
 		}
 	}
 
+	/**
+	 * Decodes one segment of a file into memory, starting at the
+	 * priming frame of its first frame and keeping only the output
+	 * of the frames of the segment.
+	 */
+	static private class SegmentTask implements Callable<Segment>
+	{
+		private final MappedFileSource	source;
+		private final FrameIndex		index;
+		private final int				first, last;
+		private final int				channels;
+		private final Decoder.Params	params;
+
+		SegmentTask(MappedFileSource source, FrameIndex index, int first, int last,
+			int channels, Decoder.Params params)
+		{
+			this.source = source;
+			this.index = index;
+			this.first = first;
+			this.last = last;
+			this.channels = channels;
+			this.params = params;
+		}
+
+		public Segment call() throws Exception
+		{
+			Segment segment = new Segment(last, (last - first) * Obuffer.OBUFFERSIZE);
+			SegmentObuffer output = new SegmentObuffer(channels, segment);
+			Decoder decoder = new Decoder(params);
+			decoder.setOutputBuffer(output);
+
+			int frame = index.priming_frame(first);
+			Bitstream stream = new Bitstream(source.duplicate());
+			if (!stream.seek(index.offset(frame)))
+				throw new JavaLayerException("Cannot seek to frame "+frame);
+			try
+			{
+				for (; frame < last; frame++)
+				{
+					Header header = stream.readFrame();
+					if (header==null)
+						break;
+					output.keep = frame >= first;
+					decoder.decodeFrame(header, stream);
+					stream.closeFrame();
+					if (output.keep)
+					{
+						segment.header = header;
+						segment.frames++;
+					}
+				}
+			}
+			catch (Exception ex)
+			{
+				segment.failure = ex;
+			}
+			return segment;
+		}
+	}
+
+	/**
+	 * Collects decoded frames into a segment, converting samples the
+	 * same way as <code>WaveFileObuffer</code>.
+	 */
+	static private class SegmentObuffer extends Obuffer
+	{
+		private final short[]	buffer = new short[OBUFFERSIZE];
+		private final int[]		bufferp = new int[MAXCHANNELS];
+		private final int		channels;
+		private final Segment	segment;
+		boolean					keep;
+
+		SegmentObuffer(int channels, Segment segment)
+		{
+			this.channels = channels;
+			this.segment = segment;
+			clear_buffer();
+		}
+
+		public void append(int channel, short value)
+		{
+			buffer[bufferp[channel]] = value;
+			bufferp[channel] += channels;
+		}
+
+		public void write_buffer(int val)
+		{
+			if (keep)
+			{
+				System.arraycopy(buffer, 0, segment.samples, segment.length, bufferp[0]);
+				segment.length += bufferp[0];
+			}
+			clear_buffer();
+		}
+
+		public void clear_buffer()
+		{
+			for (int i = 0; i < channels; ++i)
+				bufferp[i] = i;
+		}
+
+		public void close()
+		{
+		}
+
+		public void set_stop_flag()
+		{
+		}
+	}
+
+
+	/**
+	 * Returns the number of channels the decoder outputs, which is 1
+	 * for stereo when a single channel is selected or the channels
+	 * are downmixed.
+	 */
+	static private int outputChannels(Header header, Decoder.Params params)
+	{
+		int channels = (header.mode()==Header.SINGLE_CHANNEL) ? 1 : 2;
+		if (params!=null)
+			channels = Math.min(channels, params.getOutputChannels().getChannelCount());
+		return channels;
+	}
+
+	static private int outputFrequency(Header header, Decoder.Params params)
+	{
+		int freq = header.frequency();
+		if (params!=null)
+			freq /= params.getDownSample();
+		return freq;
+	}
+
 
 	protected int countFrames(InputStream in)
 	{
@@ -185,6 +767,15 @@ public class Converter
 	}
 
 
+	protected MappedFileSource openSource(String fileName)
+		throws IOException
+	{
+		// ensure name is abstract path name
+		File file = new File(fileName);
+		return new MappedFileSource(file);
+	}
+
+
 	protected InputStream openInput(String fileName)
 		throws IOException
 	{
@@ -214,6 +805,26 @@ public class Converter
 		 */
 		public static final int UPDATE_CONVERT_COMPLETE = 2;
 
+		/**
+		 * A file of a batch has been converted. Param1 contains the
+		 * index of the file, param2 the time to convert it in
+		 * milliseconds.
+		 */
+		public static final int UPDATE_FILE_COMPLETE = 3;
+
+		/**
+		 * A file of a batch has been skipped because its output is
+		 * up to date. Param1 contains the index of the file.
+		 */
+		public static final int UPDATE_FILE_SKIPPED = 4;
+
+		/**
+		 * A batch is complete. Param1 contains the time to convert
+		 * the batch in milliseconds, param2 the number of MPEG audio
+		 * frames converted.
+		 */
+		public static final int UPDATE_BATCH_COMPLETE = 5;
+
 
 		/**
 		 * Notifies the listener that new information is available.
@@ -229,6 +840,11 @@ public class Converter
 		 * UPDATE_FRAME_COUNT: param1 is the frame count, or -1 if not known.
 		 * UPDATE_CONVERT_COMPLETE: param1 is the conversion time, param2
 		 *		is the number of frames converted.
+		 * UPDATE_FILE_COMPLETE: param1 is the index of the file, param2
+		 *		is the conversion time.
+		 * UPDATE_FILE_SKIPPED: param1 is the index of the file.
+		 * UPDATE_BATCH_COMPLETE: param1 is the conversion time, param2
+		 *		is the number of frames converted.
 		 */
 		public void converterUpdate(int updateID, int param1, int param2);
 
@@ -339,6 +955,16 @@ public class Converter
 					pw.println();
 					pw.println("Converted "+param2+" frames in "+param1+" ms ("+
 							   (param1/param2)+" ms per frame.)");
+					break;
+				case UPDATE_FILE_COMPLETE:
+					pw.println("File "+param1+" converted in "+param2+" ms.");
+					break;
+				case UPDATE_FILE_SKIPPED:
+					pw.println("File "+param1+" is up to date.");
+					break;
+				case UPDATE_BATCH_COMPLETE:
+					pw.println("Converted "+param2+" frames in "+param1+" ms ("+
+							   (param2*1000L/Math.max(param1, 1))+" frames per second.)");
 				}
 			}
 		}
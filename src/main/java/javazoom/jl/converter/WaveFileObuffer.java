@@ -25,11 +25,15 @@
 
 package javazoom.jl.converter;
 
+import java.io.IOException;
+
 import javazoom.jl.decoder.Obuffer;
 
 /**
  * Implements an Obuffer by writing the data to
- * a file in RIFF WAVE format. 
+ * a file in RIFF WAVE format, through a <code>WaveFileWriter</code>.
+ * Errors writing the file are thrown as
+ * <code>IllegalStateException</code>s.
  *  
  * @since 0.0
  */
@@ -40,7 +44,7 @@ public class WaveFileObuffer extends Obuffer
   private short[] 		buffer;
   private short[] 		bufferp;
   private int 			channels;
-  private WaveFile      outWave;
+  private WaveFileWriter outWave;
 
   /**
    * Creates a new WareFileObuffer instance. 
@@ -65,9 +69,14 @@ public class WaveFileObuffer extends Obuffer
 	for (int i = 0; i < number_of_channels; ++i) 
 		bufferp[i] = (short)i;
 	
-	outWave = new WaveFile();
-	
-    int rc = outWave.OpenForWrite (FileName,freq,(short)16,(short)channels);
+	try
+	{
+		outWave = new WaveFileWriter(FileName, freq, channels);
+	}
+	catch (IOException ex)
+	{
+		throw new IllegalStateException("Cannot open "+FileName, ex);
+	}
   }
 
   /**
@@ -80,17 +89,12 @@ public class WaveFileObuffer extends Obuffer
   }
 
   /**
-   * Write the samples to the file (Random Acces).
+   * Write the samples to the file.
    */
   short[] myBuffer = new short[2];
   public void write_buffer(int val)
   {
-	  
-    int k = 0;
-    int rc = 0;
-    
-	rc = outWave.WriteData(buffer, bufferp[0]);
-	// REVIEW: handle RiffFile errors. 
+	write_samples(buffer, bufferp[0]);
 	/*
     for (int j=0;j<bufferp[0];j=j+2)
     {
@@ -105,9 +109,31 @@ public class WaveFileObuffer extends Obuffer
     for (int i = 0; i < channels; ++i) bufferp[i] = (short)i;
   }
 
+  /**
+   * Writes interleaved samples that were decoded into another buffer.
+   */
+  public void write_samples(short[] samples, int length)
+  {
+	try
+	{
+		outWave.write(samples, 0, length);
+	}
+	catch (IOException ex)
+	{
+		throw new IllegalStateException("Cannot write samples", ex);
+	}
+  }
+
   public void close()
   {
-    outWave.Close(); 
+	try
+	{
+		outWave.close();
+	}
+	catch (IOException ex)
+	{
+		throw new IllegalStateException("Cannot close wave file", ex);
+	}
   }
   
   /**
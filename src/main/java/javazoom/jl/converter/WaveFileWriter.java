@@ -0,0 +1,156 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.converter;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes 16-bit PCM to a RIFF WAVE file through a
+ * <code>FileChannel</code>. Samples are collected in a direct buffer
+ * and written many frames at a time; the sizes of the RIFF and data
+ * chunks are patched when the file is closed.
+ *
+ * Writes the same files as <code>WaveFile</code>, without allocating
+ * or making a system call for every frame.
+ */
+public class WaveFileWriter
+{
+	static private final int	HEADER_SIZE = 44;
+
+	/**
+	 * Size of the buffer, about 28 stereo frames of 1152 samples.
+	 */
+	static private final int	BUFFER_SIZE = 128 * 1024;
+
+	private final FileChannel	channel;
+	private final ByteBuffer	buffer;
+	private final ShortBuffer	shorts;
+	private long				dataSize;
+
+	/**
+	 * Creates or truncates a file and writes the header of a WAVE
+	 * file with 16-bit samples.
+	 */
+	public WaveFileWriter(String fileName, int samplingRate, int channels)
+		throws IOException
+	{
+		if (channels < 1 || channels > WaveFile.MAX_WAVE_CHANNELS)
+			throw new IllegalArgumentException("channels");
+
+		RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+		channel = file.getChannel();
+		try
+		{
+			channel.truncate(0);
+			buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			shorts = buffer.asShortBuffer();
+
+			int blockAlign = channels * 2;
+			putChunk("RIFF", 0);
+			buffer.put(id("WAVE"));
+			putChunk("fmt ", 16);
+			buffer.putShort((short)1);						// PCM
+			buffer.putShort((short)channels);
+			buffer.putInt(samplingRate);
+			buffer.putInt(samplingRate * blockAlign);		// bytes per second
+			buffer.putShort((short)blockAlign);
+			buffer.putShort((short)16);						// bits per sample
+			putChunk("data", 0);
+		}
+		catch (IOException ex)
+		{
+			file.close();
+			throw ex;
+		}
+	}
+
+	static private byte[] id(String fourCC)
+	{
+		byte[] id = new byte[4];
+		for (int i = 0; i < 4; i++)
+			id[i] = (byte)fourCC.charAt(i);
+		return id;
+	}
+
+	private void putChunk(String fourCC, int size)
+	{
+		buffer.put(id(fourCC)).putInt(size);
+	}
+
+	/**
+	 * Writes interleaved 16-bit samples.
+	 */
+	public void write(short[] samples, int offset, int length)
+		throws IOException
+	{
+		while (length > 0)
+		{
+			if (!buffer.hasRemaining())
+				flush();
+			int n = Math.min(length, buffer.remaining() >>> 1);
+			shorts.position(buffer.position() >>> 1);
+			shorts.put(samples, offset, n);
+			buffer.position(buffer.position() + (n << 1));
+			offset += n;
+			length -= n;
+			dataSize += n << 1;
+		}
+	}
+
+	/**
+	 * Writes the buffered samples to the file.
+	 */
+	public void flush() throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Writes the buffered samples and the chunk sizes, and closes
+	 * the file.
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+			// the sizes are 32-bit, like those written by WaveFile
+			buffer.putInt(0, (int)(HEADER_SIZE - 8 + dataSize));
+			buffer.limit(4);
+			channel.write(buffer, 4);
+			buffer.clear();
+			buffer.putInt(0, (int)dataSize);
+			buffer.limit(4);
+			channel.write(buffer, HEADER_SIZE - 4);
+			buffer.clear();
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+}
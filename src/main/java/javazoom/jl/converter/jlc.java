@@ -28,9 +28,13 @@
 
 package javazoom.jl.converter;
 
+import java.io.File;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 import javazoom.jl.decoder.Crc16;
+import javazoom.jl.decoder.Decoder;
 import javazoom.jl.decoder.JavaLayerException;
 import javazoom.jl.decoder.OutputChannels;
 
@@ -63,13 +67,32 @@ public class jlc
 					  ma.verbose_level :
 				Converter.PrintWriterProgressListener.NO_DETAIL);
 
-		Converter.ProgressListener listener =
-			new Converter.PrintWriterProgressListener(
-				new PrintWriter(System.out, true), detail);
-
 		try
 		{
-			conv.convert(ma.filename, ma.output_filename, listener);
+			if (ma.isBatch())
+			{
+				// convert as many files at a time as there are processors
+				// unless told otherwise
+				conv.setThreads(ma.threads > 0 ? ma.threads :
+					Runtime.getRuntime().availableProcessors());
+				File[] sources = ma.sources();
+				File destDir = ma.output_filename.length() > 0 ?
+					new File(ma.output_filename) : null;
+				if (destDir != null)
+					destDir.mkdirs();
+
+				Converter.ProgressListener listener =
+					new BatchListener(sources, new PrintWriter(System.out, true), detail);
+				conv.convertBatch(sources, destDir, listener, ma.params());
+			}
+			else
+			{
+				conv.setThreads(Math.max(ma.threads, 1));
+				Converter.ProgressListener listener =
+					new Converter.PrintWriterProgressListener(
+						new PrintWriter(System.out, true), detail);
+				conv.convert(ma.filename, ma.output_filename, listener, ma.params());
+			}
 		}
 		catch (JavaLayerException ex)
 		{
@@ -80,6 +103,43 @@ public class jlc
   }
 
 
+	/**
+	 * Prints the progress of a batch with the names of the files.
+	 */
+	static class BatchListener extends Converter.PrintWriterProgressListener
+	{
+		private final File[]		sources;
+		private final PrintWriter	pw;
+
+		BatchListener(File[] sources, PrintWriter writer, int detailLevel)
+		{
+			super(writer, detailLevel);
+			this.sources = sources;
+			this.pw = writer;
+		}
+
+		public void converterUpdate(int updateID, int param1, int param2)
+		{
+			switch (updateID)
+			{
+			case UPDATE_FILE_COMPLETE:
+				pw.println(sources[param1]+": converted in "+param2+" ms");
+				break;
+			case UPDATE_FILE_SKIPPED:
+				pw.println(sources[param1]+": up to date");
+				break;
+			case UPDATE_BATCH_COMPLETE:
+				pw.println("Converted "+param2+" frames in "+param1+" ms ("+
+					(param2*1000L/Math.max(param1, 1))+" frames per second)");
+				break;
+			case UPDATE_CONVERT_COMPLETE:
+				break;
+			default:
+				super.converterUpdate(updateID, param1, param2);
+			}
+		}
+	}
+
 	/**
 	 * Class to contain arguments for maplay.
 	 */
@@ -97,9 +157,12 @@ public class jlc
 	  public float				scalefactor;
 	  public String				output_filename;
 	  public String				filename;
+	  public List<String>		filenames = new ArrayList<String>();
 	  //public boolean 			stdout_mode;
 	  public boolean 			verbose_mode;
 	  public int				verbose_level = 3;
+	  public int				threads;
+	  public int				down_sample = 1;
 
 	  public jlcArgs()
 	  {
@@ -155,6 +218,16 @@ public class jlc
 			 }
 			 /* else if (argv[i].equals("-s"))
 				ma.stdout_mode = true; */
+			 else if (argv[i].equals("-l"))
+				which_c = OutputChannels.LEFT_CHANNEL;
+			 else if (argv[i].equals("-r"))
+				which_c = OutputChannels.RIGHT_CHANNEL;
+			 else if (argv[i].equals("-d"))
+				which_c = OutputChannels.DOWNMIX_CHANNELS;
+			 else if (argv[i].equals("-2"))
+				down_sample = 2;
+			 else if (argv[i].equals("-4"))
+				down_sample = 4;
 			 else if (argv[i].equals("-p"))
 			 {
 	      		if (++i == argc)
@@ -165,6 +238,27 @@ public class jlc
 		        //output_mode = O_WAVEFILE;
 	  		    output_filename = argv[i];
 			 }
+			 else if (argv[i].equals("-t"))
+			 {
+				if (++i == argc)
+				{
+				   System.out.println("Please specify a number of threads after the -t option!");
+				   System.exit (1);
+				}
+				try
+				{
+					threads = Integer.parseInt(argv[i]);
+				}
+				catch (NumberFormatException ex)
+				{
+					threads = 0;
+				}
+				if (threads < 1)
+				{
+				   System.out.println("Invalid number of threads: "+argv[i]);
+				   System.exit (1);
+				}
+			 }
 			 /*else if (argv[i].equals("-f"))
 			 {
 		        if (++i == argc)
@@ -180,6 +274,7 @@ public class jlc
 		  else
 		  {
 		  	filename = argv[i];
+			filenames.add(filename);
 			System.out.println("FileName = "+argv[i]);
 			if (filename == null) return Usage();
 		  }
@@ -192,21 +287,65 @@ public class jlc
 	  }
 
 
+	  /**
+	   * The decoder parameters for the channels and the sample rate
+	   * selected.
+	   */
+	  public Decoder.Params params()
+	  {
+		Decoder.Params params = new Decoder.Params();
+		params.setOutputChannels(OutputChannels.fromInt(which_c));
+		params.setDownSample(down_sample);
+		return params;
+	  }
+
+	  /**
+	   * Several files or a directory are converted as a batch.
+	   */
+	  public boolean isBatch()
+	  {
+		return filenames.size() > 1 || new File(filename).isDirectory();
+	  }
+
+	  /**
+	   * The files to convert, with directories replaced by the
+	   * MPEG audio files they contain.
+	   */
+	  public File[] sources()
+	  {
+		List<File> sources = new ArrayList<File>();
+		for (String name : filenames)
+		{
+			File file = new File(name);
+			if (file.isDirectory())
+				sources.addAll(java.util.Arrays.asList(Converter.listSources(file)));
+			else
+				sources.add(file);
+		}
+		return sources.toArray(new File[sources.size()]);
+	  }
+
 	   /**
 	    * Usage of JavaLayer.
 		*/
 	   public boolean Usage()
 	   {
 	  	 System.out.println("JavaLayer Converter :");
+		 System.out.println("  jlc [options] file...");
+		 System.out.println("  Several files or a directory are converted as a batch.");
 		 System.out.println("  -v[x]         verbose mode. ");
 		 System.out.println("                default = 2");
 	     /* System.out.println("  -s         write u-law samples at 8 kHz rate to stdout");
+	     System.out.println("  -s         write pcm samples to stdout");*/
 	     System.out.println("  -l         decode only the left channel");
 	     System.out.println("  -r         decode only the right channel");
-	     System.out.println("  -d         downmix mode (layer III only)");
-	     System.out.println("  -s         write pcm samples to stdout");
-	     System.out.println("  -d         downmix mode (layer III only)");*/
+	     System.out.println("  -d         downmix both channels to mono");
+	     System.out.println("  -2         decode at half the sample rate");
+	     System.out.println("  -4         decode at a quarter of the sample rate");
 	     System.out.println("  -p name    output as a PCM wave file");
+	     System.out.println("             (batch: directory of the wave files)");
+	     System.out.println("  -t n       decode on n threads");
+	     System.out.println("             (batch: convert n files at a time)");
 	     System.out.println("");
 	     System.out.println("  More info on http://www.javazoom.net");
 	     /* System.out.println("  -f ushort  use this scalefactor instead of the default value 32768");*/
@@ -54,9 +54,20 @@ final class BitReserve
 	 * modulus operation on BUFSIZE.
 	 */
 	private static final int		BUFSIZE_MASK = BUFSIZE-1;
+
+	/**
+	 * Mask for the index of a byte in the packed copy of the buffer.
+	 */
+	private static final int		PACKED_MASK = (BUFSIZE>>>3)-1;
 	
 	private int 					offset, totbit, buf_byte_idx;
 	private final int[] 			buf = new int[BUFSIZE];
+
+	/**
+	 * The same bits packed 8 to a byte, so several bits can be
+	 * looked at with a few reads (see <code>hpeekbits()</code>).
+	 */
+	private final byte[]			packed = new byte[BUFSIZE>>>3];
 	private int 					buf_bit_idx;
 	
    BitReserve()
@@ -66,6 +77,20 @@ final class BitReserve
       totbit = 0;
       buf_byte_idx = 0;	  
    }
+
+   /**
+    * Empties the reserve, as if it had just been created, without
+    * allocating new buffers.
+    */
+   void reset()
+   {
+	  offset = 0;
+	  totbit = 0;
+	  buf_byte_idx = 0;
+	  buf_bit_idx = 0;
+	  java.util.Arrays.fill(buf, 0);
+	  java.util.Arrays.fill(packed, (byte)0);
+   }
       
    
    /**
@@ -142,6 +167,30 @@ final class BitReserve
 	  buf_byte_idx = (buf_byte_idx+1) & BUFSIZE_MASK;
       return val;
    }
+
+   /**
+    * Returns the next N bits without consuming them.
+    * @param N the number of bits, at most 16.
+    */
+   public int hpeekbits(int N)
+   {
+	  int pos = buf_byte_idx;
+	  int i = pos >>> 3;
+	  int window = ((packed[i] & 0xFF) << 16)
+	  			 | ((packed[(i+1) & PACKED_MASK] & 0xFF) << 8)
+	  			 | (packed[(i+2) & PACKED_MASK] & 0xFF);
+	  return (window >>> (24 - (pos & 7) - N)) & ((1 << N) - 1);
+   }
+
+   /**
+    * Consumes N bits, e.g. after looking at them with
+    * <code>hpeekbits()</code>.
+    */
+   public void hskipbits(int N)
+   {
+	  totbit += N;
+	  buf_byte_idx = (buf_byte_idx+N) & BUFSIZE_MASK;
+   }
    
    /**
     * Retrieves bits from the reserve.     
@@ -182,6 +231,7 @@ final class BitReserve
    public void hputbuf(int val)
    {   	  
 	   int ofs = offset;
+	   packed[ofs >>> 3] = (byte) val;
 	   buf[ofs++] = val & 0x80;
 	   buf[ofs++] = val & 0x40;
 	   buf[ofs++] = val & 0x20;
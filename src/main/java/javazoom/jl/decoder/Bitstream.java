@@ -104,6 +104,16 @@ public final class Bitstream implements BitstreamErrors
 	 */
 	private int				header_pos = 0;
 
+	/**
+	 * Stream offset of the next byte to be read.
+	 */
+	private long			position = 0;
+
+	/**
+	 * Stream offset of the header of the current frame.
+	 */
+	private long			frame_pos = -1;
+
 	/**
 	 *
 	 */
@@ -118,7 +128,13 @@ public final class Bitstream implements BitstreamErrors
 	 0x00001FFF, 0x00003FFF, 0x00007FFF, 0x0000FFFF,
      0x0001FFFF };
 
-	private final PushbackInputStream	source;
+	private final PushbackInputStream	stream;
+
+	/**
+	 * Seekable source frames are read from directly, or null
+	 * when reading from <code>stream</code>.
+	 */
+	private final Source				source;
 
 	private final Header			header = new Header();
 
@@ -144,13 +160,45 @@ public final class Bitstream implements BitstreamErrors
 		loadID3v2(in);
 		firstframe = true;
 		//source = new PushbackInputStream(in, 1024);
-		source = new PushbackInputStream(in, BUFFER_INT_SIZE*4);
+		stream = new PushbackInputStream(in, BUFFER_INT_SIZE*4);
+		source = null;
 		
 		closeFrame();
 		//current_frame_number = -1;
 		//last_frame_number = -1;
 	}
 
+	/**
+	 * Construct a IBitstream that reads data from a given
+	 * Source. Frames are read straight from a seekable source,
+	 * which also allows <code>seek()</code> to move backwards;
+	 * other sources are read as a stream.
+	 *
+	 * @param src	The Source to read from, positioned at the
+	 *				start of the MPEG audio data.
+	 */
+	public Bitstream(Source src)
+	{
+		if (src==null) throw new NullPointerException("src");
+		if (src.isSeekable())
+		{
+			stream = null;
+			source = src;
+			position = src.tell();
+			loadID3v2(src);
+		}
+		else
+		{
+			InputStream in = new BufferedInputStream(new SourceInputStream(src));
+			loadID3v2(in);
+			stream = new PushbackInputStream(in, BUFFER_INT_SIZE*4);
+			source = null;
+		}
+		firstframe = true;
+
+		closeFrame();
+	}
+
 	/**
 	 * Return position of the first audio header.
 	 * @return size of ID3v2 tag frames.
@@ -159,6 +207,65 @@ public final class Bitstream implements BitstreamErrors
 	{
 		return header_pos;
 	}
+
+	/**
+	 * Return position of the header of the current frame.
+	 * @return offset in the stream, including any ID3v2 tag.
+	 */
+	public long frame_pos()
+	{
+		return frame_pos;
+	}
+
+	/**
+	 * Determines if <code>seek()</code> can move backwards.
+	 */
+	public boolean isSeekable()
+	{
+		return source!=null;
+	}
+
+	/**
+	 * Positions the stream at the given offset, e.g. a frame offset
+	 * taken from a <code>FrameIndex</code>. The current frame is
+	 * closed. Unless the bitstream reads from a seekable source,
+	 * the stream can only move forward, the bytes in between
+	 * are skipped without being parsed.
+	 *
+	 * @param pos	offset in the stream, including any ID3v2 tag.
+	 * @return true if the stream is now at the given offset, false
+	 *	if it is past it or the end of the stream was reached.
+	 */
+	public boolean seek(long pos) throws BitstreamException
+	{
+		closeFrame();
+		if (source!=null)
+		{
+			if (pos < 0 || source.seek(pos) != pos) return false;
+			position = pos;
+			return true;
+		}
+		if (pos < position) return false;
+		try
+		{
+			while (position < pos)
+			{
+				long skipped = stream.skip(pos - position);
+				if (skipped <= 0)
+				{
+					// skip() may return 0 before the end of the stream
+					if (stream.read() == -1) return false;
+					skipped = 1;
+				}
+				position += skipped;
+			}
+		}
+		catch (IOException ex)
+		{
+			throw newBitstreamException(STREAM_ERROR, ex);
+		}
+		return true;
+	}
 	
 	/**
 	 * Load ID3v2 frames.
@@ -193,13 +300,53 @@ public final class Bitstream implements BitstreamErrors
 			if (size > 0)
 			{
 				rawid3v2 = new byte[size];
-				in.read(rawid3v2,0,rawid3v2.length);
+				int read = in.read(rawid3v2,0,rawid3v2.length);
+				if (read > 0) position = read;
 			}			
 		}
 		catch (IOException e)
 		{}
 	}
 	
+	/**
+	 * Load ID3v2 frames from a seekable source.
+	 */
+	private void loadID3v2(Source in)
+	{
+		byte[] id3header = new byte[10];
+		try
+		{
+			long start = in.tell();
+			int size = -1;
+			if (readFully(in, id3header, 0, id3header.length) == id3header.length)
+			{
+				size = readID3v2Header(new ByteArrayInputStream(id3header));
+				header_pos = size;
+			}
+			in.seek(start);
+			if (size > 0)
+			{
+				rawid3v2 = new byte[size];
+				int read = readFully(in, rawid3v2, 0, rawid3v2.length);
+				position += read;
+			}
+		}
+		catch (IOException e)
+		{}
+	}
+
+	private static int readFully(Source in, byte[] b, int offs, int len) throws IOException
+	{
+		int total = 0;
+		while (total < len)
+		{
+			int read = in.read(b, offs + total, len - total);
+			if (read <= 0) break;
+			total += read;
+		}
+		return total;
+	}
+
 	/**
 	 * Parse ID3v2 tag header to find out size of ID3v2 frames. 
 	 * @param in MP3 InputStream
@@ -246,7 +393,10 @@ public final class Bitstream implements BitstreamErrors
 	{
 		try
 		{
-			source.close();
+			if (source==null)
+				stream.close();
+			else if (source instanceof Closeable)
+				((Closeable) source).close();
 		}
 		catch (IOException ex)
 		{
@@ -337,7 +487,7 @@ public final class Bitstream implements BitstreamErrors
 		{
 			try
 			{
-				source.unread(frame_bytes, 0, framesize);
+				unread(frame_bytes, 0, framesize);
 			}
 			catch (IOException ex)
 			{
@@ -367,7 +517,7 @@ public final class Bitstream implements BitstreamErrors
 
 		try
 		{
-			source.unread(syncbuf, 0, read);
+			unread(syncbuf, 0, read);
 		}
 		catch (IOException ex)
 		{
@@ -442,6 +592,8 @@ public final class Bitstream implements BitstreamErrors
 		}
 		while (!sync);
 
+		frame_pos = position - 4;
+
 		//current_frame_number++;
 		//if (last_frame_number < current_frame_number) last_frame_number = current_frame_number;
 
@@ -579,6 +731,18 @@ public final class Bitstream implements BitstreamErrors
 		syncword = syncword0 & 0xFFFFFF3F;
 		single_ch_mode = ((syncword0 & 0x000000C0) == 0x000000C0);
 	}
+	/**
+	 * Pushes back bytes just read, so they are read again.
+	 */
+	private void unread(byte[] b, int offs, int len) throws IOException
+	{
+		if (source!=null)
+			source.seek(position - len);
+		else
+			stream.unread(b, offs, len);
+		position -= len;
+	}
+
 	/**
 	 * Reads the exact number of bytes from the source
 	 * input stream into a byte array.
@@ -600,7 +764,7 @@ public final class Bitstream implements BitstreamErrors
 		{
 			while (len > 0)
 			{
-				int bytesread = source.read(b, offs, len);
+				int bytesread = (source!=null) ? source.read(b, offs, len) : stream.read(b, offs, len);
 				if (bytesread == -1)
 				{
 					while (len-->0)
@@ -611,6 +775,7 @@ public final class Bitstream implements BitstreamErrors
 					//throw newBitstreamException(UNEXPECTED_EOF, new EOFException());
 				}
 				nRead = nRead + bytesread;
+				position += bytesread;
 				offs += bytesread;
 				len -= bytesread;
 			}
@@ -634,12 +799,13 @@ public final class Bitstream implements BitstreamErrors
 		{
 			while (len > 0)
 			{
-				int bytesread = source.read(b, offs, len);
+				int bytesread = (source!=null) ? source.read(b, offs, len) : stream.read(b, offs, len);
 				if (bytesread == -1)
 				{
 					break;
 				}
 				totalBytesRead += bytesread;
+				position += bytesread;
 				offs += bytesread;
 				len -= bytesread;
 			}
@@ -650,4 +816,34 @@ public final class Bitstream implements BitstreamErrors
 		}
 		return totalBytesRead;
 	}
+
+	/**
+	 * Reads a Source that cannot seek as an InputStream.
+	 */
+	private static final class SourceInputStream extends InputStream
+	{
+		private final Source	src;
+		private final byte[]	one = new byte[1];
+
+		SourceInputStream(Source src)
+		{
+			this.src = src;
+		}
+
+		public int read() throws IOException
+		{
+			return (read(one, 0, 1) == 1) ? (one[0] & 0xFF) : -1;
+		}
+
+		public int read(byte[] b, int offs, int len) throws IOException
+		{
+			return src.read(b, offs, len);
+		}
+
+		public void close() throws IOException
+		{
+			if (src instanceof Closeable)
+				((Closeable) src).close();
+		}
+	}
 }
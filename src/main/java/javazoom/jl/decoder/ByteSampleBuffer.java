@@ -0,0 +1,125 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+/**
+ * The <code>ByteSampleBuffer</code> class implements an output buffer
+ * that stores a block of 16-bit samples as bytes, in the format of
+ * an audio line, so the block can be written to the line without
+ * converting it. Samples are clipped as in <code>SampleBuffer</code>.
+ */
+public class ByteSampleBuffer extends Obuffer
+{
+  private final byte[]	buffer;
+  private final int[]	bufferp;
+  private final int		channels;
+  private final int		frequency;
+  private final int		lo, hi;
+
+  /**
+   * @param big_endian	true to store the high byte of a sample first
+   */
+  public ByteSampleBuffer(int sample_frequency, int number_of_channels, boolean big_endian)
+  {
+	buffer = new byte[OBUFFERSIZE * 2];
+	bufferp = new int[MAXCHANNELS];
+	channels = number_of_channels;
+	frequency = sample_frequency;
+	lo = big_endian ? 1 : 0;
+	hi = big_endian ? 0 : 1;
+	clear_buffer();
+  }
+
+  public int getChannelCount()
+  {
+	return channels;
+  }
+
+  public int getSampleFrequency()
+  {
+	return frequency;
+  }
+
+  public byte[] getBuffer()
+  {
+	return buffer;
+  }
+
+  /**
+   * @return the number of bytes in the buffer
+   */
+  public int getBufferLength()
+  {
+	return bufferp[0];
+  }
+
+  /**
+   * Takes a 16 Bit PCM sample.
+   */
+  public void append(int channel, short value)
+  {
+	int pos = bufferp[channel];
+	buffer[pos + lo] = (byte)value;
+	buffer[pos + hi] = (byte)(value >>> 8);
+	bufferp[channel] = pos + channels * 2;
+  }
+
+	public void appendSamples(int channel, float[] f)
+	{
+		appendSamples(channel, f, 32);
+	}
+
+	public void appendSamples(int channel, float[] f, int count)
+	{
+		int pos = bufferp[channel];
+		int step = channels * 2;
+		byte[] b = buffer;
+		int l = pos + lo, h = pos + hi;
+		for (int i = 0; i < count; i++)
+		{
+			float fs = f[i];
+			fs = (fs>32767.0f ? 32767.0f
+						   : (fs < -32767.0f ? -32767.0f : fs));
+			int s = (int)fs;
+			b[l] = (byte)s;
+			b[h] = (byte)(s >>> 8);
+			l += step;
+			h += step;
+		}
+		bufferp[channel] = pos + count * step;
+	}
+
+  public void write_buffer(int val)
+  {
+  }
+
+  public void close()
+  {
+  }
+
+  public void clear_buffer()
+  {
+	for (int i = 0; i < channels; ++i)
+		bufferp[i] = i * 2;
+  }
+
+  public void set_stop_flag()
+  {
+  }
+}
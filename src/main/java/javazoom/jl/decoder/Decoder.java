@@ -42,6 +42,12 @@ public class Decoder implements DecoderErrors
 	 * PCM samples.
 	 */
 	private Obuffer			output;
+
+	/**
+	 * True if the output buffer was created by the decoder rather
+	 * than set by the client.
+	 */
+	private boolean			ownOutput;
 		
 	/**
 	 * Synthesis filter for the left channel.
@@ -68,6 +74,12 @@ public class Decoder implements DecoderErrors
 	private Params					params;
 	
 	private boolean					initialized;
+
+	/**
+	 * The scale factor of the synthesis filters, 0 before they have
+	 * been created.
+	 */
+	private float					scalefactor;
 		
 	
 	/**
@@ -135,7 +147,7 @@ public class Decoder implements DecoderErrors
 	{
 		if (!initialized)
 		{
-			initialize(header);
+			initialize(header, stream);
 		}
 		
 		int layer = header.layer();
@@ -158,6 +170,23 @@ public class Decoder implements DecoderErrors
 	public void setOutputBuffer(Obuffer out)
 	{
 		output = out;
+		ownOutput = false;
+	}
+
+	/**
+	 * Prepares the decoder for decoding another stream, as if it had
+	 * just been created with the same parameters and equalizer. The
+	 * synthesis filters, the layer decoders and the output buffer are
+	 * kept and cleared rather than allocated again, so a decoder can
+	 * be reused for many streams (see <code>DecoderPool</code>). An
+	 * output buffer set with <code>setOutputBuffer()</code> is dropped,
+	 * and the decoder creates its own again.
+	 */
+	public void reset()
+	{
+		initialized = false;
+		if (!ownOutput)
+			output = null;
 	}
 	
 	/**
@@ -219,8 +248,7 @@ public class Decoder implements DecoderErrors
 	{
 		FrameDecoder decoder = null;
 		
-		// REVIEW: allow channel output selection type
-		// (LEFT, RIGHT, BOTH, DOWNMIX)
+		int which_channels = params.getOutputChannels().getChannelsOutputCode();
 		switch (layer)
 		{
 		case 3:
@@ -228,7 +256,8 @@ public class Decoder implements DecoderErrors
 			{
 				l3decoder = new LayerIIIDecoder(stream, 
 					header, filter1, filter2, 
-					output, OutputChannels.BOTH_CHANNELS);
+					output, which_channels);
+				l3decoder.set_down_sample(down_sample(params.getDownSample()));
 			}						
 			
 			decoder = l3decoder;
@@ -239,7 +268,7 @@ public class Decoder implements DecoderErrors
 				l2decoder = new LayerIIDecoder();
 				l2decoder.create(stream, 
 					header, filter1, filter2, 
-					output, OutputChannels.BOTH_CHANNELS);				
+					output, which_channels);				
 			}
 			decoder = l2decoder;
 			break;
@@ -249,7 +278,7 @@ public class Decoder implements DecoderErrors
 				l1decoder = new LayerIDecoder();
 				l1decoder.create(stream, 
 					header, filter1, filter2, 
-					output, OutputChannels.BOTH_CHANNELS);				
+					output, which_channels);				
 			}
 			decoder = l1decoder;
 			break;
@@ -263,35 +292,81 @@ public class Decoder implements DecoderErrors
 		return decoder;
 	}
 	
-	private void initialize(Header header)
+	private void initialize(Header header, Bitstream stream)
 		throws DecoderException
 	{
 		
-		// REVIEW: allow customizable scale factor
-		float scalefactor = 32700.0f;
-		
 		int mode = header.mode();
 		int layer = header.layer();
 		int channels = mode==Header.SINGLE_CHANNEL ? 1 : 2;
+		// a single channel is output when one is selected or the channels are downmixed
+		int out_channels = Math.min(channels, params.getOutputChannels().getChannelCount());
+		int frequency = header.frequency() / params.getDownSample();
 
 					
-		// set up output buffer if not set up by client.
-		if (output==null)
-			output = new SampleBuffer(header.frequency(), channels);
+		// set up output buffer if not set up by client, or if the
+		// one set up for an earlier stream does not fit this stream.
+		if (output==null || (ownOutput &&
+			(out_channels!=outputChannels || frequency!=outputFrequency)))
+		{
+			if (params.isFloatOutput())
+				output = new FloatSampleBuffer(frequency, out_channels);
+			else
+				output = new SampleBuffer(frequency, out_channels);
+			ownOutput = true;
+		}
+
+		// REVIEW: allow customizable scale factor
+		// float samples are not clipped, so they keep a full scale of 1.0
+		float scalefactor = (output instanceof FloatSampleBuffer) ? 1.0f : 32700.0f;
 		
+		// the filters of an earlier stream are reused unless the
+		// output has changed to or from float samples
+		if (scalefactor!=this.scalefactor)
+		{
+			filter1 = filter2 = null;
+			this.scalefactor = scalefactor;
+		}
+
 		float[] factors = equalizer.getBandFactors();
-		filter1 = new SynthesisFilter(0, scalefactor, factors);
+		if (filter1==null)
+			filter1 = new SynthesisFilter(0, scalefactor, factors);
+		else
+			filter1.reset();
+		filter1.set_down_sample(down_sample(params.getDownSample()));
    		
-		// REVIEW: allow mono output for stereo
-		if (channels==2) 
+		// also used to downmix layer I and II
+		if (channels==2 && filter2==null) 
 			filter2 = new SynthesisFilter(1, scalefactor, factors);
+		else if (filter2!=null)
+			filter2.reset();
+		if (filter2!=null)
+			filter2.set_down_sample(down_sample(params.getDownSample()));
 
-		outputChannels = channels;
-		outputFrequency = header.frequency();
+		// layer decoders of an earlier stream continue with this one
+		if (l3decoder!=null)
+			l3decoder.reset(stream, header, filter1, filter2, output);
+		if (l2decoder!=null)
+			l2decoder.create(stream, header, filter1, filter2, output,
+				params.getOutputChannels().getChannelsOutputCode());
+		if (l1decoder!=null)
+			l1decoder.create(stream, header, filter1, filter2, output,
+				params.getOutputChannels().getChannelsOutputCode());
+
+		outputChannels = out_channels;
+		outputFrequency = frequency;
 		
 		initialized = true;
 	}
 	
+	/**
+	 * @return 0, 1 or 2 for a down-sampling factor of 1, 2 or 4
+	 */
+	static private int down_sample(int factor)
+	{
+		return factor >>> 1;
+	}
+	
 	/**
 	 * The <code>Params</code> class presents the customizable
 	 * aspects of the decoder. 
@@ -304,6 +379,10 @@ public class Decoder implements DecoderErrors
 		
 		private Equalizer		equalizer = new Equalizer();
 		
+		private boolean			floatOutput;
+		
+		private int				downSample = 1;
+		
 		public Params()
 		{			
 		}
@@ -320,6 +399,12 @@ public class Decoder implements DecoderErrors
 			}
 		}
 				
+		/**
+		 * Selects the channels output for stereo streams. Selecting a
+		 * single channel, or downmixing the channels before they are
+		 * synthesized, outputs mono and saves synthesizing the other
+		 * channel.
+		 */
 		public void setOutputChannels(OutputChannels out)
 		{
 			if (out==null)
@@ -333,6 +418,43 @@ public class Decoder implements DecoderErrors
 			return outputChannels;
 		}
 		
+		/**
+		 * Makes the decoder write to a <code>FloatSampleBuffer</code>
+		 * unless an output buffer is set, so <code>decodeFrame()</code>
+		 * returns the samples of each channel as floats, unclipped, with
+		 * a full scale of 1.0.
+		 */
+		public void setFloatOutput(boolean floatOutput)
+		{
+			this.floatOutput = floatOutput;
+		}
+		
+		public boolean isFloatOutput()
+		{
+			return floatOutput;
+		}
+		
+		/**
+		 * Decodes at 1/2 or 1/4 of the sample rate, like the 2to1 and
+		 * 4to1 modes of mpg123, by synthesizing only the lower 16 or 8
+		 * subbands. The output keeps the lower half or quarter of the
+		 * audio bandwidth and costs less CPU; it can be used for
+		 * previews and analysis.
+		 * 
+		 * @param factor	1 for the full sample rate, 2 or 4.
+		 */
+		public void setDownSample(int factor)
+		{
+			if (factor!=1 && factor!=2 && factor!=4)
+				throw new IllegalArgumentException("factor");
+			downSample = factor;
+		}
+		
+		public int getDownSample()
+		{
+			return downSample;
+		}
+		
 		/**
 		 * Retrieves the equalizer settings that the decoder's equalizer
 		 * will be initialized from.
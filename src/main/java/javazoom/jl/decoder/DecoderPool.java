@@ -0,0 +1,108 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.util.ArrayDeque;
+
+/**
+ * The <code>DecoderPool</code> class hands out decoders that share one
+ * set of parameters, so that many streams can be decoded on several
+ * threads without creating a decoder for each stream. A decoder is
+ * used by one thread at a time: it is taken with <code>acquire()</code>,
+ * used for one stream and given back with <code>release()</code>,
+ * which resets it for the next stream.
+ * <p>
+ * The tables the decoders share are built when their classes are
+ * loaded and are not modified, so decoders on different threads do
+ * not interfere.
+ */
+public class DecoderPool
+{
+	private final Decoder.Params		params;
+	private final int					maxIdle;
+	private final ArrayDeque<Decoder>	idle = new ArrayDeque<Decoder>();
+
+	/**
+	 * Creates a pool keeping as many idle decoders as there are
+	 * processors.
+	 *
+	 * @param params	the parameters of the decoders, or null for the
+	 *					default parameters
+	 */
+	public DecoderPool(Decoder.Params params)
+	{
+		this(params, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param params	the parameters of the decoders, or null for the
+	 *					default parameters
+	 * @param maxIdle	the number of decoders kept for reuse; decoders
+	 *					released when that many are idle are dropped
+	 */
+	public DecoderPool(Decoder.Params params, int maxIdle)
+	{
+		if (maxIdle < 0)
+			throw new IllegalArgumentException("maxIdle");
+		if (params==null)
+			params = Decoder.getDefaultParams();
+		this.params = (Decoder.Params)params.clone();
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Returns an idle decoder, or a new one if none is idle.
+	 */
+	public Decoder acquire()
+	{
+		Decoder decoder;
+		synchronized (idle)
+		{
+			decoder = idle.pollFirst();
+		}
+		return (decoder!=null) ? decoder : new Decoder(params);
+	}
+
+	/**
+	 * Gives back a decoder taken with <code>acquire()</code>. The
+	 * decoder is reset and its equalizer restored, and it must not be
+	 * used by the caller afterwards.
+	 */
+	public void release(Decoder decoder)
+	{
+		decoder.reset();
+		decoder.setEqualizer(params.getInitialEqualizerSettings());
+		synchronized (idle)
+		{
+			if (idle.size() < maxIdle)
+				idle.addFirst(decoder);
+		}
+	}
+
+	/**
+	 * @return the number of decoders waiting to be reused
+	 */
+	public int getIdleCount()
+	{
+		synchronized (idle)
+		{
+			return idle.size();
+		}
+	}
+}
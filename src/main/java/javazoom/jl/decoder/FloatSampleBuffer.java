@@ -0,0 +1,112 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+/**
+ * The <code>FloatSampleBuffer</code> class implements an output buffer
+ * that keeps the samples of a frame as floats, one array per channel,
+ * as the synthesis filter calculates them: they are not clipped or
+ * converted to 16 bits. A <code>Decoder</code> writing to this buffer
+ * scales the samples to a full scale of 1.0; see
+ * <code>Decoder.Params.setFloatOutput()</code>.
+ */
+public class FloatSampleBuffer extends Obuffer
+{
+  /**
+   * Maximum number of samples of a channel in a frame.
+   */
+  public static final int	SAMPLES_PER_CHANNEL = OBUFFERSIZE / MAXCHANNELS;
+
+  private final float[][]	buffer;
+  private final int[]		bufferp;
+  private final int			channels;
+  private final int			frequency;
+
+  public FloatSampleBuffer(int sample_frequency, int number_of_channels)
+  {
+	channels = number_of_channels;
+	frequency = sample_frequency;
+	buffer = new float[number_of_channels][SAMPLES_PER_CHANNEL];
+	bufferp = new int[MAXCHANNELS];
+  }
+
+  public int getChannelCount()
+  {
+	return channels;
+  }
+
+  public int getSampleFrequency()
+  {
+	return frequency;
+  }
+
+  /**
+   * @return the samples of each channel, indexed by channel
+   */
+  public float[][] getBuffer()
+  {
+	return buffer;
+  }
+
+  /**
+   * @return the number of samples of each channel
+   */
+  public int getBufferLength()
+  {
+	return bufferp[0];
+  }
+
+  /**
+   * Takes a 16 Bit PCM sample, scaled to a full scale of 1.0.
+   */
+  public void append(int channel, short value)
+  {
+	buffer[channel][bufferp[channel]++] = value * (1.0f / 32768.0f);
+  }
+
+	public void appendSamples(int channel, float[] f)
+	{
+		appendSamples(channel, f, 32);
+	}
+
+	public void appendSamples(int channel, float[] f, int count)
+	{
+		int pos = bufferp[channel];
+		System.arraycopy(f, 0, buffer[channel], pos, count);
+		bufferp[channel] = pos + count;
+	}
+
+  public void write_buffer(int val)
+  {
+  }
+
+  public void close()
+  {
+  }
+
+  public void clear_buffer()
+  {
+	for (int i = 0; i < channels; ++i)
+		bufferp[i] = 0;
+  }
+
+  public void set_stop_flag()
+  {
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+/**
+ * Maps frame numbers to byte offsets in an MPEG audio stream, so
+ * a stream can be positioned at a frame without parsing all frames
+ * before it.
+ *
+ * Exact offsets are recorded as frames are read (see
+ * <code>add()</code>); frames past the indexed range are located
+ * with the Xing/VBRI table of contents of the first frame, or for
+ * CBR streams with the frame size. An index may be kept and reused
+ * when the same stream is opened again, e.g. to resume playback.
+ *
+ * The index also records which samples of the stream are audio: a
+ * Xing/Info/VBRI header frame and the encoder delay and padding given
+ * by the LAME extension are not, and are left out for gapless playback.
+ *
+ * Instances are thread-safe.
+ */
+public final class FrameIndex
+{
+	/**
+	 * Maximum value of the Layer III main_data_begin field, i.e.
+	 * how many bytes of earlier frames a frame may refer to.
+	 */
+	static private final int	MAX_MAIN_DATA_BEGIN = 511;
+
+	/**
+	 * Upper bound of header, CRC and side information bytes per frame.
+	 */
+	static private final int	MAX_SIDE_INFO = 4 + 2 + 32;
+
+	/**
+	 * Frames to decode ahead of a frame when the offsets needed to
+	 * compute it are not known: enough to fill the bit reservoir of
+	 * an MPEG-1 frame at 32 kbit/s.
+	 */
+	static private final int	DEFAULT_PRIMING_FRAMES = 8;
+
+	/**
+	 * Samples by which the synthesis filterbank delays the decoded
+	 * signal. Added to the encoder delay, as LAME and mpg123 do.
+	 */
+	static private final int	DECODER_DELAY = 529;
+
+	private long[]		offsets = new long[1024];
+	private int			size;
+
+	private int			layer;
+	private int			granules;
+	private float		ms_per_frame;
+	private int			framesize;
+	private long		first_offset = -1;
+	private boolean		vbr;
+	private byte[]		toc;
+	private int			total_frames = -1;
+	private long		total_bytes = -1;
+	private int			tag_frames;
+	private long		gapless_start = -1;
+	private long		gapless_end = -1;
+
+	public FrameIndex()
+	{
+	}
+
+	/**
+	 * Takes stream properties from the first frame of the stream.
+	 *
+	 * @param header	header of the first frame.
+	 * @param offset	byte offset of the first frame.
+	 */
+	public synchronized void set_first_frame(Header header, long offset)
+	{
+		layer = header.layer();
+		granules = (header.version() == Header.MPEG1) ? 2 : 1;
+		ms_per_frame = header.ms_per_frame();
+		framesize = header.framesize + 4;
+		first_offset = offset;
+		vbr = header.vbr();
+		toc = null;
+		if (vbr)
+		{
+			toc = header.vbr_toc();
+			total_frames = header.vbr_frames();
+			total_bytes = header.vbr_bytes();
+		}
+		tag_frames = header.tag_frame() ? 1 : 0;
+		gapless_start = header.tag_frame() ? 0 : -1;
+		gapless_end = -1;
+		if (header.encoder_delay() >= 0)
+		{
+			gapless_start = header.encoder_delay() + DECODER_DELAY;
+			int frames = header.stream_frames();
+			if (frames > 0 && header.encoder_padding() >= 0)
+				gapless_end = (long) frames * samples_per_frame(header) - header.encoder_padding() + DECODER_DELAY;
+		}
+	}
+
+	static private int samples_per_frame(Header header)
+	{
+		if (header.layer() == 1) return 384;
+		if (header.layer() == 3 && header.version() != Header.MPEG1) return 576;
+		return 1152;
+	}
+
+	/**
+	 * Records the offset of a frame. Frames must be added in order;
+	 * offsets of frames after a gap in the index are ignored.
+	 *
+	 * @param frame		frame number, starting at 0.
+	 * @param offset	byte offset of the frame header in the stream.
+	 */
+	public synchronized void add(int frame, long offset)
+	{
+		if (frame != size) return;
+		if (size == offsets.length)
+		{
+			long[] grown = new long[size * 2];
+			System.arraycopy(offsets, 0, grown, 0, size);
+			offsets = grown;
+		}
+		offsets[size++] = offset;
+	}
+
+	/**
+	 * Returns the number of frames with known offsets, i.e. frames
+	 * 0 to <code>size()-1</code>.
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the exact offset of a frame.
+	 *
+	 * @return the byte offset or -1 if the frame is not indexed.
+	 */
+	public synchronized long offset(int frame)
+	{
+		return (frame >= 0 && frame < size) ? offsets[frame] : -1;
+	}
+
+	/**
+	 * Returns the offset of a frame, estimated from the table of
+	 * contents or the frame size if it is not indexed. An estimated
+	 * offset need not be at a frame boundary.
+	 *
+	 * @return the byte offset or -1 if it cannot be determined, as
+	 * for a VBR stream without a table of contents.
+	 */
+	public synchronized long estimate(int frame)
+	{
+		if (frame < size) return offset(frame);
+		if (first_offset < 0) return -1;
+		if (toc != null && total_frames > 0 && total_bytes > 0)
+		{
+			float percent = Math.min(99.999f, 100.0f * frame / total_frames);
+			int i = (int) percent;
+			float a = toc[i] & 0xFF;
+			float b = (i < 99) ? (toc[i + 1] & 0xFF) : 256.0f;
+			float fraction = a + (b - a) * (percent - i);
+			return first_offset + (long) (fraction * total_bytes / 256.0f);
+		}
+		if (!vbr && framesize > 4)
+			return first_offset + (long) frame * framesize;
+		return -1;
+	}
+
+	/**
+	 * Returns the frame decoding has to start at, for the given
+	 * frame to decode as it does when the stream is decoded from
+	 * the start. The synthesis filter keeps 16 subband samples of
+	 * history, more than one Layer I frame holds.
+	 *
+	 * In Layer III the first granule of the frame is overlapped with
+	 * the last one before it, and the synthesis history comes from
+	 * the output of that granule, which is overlapped with the one
+	 * before. So the last two granules before the frame, i.e. one
+	 * MPEG-1 or two MPEG-2 frames, must decode exactly too. These
+	 * take main data from the bit reservoir, which is filled by the
+	 * frames before them; decoding starts far enough back to fill it.
+	 */
+	public synchronized int priming_frame(int frame)
+	{
+		if (frame <= 0) return 0;
+		if (layer == 1) return Math.max(0, frame - 2);
+		if (layer == 2) return frame - 1;
+		int overlap = Math.max(0, frame - (granules == 2 ? 1 : 2));
+		if (frame >= size) return Math.max(0, overlap - DEFAULT_PRIMING_FRAMES);
+		long target = offsets[overlap];
+		int first = overlap;
+		while (first > 0 && target - offsets[first] < MAX_MAIN_DATA_BEGIN + (overlap - first) * MAX_SIDE_INFO)
+			first--;
+		return first;
+	}
+
+	/**
+	 * Returns the number of frames at the start of the stream that
+	 * hold a Xing, Info or VBRI header instead of audio.
+	 */
+	public synchronized int tag_frames()
+	{
+		return tag_frames;
+	}
+
+	/**
+	 * Returns the first sample of the encoded audio, counted per
+	 * channel from the start of the first audio frame.
+	 *
+	 * @return the sample or -1 if it is not known.
+	 */
+	public synchronized long gapless_start()
+	{
+		return gapless_start;
+	}
+
+	/**
+	 * Returns the sample after the last sample of the encoded audio,
+	 * counted like <code>gapless_start()</code>.
+	 *
+	 * @return the sample or -1 if it is not known.
+	 */
+	public synchronized long gapless_end()
+	{
+		return gapless_end;
+	}
+
+	/**
+	 * Returns the time per frame, taken from the first frame.
+	 */
+	public synchronized float ms_per_frame()
+	{
+		return ms_per_frame;
+	}
+
+	/**
+	 * Returns the number of the frame playing at the given time.
+	 */
+	public synchronized int frame_at(float ms)
+	{
+		return (ms_per_frame > 0) ? (int) (ms / ms_per_frame) : 0;
+	}
+}
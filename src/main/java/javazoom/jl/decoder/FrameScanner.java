@@ -0,0 +1,492 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Walks the frame headers of an MPEG audio stream without decoding,
+ * to find the exact frame count, duration and average bitrate. Only
+ * the 4 header bytes of each frame are parsed, the frame data is
+ * skipped using <code>Header.calculate_framesize()</code>. The frame
+ * data is still read from the <code>Source</code> in 64 KB blocks,
+ * but it is not parsed.
+ *
+ * A Xing, Info or VBRI tag in the first frame and the LAME extension
+ * of Xing/Info tags are read too. The tag frame holds no audio and is
+ * not counted as an audio frame.
+ *
+ * Usage:
+ * <pre>
+ * FrameScanner scanner = new FrameScanner();
+ * if (scanner.scan(new MappedFileSource(file)))
+ *     System.out.println(scanner.frames() + " frames, " + scanner.duration_ms() + " ms");
+ * </pre>
+ *
+ * An instance can be reused for several streams, but is not thread-safe.
+ */
+public final class FrameScanner
+{
+	static private final int	BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Header bits that stay the same in all frames of a stream:
+	 * sync word, version, layer and sample frequency.
+	 */
+	static private final int	STREAM_MASK = 0xFFFE0C00;
+
+	private final Header	header = new Header();
+	private final byte[]	buf = new byte[BUFFER_SIZE];
+	private Source			source;
+	private long			buf_pos;
+	private int				buf_len;
+
+	private int				first_header;
+	private long			first_frame_pos;
+	private int				id3v2_size;
+	private int				frames;
+	private long			samples;
+	private long			audio_bytes;
+	private long			skipped_bytes;
+	private boolean			truncated;
+	private boolean			vbr;
+
+	private String			tag;
+	private int				tag_frames;
+	private int				tag_bytes;
+	private String			encoder;
+	private int				encoder_delay;
+	private int				encoder_padding;
+
+	public FrameScanner()
+	{
+	}
+
+	/**
+	 * Scans an InputStream to its end.
+	 *
+	 * @return true if MPEG audio frames were found.
+	 */
+	public boolean scan(InputStream in) throws IOException
+	{
+		return scan(new InputStreamSource(in));
+	}
+
+	/**
+	 * Scans a Source from its current position to its end.
+	 *
+	 * @return true if MPEG audio frames were found.
+	 */
+	public boolean scan(Source src) throws IOException
+	{
+		if (src==null) throw new NullPointerException("src");
+		reset();
+		source = src;
+		buf_pos = Math.max(0, src.tell());
+		try
+		{
+			long offset = buf_pos;
+			if (fill(offset, 10) && byte_at(offset) == 'I' && byte_at(offset + 1) == 'D' && byte_at(offset + 2) == '3')
+			{
+				id3v2_size = 10 + ((byte_at(offset + 6) & 0x7F) << 21 | (byte_at(offset + 7) & 0x7F) << 14
+						| (byte_at(offset + 8) & 0x7F) << 7 | (byte_at(offset + 9) & 0x7F));
+				if ((byte_at(offset + 5) & 0x10) != 0)
+					id3v2_size += 10;			// footer
+				offset += id3v2_size;
+			}
+
+			long frame_pos = sync(offset, 0);
+			if (frame_pos < 0)
+				return false;
+			skipped_bytes = frame_pos - offset;
+			first_frame_pos = frame_pos;
+			int word = int_at(frame_pos) & STREAM_MASK;
+			int bitrate_index = -1;
+			offset = frame_pos;
+			while (fill(offset, 4))
+			{
+				int headerstring = int_at(offset);
+				if ((headerstring & STREAM_MASK) != word || !header.parse_header(headerstring))
+				{
+					long next = sync(offset + 1, word);
+					if (next < 0)
+						break;
+					skipped_bytes += next - offset;
+					offset = next;
+					continue;
+				}
+				int size = header.framesize + 4;
+				if (offset == first_frame_pos && read_tag(offset, size))
+				{
+					offset += size;
+					continue;
+				}
+				if (!fill(offset + size - 1, 1))
+				{
+					truncated = true;
+					break;
+				}
+				if (frames == 0)
+					first_header = headerstring;
+				else if (bitrate_index != header.bitrate_index())
+					vbr = true;
+				bitrate_index = header.bitrate_index();
+				frames++;
+				samples += samples_per_frame();
+				audio_bytes += size;
+				offset += size;
+			}
+		}
+		finally
+		{
+			source = null;
+		}
+		header.parse_header(first_header);
+		return frames > 0;
+	}
+
+	private void reset()
+	{
+		buf_len = 0;
+		first_header = 0;
+		first_frame_pos = -1;
+		id3v2_size = 0;
+		frames = 0;
+		samples = 0;
+		audio_bytes = 0;
+		skipped_bytes = 0;
+		truncated = false;
+		vbr = false;
+		tag = null;
+		tag_frames = -1;
+		tag_bytes = -1;
+		encoder = null;
+		encoder_delay = -1;
+		encoder_padding = -1;
+	}
+
+	/**
+	 * Finds the next frame header, confirmed by the header of the
+	 * frame after it (or the end of the stream).
+	 *
+	 * @param word	the stream bits of the headers to find, or 0 for any.
+	 * @return the offset of the header, or -1 if there is none.
+	 */
+	private long sync(long offset, int word) throws IOException
+	{
+		for (; fill(offset, 4); offset++)
+		{
+			if ((byte_at(offset) & 0xFF) != 0xFF)
+				continue;
+			int headerstring = int_at(offset);
+			if (word != 0 && (headerstring & STREAM_MASK) != word)
+				continue;
+			if (!header.parse_header(headerstring))
+				continue;
+			int size = header.framesize + 4;
+			if (fill(offset, size + 4))
+			{
+				int next = int_at(offset + size);
+				if ((next & STREAM_MASK) == (headerstring & STREAM_MASK) && header.parse_header(next))
+					return offset;
+			}
+			else if (buf_pos + buf_len == offset + size)
+			{
+				return offset;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads a Xing, Info or VBRI tag from the first frame.
+	 *
+	 * @return true if the frame is a tag frame.
+	 */
+	private boolean read_tag(long frame, int size) throws IOException
+	{
+		int version = header.version();
+		boolean mono = header.mode() == Header.SINGLE_CHANNEL;
+		int side_info = (version == Header.MPEG1) ? (mono ? 17 : 32) : (mono ? 9 : 17);
+		if (!fill(frame, size))
+			return false;
+		long xing = frame + 4 + side_info;
+		if (xing + 8 <= frame + size && (matches(xing, "Xing") || matches(xing, "Info")))
+		{
+			tag = matches(xing, "Xing") ? "Xing" : "Info";
+			int flags = int_at(xing + 4);
+			long field = xing + 8;
+			if ((flags & 1) != 0 && field + 4 <= frame + size)
+			{
+				tag_frames = int_at(field);
+				field += 4;
+			}
+			if ((flags & 2) != 0 && field + 4 <= frame + size)
+				tag_bytes = int_at(field);
+
+			long lame = xing + Header.lame_offset(flags);
+			if (Header.is_lame_tag(buf, (int) (lame - buf_pos), (int) (frame + size - buf_pos)))
+			{
+				StringBuffer name = new StringBuffer(9);
+				for (int i = 0; i < 9 && byte_at(lame + i) >= 0x20; i++)
+					name.append((char) byte_at(lame + i));
+				encoder = name.toString().trim();
+				int b0 = byte_at(lame + 21) & 0xFF;
+				int b1 = byte_at(lame + 22) & 0xFF;
+				int b2 = byte_at(lame + 23) & 0xFF;
+				encoder_delay = (b0 << 4) | (b1 >>> 4);
+				encoder_padding = ((b1 & 0x0F) << 8) | b2;
+			}
+			return true;
+		}
+		long vbri = frame + 4 + 32;
+		if (vbri + 18 <= frame + size && matches(vbri, "VBRI"))
+		{
+			tag = "VBRI";
+			encoder_delay = ((byte_at(vbri + 6) & 0xFF) << 8) | (byte_at(vbri + 7) & 0xFF);
+			tag_bytes = int_at(vbri + 10);
+			tag_frames = int_at(vbri + 14);
+			return true;
+		}
+		return false;
+	}
+
+	private int samples_per_frame()
+	{
+		if (header.layer() == 1) return 384;
+		if (header.layer() == 3 && header.version() != Header.MPEG1) return 576;
+		return 1152;
+	}
+
+	/**
+	 * Makes the bytes at <code>offset</code> to <code>offset+n</code>
+	 * available in the buffer. Bytes before the buffer can only be
+	 * reached on a seekable source.
+	 *
+	 * @return false if the stream ends before.
+	 */
+	private boolean fill(long offset, int n) throws IOException
+	{
+		long end = buf_pos + buf_len;
+		if (offset >= buf_pos && offset + n <= end)
+			return true;
+		if (offset >= buf_pos && offset < end)
+		{
+			int keep = (int) (end - offset);
+			System.arraycopy(buf, (int) (offset - buf_pos), buf, 0, keep);
+			buf_len = keep;
+		}
+		else
+		{
+			buf_len = 0;
+			if (source.isSeekable())
+			{
+				if (source.seek(offset) != offset)
+				{
+					buf_pos = end;
+					return false;
+				}
+			}
+			else
+			{
+				if (offset < end)
+					return false;
+				for (long skip = offset - end; skip > 0; )
+				{
+					int read = source.read(buf, 0, (int) Math.min(buf.length, skip));
+					if (read <= 0)
+					{
+						buf_pos = offset - skip;
+						return false;
+					}
+					skip -= read;
+				}
+			}
+		}
+		buf_pos = offset;
+		while (buf_len < n)
+		{
+			int read = source.read(buf, buf_len, buf.length - buf_len);
+			if (read <= 0)
+				break;
+			buf_len += read;
+		}
+		return buf_len >= n;
+	}
+
+	private byte byte_at(long offset)
+	{
+		return buf[(int) (offset - buf_pos)];
+	}
+
+	private int int_at(long offset)
+	{
+		int i = (int) (offset - buf_pos);
+		return ((buf[i] << 24) & 0xFF000000) | ((buf[i + 1] << 16) & 0x00FF0000)
+			| ((buf[i + 2] << 8) & 0x0000FF00) | (buf[i + 3] & 0x000000FF);
+	}
+
+	private boolean matches(long offset, String id)
+	{
+		for (int i = 0; i < id.length(); i++)
+			if (byte_at(offset + i) != id.charAt(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns the header of the first audio frame. Version, layer,
+	 * sample frequency and mode are the same for all frames.
+	 */
+	public Header header()
+	{
+		return header;
+	}
+
+	/**
+	 * Returns the number of audio frames, not counting a tag frame.
+	 */
+	public int frames()
+	{
+		return frames;
+	}
+
+	/**
+	 * Returns the number of samples per channel in all audio frames.
+	 */
+	public long samples()
+	{
+		return samples;
+	}
+
+	/**
+	 * Returns the duration of all audio frames in milliseconds.
+	 */
+	public long duration_ms()
+	{
+		return (frames > 0) ? samples * 1000 / header.frequency() : 0;
+	}
+
+	/**
+	 * Returns the average bitrate of the audio frames in bits per second.
+	 */
+	public int average_bitrate()
+	{
+		return (samples > 0) ? (int) (audio_bytes * 8 * header.frequency() / samples) : 0;
+	}
+
+	/**
+	 * Returns true if the bitrate changes between audio frames.
+	 */
+	public boolean vbr()
+	{
+		return vbr;
+	}
+
+	/**
+	 * Returns the offset of the first frame, which may be a tag frame.
+	 */
+	public long first_frame_pos()
+	{
+		return first_frame_pos;
+	}
+
+	/**
+	 * Returns the size of an ID3v2 tag at the start of the stream, or 0.
+	 */
+	public int id3v2_size()
+	{
+		return id3v2_size;
+	}
+
+	/**
+	 * Returns the number of bytes in audio frames.
+	 */
+	public long audio_bytes()
+	{
+		return audio_bytes;
+	}
+
+	/**
+	 * Returns the number of bytes between frames that had to be skipped
+	 * to find the next frame, e.g. garbage or a damaged frame.
+	 */
+	public long skipped_bytes()
+	{
+		return skipped_bytes;
+	}
+
+	/**
+	 * Returns true if the stream ends within the last frame.
+	 */
+	public boolean truncated()
+	{
+		return truncated;
+	}
+
+	/**
+	 * Returns the type of the tag in the first frame: "Xing", "Info"
+	 * (the name LAME uses for CBR streams), "VBRI", or null.
+	 */
+	public String tag()
+	{
+		return tag;
+	}
+
+	/**
+	 * Returns the number of audio frames stated by the tag, or -1.
+	 */
+	public int tag_frames()
+	{
+		return tag_frames;
+	}
+
+	/**
+	 * Returns the stream size stated by the tag, or -1.
+	 */
+	public int tag_bytes()
+	{
+		return tag_bytes;
+	}
+
+	/**
+	 * Returns the encoder name of a LAME extension, e.g. "LAME3.99r", or null.
+	 */
+	public String encoder()
+	{
+		return encoder;
+	}
+
+	/**
+	 * Returns the samples added by the encoder at the start, or -1.
+	 */
+	public int encoder_delay()
+	{
+		return encoder_delay;
+	}
+
+	/**
+	 * Returns the samples added by the encoder at the end, or -1.
+	 */
+	public int encoder_padding()
+	{
+		return encoder_padding;
+	}
+}
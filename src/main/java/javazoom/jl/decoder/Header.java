@@ -74,6 +74,10 @@ public final class Header
 	private int				h_vbr_scale;
 	private int				h_vbr_bytes;
 	private byte[]			h_vbr_toc;
+	// Gapless playback support.
+	private boolean			h_tag;
+	private int				h_encoder_delay = -1;
+	private int				h_encoder_padding = -1;
 	
 	private byte			syncmode = Bitstream.INITIAL_SYNC;
 	private Crc16			crc;
@@ -233,6 +237,73 @@ public final class Header
 		}
 	}
 
+	/**
+	 * Sets the fields of a 32-bit header that was read elsewhere and
+	 * calculates the frame size, e.g. to walk frame headers without
+	 * reading the frame data through a bitstream.
+	 *
+	 * @return false if the header is not a valid MPEG audio header
+	 *	of a frame with a known size (free format is not supported).
+	 */
+	boolean parse_header(int headerstring)
+	{
+		if ((headerstring & 0xFFE00000) != 0xFFE00000) return false;
+		int version = (headerstring >>> 19) & 3;
+		int layer = (headerstring >>> 17) & 3;
+		int bitrate_index = (headerstring >>> 12) & 0xF;
+		int sample_frequency = (headerstring >>> 10) & 3;
+		if (version == 1 || layer == 0 || bitrate_index == 0 || bitrate_index == 15 || sample_frequency == 3)
+			return false;
+		_headerstring = headerstring;
+		h_version = (version == 3) ? MPEG1 : (version == 2) ? MPEG2_LSF : MPEG25_LSF;
+		h_layer = 4 - layer;
+		h_protection_bit = (headerstring >>> 16) & 1;
+		h_bitrate_index = bitrate_index;
+		h_sample_frequency = sample_frequency;
+		h_padding_bit = (headerstring >>> 9) & 1;
+		h_mode = ((headerstring >>> 6) & 3);
+		h_mode_extension = (headerstring >>> 4) & 3;
+		calculate_framesize();
+		return true;
+	}
+
+	/**
+	 * Returns the offset of the LAME extension from the start of a
+	 * Xing/Info tag with the given flags: it follows the id, the flags
+	 * and the fields the flags say are present.
+	 */
+	static int lame_offset(int flags)
+	{
+		int offset = 8;
+		if ((flags & 1) != 0) offset += 4;		// frames
+		if ((flags & 2) != 0) offset += 4;		// bytes
+		if ((flags & 4) != 0) offset += 100;	// TOC
+		if ((flags & 8) != 0) offset += 4;		// scale
+		return offset;
+	}
+
+	/**
+	 * Returns true if the byte is an ASCII letter, as in the encoder
+	 * name that starts a LAME extension.
+	 */
+	static boolean is_letter(byte b)
+	{
+		int c = b & 0xFF;
+		return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+	}
+
+	/**
+	 * Returns true if a LAME extension starts at the offset: its 24
+	 * bytes up to the encoder delay and padding end before
+	 * <code>end</code>, and it starts with an encoder name of 4 letters,
+	 * e.g. "LAME" or "Lavc".
+	 */
+	static boolean is_lame_tag(byte[] b, int offset, int end)
+	{
+		return offset + 24 <= end && is_letter(b[offset]) && is_letter(b[offset + 1])
+			&& is_letter(b[offset + 2]) && is_letter(b[offset + 3]);
+	}
+
 	/**
 	 * Parse frame to extract optionnal VBR frame.
 	 * @param firstframe
@@ -240,8 +311,9 @@ public final class Header
 	 */
 	void parseVBR(byte[] firstframe) throws BitstreamException
 	{
-		// Trying Xing header.
+		// Trying Xing header, or the same header of a CBR stream, which LAME calls "Info".
 		String xing = "Xing";
+		String info = "Info";
 		byte tmp[] = new byte[4];
 		int offset = 0;
 		// Compute "Xing" offset depending on MPEG version and channels.
@@ -258,15 +330,17 @@ public final class Header
 		try
 		{
 			System.arraycopy(firstframe, offset, tmp, 0, 4);
-			// Is "Xing" ?
-			if (xing.equals(new String(tmp)))
+			// Is "Xing" or "Info" ?
+			String id = new String(tmp);
+			if (xing.equals(id) || info.equals(id))
 			{
 				//Yes.
-				h_vbr = true;
+				h_vbr = xing.equals(id);
+				h_tag = true;
 				h_vbr_frames = -1;
 				h_vbr_bytes = -1;
 				h_vbr_scale = -1;
-				h_vbr_toc = new byte[100];
+				h_vbr_toc = null;
 								
 				int length = 4;
 				// Read flags.
@@ -290,6 +364,7 @@ public final class Header
 				// Read TOC (if available).
 				if ((flags[3] & (byte) (1 << 2)) != 0)
 				{
+					h_vbr_toc = new byte[100];
 					System.arraycopy(firstframe, offset + length, h_vbr_toc, 0, h_vbr_toc.length);
 					length += h_vbr_toc.length;	
 				}
@@ -300,6 +375,16 @@ public final class Header
 					h_vbr_scale = (tmp[0] << 24)&0xFF000000 | (tmp[1] << 16)&0x00FF0000 | (tmp[2] << 8)&0x0000FF00 | tmp[3]&0x000000FF;
 					length += 4;	
 				}
+				// Read encoder delay and padding of the LAME extension (if available).
+				int lame = offset + lame_offset(flags[3]);
+				if (is_lame_tag(firstframe, lame, firstframe.length))
+				{
+					int b0 = firstframe[lame + 21] & 0xFF;
+					int b1 = firstframe[lame + 22] & 0xFF;
+					int b2 = firstframe[lame + 23] & 0xFF;
+					h_encoder_delay = (b0 << 4) | (b1 >>> 4);
+					h_encoder_padding = ((b1 & 0x0F) << 8) | b2;
+				}
 				//System.out.println("VBR:"+xing+" Frames:"+ h_vbr_frames +" Size:"+h_vbr_bytes);			
 			}				
 		}
@@ -319,10 +404,12 @@ public final class Header
 			{
 				//Yes.
 				h_vbr = true;
+				h_tag = true;
 				h_vbr_frames = -1;
 				h_vbr_bytes = -1;
 				h_vbr_scale = -1;
-				h_vbr_toc = new byte[100];
+				// The VBRI TOC is not read (see below).
+				h_vbr_toc = null;
 				// Bytes.				
 				int length = 4 + 6;
 				System.arraycopy(firstframe, offset + length, tmp, 0, tmp.length);
@@ -411,6 +498,44 @@ public final class Header
 	 */
 	public byte[] vbr_toc() { return h_vbr_toc; }
 
+	/**
+	 * Returns whether the first frame holds a Xing, Info or VBRI header
+	 * instead of audio.
+	 */
+	public boolean tag_frame() { return h_tag; }
+
+	/**
+	 * Return number of audio frames given by the Xing, Info or VBRI header.
+	 * @return number of frames or -1 if not available
+	 */
+	public int stream_frames() { return h_tag ? h_vbr_frames : -1; }
+
+	/**
+	 * Return number of samples the encoder put in front of the audio,
+	 * from the LAME extension of the Xing or Info header.
+	 * @return number of samples or -1 if not available
+	 */
+	public int encoder_delay() { return h_encoder_delay; }
+
+	/**
+	 * Return number of samples the encoder appended to fill the last frame,
+	 * from the LAME extension of the Xing or Info header.
+	 * @return number of samples or -1 if not available
+	 */
+	public int encoder_padding() { return h_encoder_padding; }
+
+	/**
+	 * Return VBR number of frames.
+	 * @return number of frames or -1 if not available
+	 */
+	public int vbr_frames() { return h_vbr ? h_vbr_frames : -1; }
+
+	/**
+	 * Return VBR stream size.
+	 * @return number of bytes or -1 if not available
+	 */
+	public int vbr_bytes() { return h_vbr ? h_vbr_bytes : -1; }
+
 	/**
 	 * Returns Checksum flag.
 	 * Compares computed checksum with stream checksum.
@@ -45,6 +45,7 @@ class LayerIDecoder implements FrameDecoder
 	public LayerIDecoder()
 	{
 		crc = new Crc16();
+		subbands = new Subband[32];
 	}
 	
 	public void create(Bitstream stream0, Header header0,
@@ -66,7 +67,6 @@ class LayerIDecoder implements FrameDecoder
 	{
 		
 		num_subbands = header.number_of_subbands();
-		subbands = new Subband[32];
 		mode = header.mode();
 		
 		createSubbands();
@@ -127,6 +127,9 @@ class LayerIDecoder implements FrameDecoder
 		boolean read_ready = false;
 		boolean write_ready = false;
 		int mode = header.mode();
+		// the subbands of both channels are mixed before the synthesis
+		boolean downmix = (which_channels == OutputChannels.DOWNMIX_CHANNELS) && (mode != Header.SINGLE_CHANNEL);
+		int channels = downmix ? OutputChannels.BOTH_CHANNELS : which_channels;
 		int i;
 		do
   		{
@@ -135,8 +138,10 @@ class LayerIDecoder implements FrameDecoder
   		  do
   		  {
   		  	for (i = 0; i < num_subbands; ++i)
-  		  		write_ready = subbands[i].put_next_sample(which_channels,filter1, filter2);
+  		  		write_ready = subbands[i].put_next_sample(channels,filter1, filter2);
 
+  		  	if (downmix)
+  		  		filter1.input_downmix(filter2);
   		  	filter1.calculate_pcm_samples(buffer);
   		  	if ((which_channels == OutputChannels.BOTH_CHANNELS) && (mode != Header.SINGLE_CHANNEL))
            		filter2.calculate_pcm_samples(buffer);
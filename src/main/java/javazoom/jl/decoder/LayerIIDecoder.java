@@ -35,6 +35,15 @@ package javazoom.jl.decoder;
 class LayerIIDecoder extends LayerIDecoder implements FrameDecoder
 {
 
+	/**
+	 * Subbands for each channel mode. They are created for the
+	 * first frame that needs them and reset for every frame after,
+	 * so decoding allocates nothing per frame.
+	 */
+	private final SubbandLayer2[]	single = new SubbandLayer2[32];
+	private final SubbandLayer2[]	stereo = new SubbandLayer2[32];
+	private final SubbandLayer2[]	intensity_stereo = new SubbandLayer2[32];
+
 	public LayerIIDecoder()
 	{
 	}
@@ -45,21 +54,48 @@ class LayerIIDecoder extends LayerIDecoder implements FrameDecoder
   		int i;
 		if (mode == Header.SINGLE_CHANNEL)
   		  for (i = 0; i < num_subbands; ++i)
-  		    subbands[i] = new SubbandLayer2(i);
+  		    subbands[i] = single_subband(i);
   		else if (mode == Header.JOINT_STEREO)
   		{
   		  for (i = 0; i < header.intensity_stereo_bound(); ++i)
-  		      subbands[i] = new SubbandLayer2Stereo(i);
+  		      subbands[i] = stereo_subband(i);
   		  for (; i < num_subbands; ++i)
-  		      subbands[i] = new SubbandLayer2IntensityStereo(i);
+  		      subbands[i] = intensity_stereo_subband(i);
   		}
 		else
 		{
   		  for (i = 0; i < num_subbands; ++i)
-  		      subbands[i] = new SubbandLayer2Stereo(i);
+  		      subbands[i] = stereo_subband(i);
         }
 		
 	}
+
+	private SubbandLayer2 single_subband(int i)
+	{
+		if (single[i] == null)
+			single[i] = new SubbandLayer2(i);
+		else
+			single[i].reset();
+		return single[i];
+	}
+
+	private SubbandLayer2 stereo_subband(int i)
+	{
+		if (stereo[i] == null)
+			stereo[i] = new SubbandLayer2Stereo(i);
+		else
+			stereo[i].reset();
+		return stereo[i];
+	}
+
+	private SubbandLayer2 intensity_stereo_subband(int i)
+	{
+		if (intensity_stereo[i] == null)
+			intensity_stereo[i] = new SubbandLayer2IntensityStereo(i);
+		else
+			intensity_stereo[i].reset();
+		return intensity_stereo[i];
+	}
 	
 	protected void readScaleFactorSelection()
 	{
@@ -500,6 +536,16 @@ class LayerIIDecoder extends LayerIDecoder implements FrameDecoder
 		this.subbandnumber = subbandnumber;
 	    groupnumber = samplenumber = 0;  
 	  }
+
+	  /**
+	   * Prepares a subband used for an earlier frame for the next
+	   * frame. Everything else is read from the frame before use.
+	   */
+	  public void reset()
+	  {
+	    groupnumber = samplenumber = 0;
+	    groupingtable[0] = groupingtable[1] = null;
+	  }
 	  
 	  
 	  /**
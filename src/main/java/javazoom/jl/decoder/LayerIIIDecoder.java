@@ -43,8 +43,6 @@ package javazoom.jl.decoder;
 @SuppressWarnings("cast")
 final class LayerIIIDecoder implements FrameDecoder
 {
-	final double d43 = (4.0/3.0);
-	
 	public int[]				scalefac_buffer;
 
 	// MDM: removed, as this wasn't being used.
@@ -87,7 +85,6 @@ final class LayerIIIDecoder implements FrameDecoder
    	                        SynthesisFilter filtera, SynthesisFilter filterb,
                             Obuffer buffer0, int which_ch0)
 	{
-        huffcodetab.inithuff();
 		is_1d = new int[SBLIMIT*SSLIMIT+4];
 		ro = new float[2][SBLIMIT][SSLIMIT];
 		lr = new float[2][SBLIMIT][SSLIMIT];
@@ -103,46 +100,6 @@ final class LayerIIIDecoder implements FrameDecoder
         scalefac = III_scalefac_t;
         // L3TABLE INIT
 
-		sfBandIndex = new SBI[9];	// SZD: MPEG2.5 +3 indices
-		int[] l0 = {0,6,12,18,24,30,36,44,54,66,80,96,116,140,168,200,238,284,336,396,464,522,576};
-		int[] s0 = {0,4,8,12,18,24,32,42,56,74,100,132,174,192};
-		int[] l1 = {0,6,12,18,24,30,36,44,54,66,80,96,114,136,162,194,232,278,330,394,464,540,576};
-		int[] s1 = {0,4,8,12,18,26,36,48,62,80,104,136,180,192};
-		int[] l2 = {0,6,12,18,24,30,36,44,54,66,80,96,116,140,168,200,238,284,336,396,464,522,576};
-		int[] s2 = {0,4,8,12,18,26,36,48,62,80,104,134,174,192};
-
-		int[] l3 = {0,4,8,12,16,20,24,30,36,44,52,62,74,90,110,134,162,196,238,288,342,418,576};
-		int[] s3 = {0,4,8,12,16,22,30,40,52,66,84,106,136,192};
-		int[] l4 = {0,4,8,12,16,20,24,30,36,42,50,60,72,88,106,128,156,190,230,276,330,384,576};
-		int[] s4 = {0,4,8,12,16,22,28,38,50,64,80,100,126,192};
-		int[] l5 = {0,4,8,12,16,20,24,30,36,44,54,66,82,102,126,156,194,240,296,364,448,550,576};
-		int[] s5 = {0,4,8,12,16,22,30,42,58,78,104,138,180,192};
-		// SZD: MPEG2.5
-		int[] l6 = {0,6,12,18,24,30,36,44,54,66,80,96,116,140,168,200,238,284,336,396,464,522,576};
-		int[] s6 = {0,4,8,12,18,26,36,48,62,80,104,134,174,192};
-		int[] l7 = {0,6,12,18,24,30,36,44,54,66,80,96,116,140,168,200,238,284,336,396,464,522,576};
-		int[] s7 = {0,4,8,12,18,26,36,48,62,80,104,134,174,192};
-		int[] l8 = {0,12,24,36,48,60,72,88,108,132,160,192,232,280,336,400,476,566,568,570,572,574,576};
-		int[] s8 = {0,8,16,24,36,52,72,96,124,160,162,164,166,192};
-
-		sfBandIndex[0]= new SBI(l0,s0);
-		sfBandIndex[1]= new SBI(l1,s1);
-		sfBandIndex[2]= new SBI(l2,s2);
-
-		sfBandIndex[3]= new SBI(l3,s3);
-		sfBandIndex[4]= new SBI(l4,s4);
-		sfBandIndex[5]= new SBI(l5,s5);
-		//SZD: MPEG2.5
-		sfBandIndex[6]= new SBI(l6,s6);
-		sfBandIndex[7]= new SBI(l7,s7);
-		sfBandIndex[8]= new SBI(l8,s8);
-		// END OF L3TABLE INIT
-
-		if(reorder_table == null) {	// SZD: generate LUT
-			reorder_table = new int[9][];
-			for(int i = 0; i < 9; i++)
-				reorder_table[i] = reorder(sfBandIndex[i].s);
-		}
 
 		// Sftable
 		int[] ll0 = {0, 6, 11, 16, 21};
@@ -154,12 +111,25 @@ final class LayerIIIDecoder implements FrameDecoder
 		scalefac_buffer = new int[54];
 		// END OF scalefac_buffer
 
+	  	which_channels = which_ch0;
+	  	br = new BitReserve();
+	  	si = new III_side_info_t();
+
+	  	reset(stream0, header0, filtera, filterb, buffer0);
+	}
+
+	/**
+	 * Prepares the decoder for another stream, keeping the buffers
+	 * already allocated.
+	 */
+	void reset(Bitstream stream0, Header header0,
+		SynthesisFilter filtera, SynthesisFilter filterb, Obuffer buffer0)
+	{
 	  	stream         = stream0;
 	  	header         = header0;
 	  	filter1        = filtera;
 	  	filter2        = filterb;
 	  	buffer         = buffer0;
-	  	which_channels = which_ch0;
 
 	  	frame_start = 0;
 	  	channels    = (header.mode() == Header.SINGLE_CHANNEL) ? 1 : 2;
@@ -200,8 +170,7 @@ final class LayerIIIDecoder implements FrameDecoder
 
 	  nonzero[0] = nonzero[1] = 576;
 
-	  br = new BitReserve();
-  	  si = new III_side_info_t();
+	  br.reset();
 	}
 
    /**
@@ -213,7 +182,7 @@ final class LayerIIIDecoder implements FrameDecoder
 	  for(int ch=0;ch<2;ch++)
 	  for (int j=0; j<576; j++)
    	   prevblck[ch][j] = 0.0f;
-   	  br = new BitReserve();
+   	  br.reset();
    }
 
    public void decodeFrame()
@@ -230,6 +199,23 @@ final class LayerIIIDecoder implements FrameDecoder
 	private float[] samples1 = new float[32];
 	private float[] samples2 = new float[32];
 
+	/**
+	 * Number of subbands synthesized, fewer than SBLIMIT when decoding
+	 * at a reduced sample rate.
+	 */
+	private int sblimit = SBLIMIT;
+
+	/**
+	 * Limits the hybrid synthesis to the lower 16 or 8 subbands, when
+	 * the synthesis filters output 1/2 or 1/4 of the sample rate.
+	 *
+	 * @param down_sample	0, 1 or 2.
+	 */
+	void set_down_sample(int down_sample)
+	{
+		sblimit = SBLIMIT >>> down_sample;
+	}
+
 	public void decode()
 	{
 		int nSlots = header.slots();
@@ -287,6 +273,7 @@ final class LayerIIIDecoder implements FrameDecoder
 	         if ((which_channels == OutputChannels.DOWNMIX_CHANNELS) && (channels > 1))
 	         	do_downmix();
 
+	         int sb18lim = sblimit * 18;
 	         for (ch=first_channel; ch<=last_channel; ch++) {
 
 	         		reorder(lr[ch], ch, gr);
@@ -299,14 +286,14 @@ final class LayerIIIDecoder implements FrameDecoder
 	             //for (int hb = 0;hb<576;hb++) CheckSumOut1d = CheckSumOut1d + out_1d[hb];
 				 //System.out.println("CheckSumOut1d = "+CheckSumOut1d);
 
-						for (sb18=18;sb18<576;sb18+=36) // Frequency inversion
+						for (sb18=18;sb18<sb18lim;sb18+=36) // Frequency inversion
 	                   for (ss=1;ss<SSLIMIT;ss+=2)
 	                  	  out_1d[sb18 + ss] = -out_1d[sb18 + ss];
 
 						if ((ch == 0) || (which_channels == OutputChannels.RIGHT_CHANNEL)) {
 						  for (ss=0;ss<SSLIMIT;ss++) { // Polyphase synthesis
 	                  	sb = 0;
-	                 		for (sb18=0; sb18<576; sb18+=18) {
+	                 		for (sb18=0; sb18<sb18lim; sb18+=18) {
 								samples1[sb] =  out_1d[sb18+ss];
 								//filter1.input_sample(out_1d[sb18+ss], sb);
 	                         sb++;
@@ -317,7 +304,7 @@ final class LayerIIIDecoder implements FrameDecoder
 						} else {
 						  for (ss=0;ss<SSLIMIT;ss++) { // Polyphase synthesis
 	                  	sb = 0;
-	                 		for (sb18=0; sb18<576; sb18+=18) {
+	                 		for (sb18=0; sb18<sb18lim; sb18+=18) {
 								samples2[sb] =  out_1d[sb18+ss];
 									 //filter2.input_sample(out_1d[sb18+ss], sb);
 	                         sb++;
@@ -891,41 +878,25 @@ final class LayerIIIDecoder implements FrameDecoder
 
 	   // Compute overall (global) scaling.
 
-		g_gain = (float) Math.pow(2.0 , (0.25 * (gr_info.global_gain - 210.0)));
-
-	  	for (j=0; j<nonzero[ch]; j++)
-	  	{
-	  	    // Modif E.B 02/22/99
-            int reste = j % SSLIMIT;
-            int quotien = (int) ((j-reste)/SSLIMIT);
-	    	if (is_1d[j] == 0) xr_1d[quotien][reste] = 0.0f;
-	        else
-	        {
-	         int abv = is_1d[j];
-	         // Pow Array fix (11/17/04)
-	         if (abv < t_43.length)
-	         {
-				if (is_1d[j] > 0) xr_1d[quotien][reste] = g_gain * t_43[abv];
-				else
-				{
-					if (-abv < t_43.length) xr_1d[quotien][reste] = -g_gain * t_43[-abv];
-					else xr_1d[quotien][reste] = -g_gain * (float)Math.pow(-abv, d43);	
-				} 
-	         }
-	         else
-	         {
-				if (is_1d[j] > 0) xr_1d[quotien][reste] = g_gain * (float)Math.pow(abv, d43);
-				else xr_1d[quotien][reste] = -g_gain * (float)Math.pow(-abv, d43);	         	
-	         }
-	        }
-	   }
+		g_gain = global_gain_pow[gr_info.global_gain];
 
-	   // apply formula per block type
+	   // Dequantize and apply formula per block type, walking the
+	   // [SBLIMIT][SSLIMIT] output one row at a time.
+	   int reste = 0;
+	   float[] xr_row = xr_1d[0];
 	   for (j=0; j<nonzero[ch]; j++)
 	   {
-            // Modif E.B 02/22/99
-            int reste = j % SSLIMIT;
-            int quotien = (int) ((j-reste)/SSLIMIT);
+			if (reste == SSLIMIT)
+			{
+				reste = 0;
+				xr_row = xr_1d[j / SSLIMIT];
+			}
+			// t_43 covers all Huffman values (11/17/04 Pow Array fix)
+			int abv = is_1d[j];
+			float xr_j;
+			if (abv > 0) xr_j = g_gain * t_43[abv];
+			else if (abv < 0) xr_j = -g_gain * t_43[-abv];
+			else xr_j = 0.0f;
 
 			if (index == next_cb_boundary)  { /* Adjust critical band boundary */
 	      	if ((gr_info.window_switching_flag != 0) && (gr_info.block_type == 2)) {
@@ -992,7 +963,7 @@ final class LayerIIIDecoder implements FrameDecoder
 	           				 << gr_info.scalefac_scale;
 	         idx += (gr_info.subblock_gain[t_index] << 2);
 
-				xr_1d[quotien][reste] *= two_to_negative_half_pow[idx];
+				xr_j *= two_to_negative_half_pow[idx];
 
 			} else {   // LONG block types 0,1,3 & 1st 2 subbands of switched blocks
 	/*				xr[sb][ss] *= pow(2.0, -0.5 * (1.0+gr_info.scalefac_scale)
@@ -1004,19 +975,20 @@ final class LayerIIIDecoder implements FrameDecoder
 			   	idx += pretab[cb];
 
 			   idx = idx << gr_info.scalefac_scale;
-	         xr_1d[quotien][reste] *= two_to_negative_half_pow[idx];
+	         xr_j *= two_to_negative_half_pow[idx];
 			}
+			xr_row[reste++] = xr_j;
 	      index++;
 		}
 
 	   for (j=nonzero[ch]; j<576; j++)
 	   {
-            // Modif E.B 02/22/99
-            int reste = j % SSLIMIT;
-            int quotien = (int) ((j-reste)/SSLIMIT);
-            if(reste < 0) reste = 0;
-            if(quotien < 0) quotien = 0;
-	     	xr_1d[quotien][reste] = 0.0f;
+			if (reste == SSLIMIT)
+			{
+				reste = 0;
+				xr_row = xr_1d[j / SSLIMIT];
+			}
+			xr_row[reste++] = 0.0f;
 	   }
 
    	   return;
@@ -1421,6 +1393,9 @@ final class LayerIIIDecoder implements FrameDecoder
 		} else {
 			sb18lim = 558;
 	   }
+	   // the butterflies between the last subband synthesized and the
+	   // next one are kept, the others above are skipped
+	   sb18lim = Math.min(sb18lim, sblimit * 18);
 
 	   for (sb18=0; sb18 < sb18lim; sb18+=18) {
 	      for (ss=0;ss<8;ss++) {
@@ -1452,7 +1427,8 @@ final class LayerIIIDecoder implements FrameDecoder
 
 	   float[][] prvblk;
 
-	   for(sb18=0;sb18<576;sb18+=18)
+	   int sb18lim = sblimit * 18;
+	   for(sb18=0;sb18<sb18lim;sb18+=18)
 	   {
 			bt = ((gr_info.window_switching_flag !=0 ) && (gr_info.mixed_block_flag !=0) &&
 					 (sb18 < 36)) ? 0 : gr_info.block_type;
@@ -1939,36 +1915,96 @@ final class LayerIIIDecoder implements FrameDecoder
 	public static final int pretab[] =
 	{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 3, 3, 3, 2, 0};
 
-    private SBI[]			sfBandIndex; // Init in the constructor.
-
-	public static final float two_to_negative_half_pow[] =
-	{ 1.0000000000E+00f, 7.0710678119E-01f, 5.0000000000E-01f, 3.5355339059E-01f,
-	  2.5000000000E-01f, 1.7677669530E-01f, 1.2500000000E-01f, 8.8388347648E-02f,
-	  6.2500000000E-02f, 4.4194173824E-02f, 3.1250000000E-02f, 2.2097086912E-02f,
-	  1.5625000000E-02f, 1.1048543456E-02f, 7.8125000000E-03f, 5.5242717280E-03f,
-	  3.9062500000E-03f, 2.7621358640E-03f, 1.9531250000E-03f, 1.3810679320E-03f,
-	  9.7656250000E-04f, 6.9053396600E-04f, 4.8828125000E-04f, 3.4526698300E-04f,
-	  2.4414062500E-04f, 1.7263349150E-04f, 1.2207031250E-04f, 8.6316745750E-05f,
-	  6.1035156250E-05f, 4.3158372875E-05f, 3.0517578125E-05f, 2.1579186438E-05f,
-	  1.5258789062E-05f, 1.0789593219E-05f, 7.6293945312E-06f, 5.3947966094E-06f,
-	  3.8146972656E-06f, 2.6973983047E-06f, 1.9073486328E-06f, 1.3486991523E-06f,
-	  9.5367431641E-07f, 6.7434957617E-07f, 4.7683715820E-07f, 3.3717478809E-07f,
-	  2.3841857910E-07f, 1.6858739404E-07f, 1.1920928955E-07f, 8.4293697022E-08f,
-	  5.9604644775E-08f, 4.2146848511E-08f, 2.9802322388E-08f, 2.1073424255E-08f,
-	  1.4901161194E-08f, 1.0536712128E-08f, 7.4505805969E-09f, 5.2683560639E-09f,
-	  3.7252902985E-09f, 2.6341780319E-09f, 1.8626451492E-09f, 1.3170890160E-09f,
-	  9.3132257462E-10f, 6.5854450798E-10f, 4.6566128731E-10f, 3.2927225399E-10f
-	};
+	/**
+	 * The scalefactor bands of each sample rate. This and the other
+	 * tables of the decoder are built when the class is loaded and not
+	 * modified afterwards, so decoders on several threads share them.
+	 */
+	static private final SBI[]	sfBandIndex = create_sfBandIndex();
+
+	static private SBI[] create_sfBandIndex()
+	{
+		SBI[] sfBandIndex = new SBI[9];	// SZD: MPEG2.5 +3 indices
+		int[] l0 = {0,6,12,18,24,30,36,44,54,66,80,96,116,140,168,200,238,284,336,396,464,522,576};
+		int[] s0 = {0,4,8,12,18,24,32,42,56,74,100,132,174,192};
+		int[] l1 = {0,6,12,18,24,30,36,44,54,66,80,96,114,136,162,194,232,278,330,394,464,540,576};
+		int[] s1 = {0,4,8,12,18,26,36,48,62,80,104,136,180,192};
+		int[] l2 = {0,6,12,18,24,30,36,44,54,66,80,96,116,140,168,200,238,284,336,396,464,522,576};
+		int[] s2 = {0,4,8,12,18,26,36,48,62,80,104,134,174,192};
+
+		int[] l3 = {0,4,8,12,16,20,24,30,36,44,52,62,74,90,110,134,162,196,238,288,342,418,576};
+		int[] s3 = {0,4,8,12,16,22,30,40,52,66,84,106,136,192};
+		int[] l4 = {0,4,8,12,16,20,24,30,36,42,50,60,72,88,106,128,156,190,230,276,330,384,576};
+		int[] s4 = {0,4,8,12,16,22,28,38,50,64,80,100,126,192};
+		int[] l5 = {0,4,8,12,16,20,24,30,36,44,54,66,82,102,126,156,194,240,296,364,448,550,576};
+		int[] s5 = {0,4,8,12,16,22,30,42,58,78,104,138,180,192};
+		// SZD: MPEG2.5
+		int[] l6 = {0,6,12,18,24,30,36,44,54,66,80,96,116,140,168,200,238,284,336,396,464,522,576};
+		int[] s6 = {0,4,8,12,18,26,36,48,62,80,104,134,174,192};
+		int[] l7 = {0,6,12,18,24,30,36,44,54,66,80,96,116,140,168,200,238,284,336,396,464,522,576};
+		int[] s7 = {0,4,8,12,18,26,36,48,62,80,104,134,174,192};
+		int[] l8 = {0,12,24,36,48,60,72,88,108,132,160,192,232,280,336,400,476,566,568,570,572,574,576};
+		int[] s8 = {0,8,16,24,36,52,72,96,124,160,162,164,166,192};
+
+		sfBandIndex[0]= new SBI(l0,s0);
+		sfBandIndex[1]= new SBI(l1,s1);
+		sfBandIndex[2]= new SBI(l2,s2);
+
+		sfBandIndex[3]= new SBI(l3,s3);
+		sfBandIndex[4]= new SBI(l4,s4);
+		sfBandIndex[5]= new SBI(l5,s5);
+		//SZD: MPEG2.5
+		sfBandIndex[6]= new SBI(l6,s6);
+		sfBandIndex[7]= new SBI(l7,s7);
+		sfBandIndex[8]= new SBI(l8,s8);
+		// END OF L3TABLE INIT
+		return sfBandIndex;
+	}
+
+	/**
+	 * 2^(-x/2) for the scalefactor and subblock gain index of a
+	 * sample. The largest index, (31 << 1) + (7 << 2), is reached by
+	 * MPEG-2 LSF short blocks with scalefac_scale set.
+	 */
+	public static final float two_to_negative_half_pow[] = create_two_to_negative_half_pow();
+
+	static private float[] create_two_to_negative_half_pow()
+	{
+		float[] pow = new float[(31 << 1) + (7 << 2) + 1];
+		for (int i=0; i<pow.length; i++)
+		{
+			pow[i] = (float)Math.pow(2.0, -0.5 * i);
+		}
+		return pow;
+	}
+
+	/**
+	 * 2^((global_gain-210)/4) for all values of the 8-bit global gain.
+	 */
+	static private final float global_gain_pow[] = create_global_gain_pow();
+
+	static private float[] create_global_gain_pow()
+	{
+		float[] pow = new float[256];
+		for (int i=0; i<pow.length; i++)
+		{
+			pow[i] = (float)Math.pow(2.0, 0.25 * (i - 210.0));
+		}
+		return pow;
+	}
 
 
 	public static final float t_43[] = create_t_43();
 
+	/**
+	 * x^(4/3) for all Huffman decoded values, up to 15 plus 13 linbits.
+	 */
 	static private float[] create_t_43()
 	{
-		float[] t43 = new float[8192];
+		float[] t43 = new float[15 + (1 << 13)];
 		final double d43 = (4.0/3.0);
 
-		for (int i=0; i<8192; i++)
+		for (int i=0; i<t43.length; i++)
 		{
 			t43[i] = (float)Math.pow(i, d43);
 		}
@@ -2082,7 +2118,15 @@ final class LayerIIIDecoder implements FrameDecoder
 		 0,  1,  2,  3,  4,  5,  6,  7,  8,  9, 10, 11, 12, 13, 14, 15, 16, 17
 	};
 */
-	private static /*final*/ int reorder_table[][]/* = loadReorderTable()*/;	// SZD: will be generated on demand
+	private static final int reorder_table[][] = create_reorder_table();	// SZD: generated LUT
+
+	static private int[][] create_reorder_table()
+	{
+		int[][] table = new int[9][];
+		for(int i = 0; i < 9; i++)
+			table[i] = reorder(sfBandIndex[i].s);
+		return table;
+	}
 
 	/**
 	 * Loads the data for the reorder
@@ -0,0 +1,159 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A seekable <code>Source</code> that provides the contents of a
+ * file. Files up to 2GB are memory-mapped, so reads are plain
+ * copies out of the page cache; larger files are read through
+ * the <code>FileChannel</code> at the current position.
+ *
+ * The length of the file is taken when it is opened. The mapping
+ * is released when the buffer is garbage collected, closing the
+ * source only closes the file.
+ *
+ * Instances are not thread-safe; use <code>duplicate()</code> to
+ * read the same file from several threads.
+ */
+public class MappedFileSource implements Source, Closeable
+{
+	private final RandomAccessFile	file;
+	private final FileChannel		channel;
+	private final MappedByteBuffer	buffer;
+	private final long				length;
+	private final boolean			shared;
+	private long					position;
+
+	public MappedFileSource(String name)
+		throws IOException
+	{
+		this(new File(name));
+	}
+
+	public MappedFileSource(File file)
+		throws IOException
+	{
+		if (file==null)
+			throw new NullPointerException("file");
+
+		this.file = new RandomAccessFile(file, "r");
+		try
+		{
+			channel = this.file.getChannel();
+			length = channel.size();
+			if (length <= Integer.MAX_VALUE)
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			else
+				buffer = null;
+		}
+		catch (IOException ex)
+		{
+			this.file.close();
+			throw ex;
+		}
+		shared = false;
+	}
+
+	private MappedFileSource(MappedFileSource original)
+	{
+		file = original.file;
+		channel = original.channel;
+		buffer = (original.buffer!=null) ? (MappedByteBuffer) original.buffer.duplicate() : null;
+		length = original.length;
+		shared = true;
+	}
+
+	/**
+	 * Returns a source for the same file with its own position,
+	 * sharing the mapping. Closing the duplicate has no effect,
+	 * the file stays open until this source is closed.
+	 */
+	public MappedFileSource duplicate()
+	{
+		return new MappedFileSource(this);
+	}
+
+	public int read(byte[] b, int offs, int len)
+		throws IOException
+	{
+		if (position >= length)
+			return -1;
+		int read;
+		if (buffer!=null)
+		{
+			read = (int) Math.min(len, length - position);
+			buffer.position((int) position);
+			buffer.get(b, offs, read);
+		}
+		else
+		{
+			read = channel.read(ByteBuffer.wrap(b, offs, len), position);
+			if (read < 0)
+				return -1;
+		}
+		position += read;
+		return read;
+	}
+
+	public boolean willReadBlock()
+	{
+		return false;
+	}
+
+	public boolean isSeekable()
+	{
+		return true;
+	}
+
+	public long length()
+	{
+		return length;
+	}
+
+	public long tell()
+	{
+		return position;
+	}
+
+	/**
+	 * Moves to the given offset, which is clamped to the file.
+	 *
+	 * @return the new position.
+	 */
+	public long seek(long to)
+	{
+		position = Math.max(0, Math.min(to, length));
+		return position;
+	}
+
+	public void close()
+		throws IOException
+	{
+		if (!shared)
+			file.close();
+	}
+}
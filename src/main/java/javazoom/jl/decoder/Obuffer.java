@@ -60,6 +60,18 @@ public abstract class Obuffer
 	    }
 	}
 
+  /**
+   * Accepts the first <code>count</code> of 32 new PCM samples, when
+   * decoding at a half or a quarter of the sample rate.
+   */
+	public void appendSamples(int channel, float[] f, int count)
+	{
+	    for (int i=0; i<count;)
+	    {
+			append(channel, clip(f[i++]));
+	    }
+	}
+
   /**
    * Clip Sample to 16 Bits
    */
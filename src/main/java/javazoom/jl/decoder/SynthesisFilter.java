@@ -49,6 +49,8 @@ final class SynthesisFilter
   private int				 channel;
   private float 			 scalefactor;
   private float[]			 eq;
+  private int				 down_sample;		// 0, or 1 or 2 for 1/2 or 1/4 of the sample rate
+  private boolean			 vectors;			// windowing with SynthesisVectors
 	
 	/**
 	 * Quality value for controlling CPU usage/quality tradeoff. 
@@ -72,17 +74,12 @@ final class SynthesisFilter
    */
   public SynthesisFilter(int channelnumber, float factor, float[] eq0)
   {  	 
-	  if (d==null)
-	  {
-			d = load_d();
-			d16 = splitArray(d, 16);
-	  }
-	  
 	  v1 = new float[512];
 	 v2 = new float[512];
 	 samples = new float[32];
      channel = channelnumber;
 	 scalefactor = factor;
+	 vectors = VECTORS_DEFAULT;
 	 setEQ(eq);	 
 	 //setQuality(HIGH_QUALITY);
 	 
@@ -168,6 +165,61 @@ final class SynthesisFilter
 	  }
   }
   
+  /**
+   * Replaces the subband samples with the mean of these samples and
+   * the samples given to another filter, which is cleared, so one
+   * filter synthesizes both channels downmixed.
+   */
+  void input_downmix(SynthesisFilter other)
+  {
+	  float[] s = other.samples;
+	  for (int i=0; i<32; i++)
+	  {
+		 samples[i] = (samples[i] + s[i]) * 0.5f;
+		 s[i] = 0.0f;
+	  }
+  }
+
+  /**
+   * Synthesizes only the lower 16 or 8 subbands into 16 or 8 samples
+   * for every 32 subband samples, i.e. at 1/2 or 1/4 of the sample
+   * rate, the higher subbands being dropped.
+   *
+   * @param down_sample	0 for the full sample rate, 1 for 1/2 of it
+   *					or 2 for 1/4 of it.
+   */
+  void set_down_sample(int down_sample)
+  {
+	  if (down_sample < 0 || down_sample > 2)
+		  throw new IllegalArgumentException("down_sample");
+	  this.down_sample = down_sample;
+  }
+  
+  /**
+   * Selects the windowing with the vector API or the scalar code, and
+   * resets the filter, as the V vectors are stored differently. Both
+   * give the same samples.
+   *
+   * @throws UnsupportedOperationException if vectors are asked for
+   *			and <code>vectors_available()</code> is false.
+   */
+  void set_vectors(boolean vectors)
+  {
+	  if (vectors && !VECTORS_AVAILABLE)
+		  throw new UnsupportedOperationException("vector API not available");
+	  this.vectors = vectors;
+	  reset();
+  }
+
+  /**
+   * @return true if the windowing can use the vector API, i.e. on
+   *			Java 17 or later with the jdk.incubator.vector module.
+   */
+  static boolean vectors_available()
+  {
+	  return VECTORS_AVAILABLE;
+  }
+  
   /**
    * Compute new values via a fast cosine transform.
    */
@@ -451,83 +503,86 @@ final class SynthesisFilter
 	// float[] x2 = actual_v + actual_write_pos;
 	float dest[] = actual_v;
 	
-	int pos = actual_write_pos;
-	
-	dest[0 + pos] = new_v0;
-	dest[16 + pos] = new_v1;
-	dest[32 + pos] = new_v2;
-	dest[48 + pos] = new_v3;
-	dest[64 + pos] = new_v4;
-	dest[80 + pos] = new_v5;
-	dest[96 + pos] = new_v6;
-	dest[112 + pos] = new_v7;
-	dest[128 + pos] = new_v8;
-	dest[144 + pos] = new_v9;
-	dest[160 + pos] = new_v10;
-	dest[176 + pos] = new_v11;
-	dest[192 + pos] = new_v12;
-	dest[208 + pos] = new_v13;
-	dest[224 + pos] = new_v14;
-	dest[240 + pos] = new_v15;
+	// for the vector API the V vectors are stored transposed, so
+	// the values of one write position are consecutive
+	int pos = vectors ? actual_write_pos << 5 : actual_write_pos;
+	int inc = vectors ? 1 : 16;
+	
+	dest[pos] = new_v0;
+	dest[pos + inc] = new_v1;
+	dest[pos + 2*inc] = new_v2;
+	dest[pos + 3*inc] = new_v3;
+	dest[pos + 4*inc] = new_v4;
+	dest[pos + 5*inc] = new_v5;
+	dest[pos + 6*inc] = new_v6;
+	dest[pos + 7*inc] = new_v7;
+	dest[pos + 8*inc] = new_v8;
+	dest[pos + 9*inc] = new_v9;
+	dest[pos + 10*inc] = new_v10;
+	dest[pos + 11*inc] = new_v11;
+	dest[pos + 12*inc] = new_v12;
+	dest[pos + 13*inc] = new_v13;
+	dest[pos + 14*inc] = new_v14;
+	dest[pos + 15*inc] = new_v15;
 
 	// V[16] is always 0.0:
-	dest[256 + pos] = 0.0f;
+	dest[pos + 16*inc] = 0.0f;
 
 	// insert V[17-31] (== -new_v[15-1]) into actual v:
-	dest[272 + pos] = -new_v15;
-	dest[288 + pos] = -new_v14;
-	dest[304 + pos] = -new_v13;
-	dest[320 + pos] = -new_v12;
-	dest[336 + pos] = -new_v11;
-	dest[352 + pos] = -new_v10;
-	dest[368 + pos] = -new_v9;
-	dest[384 + pos] = -new_v8;
-	dest[400 + pos] = -new_v7;
-	dest[416 + pos] = -new_v6;
-	dest[432 + pos] = -new_v5;
-	dest[448 + pos] = -new_v4;
-	dest[464 + pos] = -new_v3;
-	dest[480 + pos] = -new_v2;
-	dest[496 + pos] = -new_v1;
+	dest[pos + 17*inc] = -new_v15;
+	dest[pos + 18*inc] = -new_v14;
+	dest[pos + 19*inc] = -new_v13;
+	dest[pos + 20*inc] = -new_v12;
+	dest[pos + 21*inc] = -new_v11;
+	dest[pos + 22*inc] = -new_v10;
+	dest[pos + 23*inc] = -new_v9;
+	dest[pos + 24*inc] = -new_v8;
+	dest[pos + 25*inc] = -new_v7;
+	dest[pos + 26*inc] = -new_v6;
+	dest[pos + 27*inc] = -new_v5;
+	dest[pos + 28*inc] = -new_v4;
+	dest[pos + 29*inc] = -new_v3;
+	dest[pos + 30*inc] = -new_v2;
+	dest[pos + 31*inc] = -new_v1;
 
 	// insert V[32] (== -new_v[0]) into other v:
 	dest = (actual_v==v1) ? v2 : v1;
 	
-	dest[0 + pos] = -new_v0;
+	dest[pos] = -new_v0;
 	// insert V[33-48] (== new_v[16-31]) into other v:
-	dest[16 + pos] = new_v16;
-	dest[32 + pos] = new_v17;
-	dest[48 + pos] = new_v18;
-	dest[64 + pos] = new_v19;
-	dest[80 + pos] = new_v20;
-	dest[96 + pos] = new_v21;
-	dest[112 + pos] = new_v22;
-	dest[128 + pos] = new_v23;
-	dest[144 + pos] = new_v24;
-	dest[160 + pos] = new_v25;
-	dest[176 + pos] = new_v26;
-	dest[192 + pos] = new_v27;
-	dest[208 + pos] = new_v28;
-	dest[224 + pos] = new_v29;
-	dest[240 + pos] = new_v30;
-	dest[256 + pos] = new_v31;
+	dest[pos + inc] = new_v16;
+	dest[pos + 2*inc] = new_v17;
+	dest[pos + 3*inc] = new_v18;
+	dest[pos + 4*inc] = new_v19;
+	dest[pos + 5*inc] = new_v20;
+	dest[pos + 6*inc] = new_v21;
+	dest[pos + 7*inc] = new_v22;
+	dest[pos + 8*inc] = new_v23;
+	dest[pos + 9*inc] = new_v24;
+	dest[pos + 10*inc] = new_v25;
+	dest[pos + 11*inc] = new_v26;
+	dest[pos + 12*inc] = new_v27;
+	dest[pos + 13*inc] = new_v28;
+	dest[pos + 14*inc] = new_v29;
+	dest[pos + 15*inc] = new_v30;
+	dest[pos + 16*inc] = new_v31;
 	
 	// insert V[49-63] (== new_v[30-16]) into other v:
-	dest[272 + pos] = new_v30;
-	dest[288 + pos] = new_v29;
-	dest[304 + pos] = new_v28;
-	dest[320 + pos] = new_v27;
-	dest[336 + pos] = new_v26;
-	dest[352 + pos] = new_v25;
-	dest[368 + pos] = new_v24;
-	dest[384 + pos] = new_v23;
-	dest[400 + pos] = new_v22;
-	dest[416 + pos] = new_v21;
-	dest[432 + pos] = new_v20;
-	dest[448 + pos] = new_v19;
-	dest[464 + pos] = new_v18;
-	dest[480 + pos] = new_v17;
-	dest[496 + pos] = new_v16; 			
+	dest[pos + 17*inc] = new_v30;
+	dest[pos + 18*inc] = new_v29;
+	dest[pos + 19*inc] = new_v28;
+	dest[pos + 20*inc] = new_v27;
+	dest[pos + 21*inc] = new_v26;
+	dest[pos + 22*inc] = new_v25;
+	dest[pos + 23*inc] = new_v24;
+	dest[pos + 24*inc] = new_v23;
+	dest[pos + 25*inc] = new_v22;
+	dest[pos + 26*inc] = new_v21;
+	dest[pos + 27*inc] = new_v20;
+	dest[pos + 28*inc] = new_v19;
+	dest[pos + 29*inc] = new_v18;
+	dest[pos + 30*inc] = new_v17;
+	dest[pos + 31*inc] = new_v16; 			
 /*
 	}
 	else
@@ -571,286 +626,6 @@ final class SynthesisFilter
 */	
   }
 	
-  /**
-   * Compute new values via a fast cosine transform.
-   */
-  private void compute_new_v_old()
-  {
-	// p is fully initialized from x1
-	 //float[] p = _p;
-	 // pp is fully initialized from p
-	 //float[] pp = _pp; 
-	  
-	 //float[] new_v = _new_v;
-	  
-  	float[] new_v = new float[32]; // new V[0-15] and V[33-48] of Figure 3-A.2 in ISO DIS 11172-3
-	float[] p = new float[16];
-	float[] pp = new float[16];
-	  
-	  
-	 for (int i=31; i>=0; i--)
-	 {
-		 new_v[i] = 0.0f;
-	 }
-	 
-//	float[] new_v = new float[32]; // new V[0-15] and V[33-48] of Figure 3-A.2 in ISO DIS 11172-3
-//	float[] p = new float[16];
-//	float[] pp = new float[16];
-
-    float[] x1 = samples;
-	
-	p[0] = x1[0] + x1[31];
-	p[1] = x1[1] + x1[30];
-	p[2] = x1[2] + x1[29];
-	p[3] = x1[3] + x1[28];
-	p[4] = x1[4] + x1[27];
-	p[5] = x1[5] + x1[26];
-	p[6] = x1[6] + x1[25];
-	p[7] = x1[7] + x1[24];
-	p[8] = x1[8] + x1[23];
-	p[9] = x1[9] + x1[22];
-	p[10] = x1[10] + x1[21];
-	p[11] = x1[11] + x1[20];
-	p[12] = x1[12] + x1[19];
-	p[13] = x1[13] + x1[18];
-	p[14] = x1[14] + x1[17];
-	p[15] = x1[15] + x1[16];
-	
-	pp[0] = p[0] + p[15];
-	pp[1] = p[1] + p[14];
-	pp[2] = p[2] + p[13];
-	pp[3] = p[3] + p[12];
-	pp[4] = p[4] + p[11];
-	pp[5] = p[5] + p[10];
-	pp[6] = p[6] + p[9];
-	pp[7] = p[7] + p[8];
-	pp[8] = (p[0] - p[15]) * cos1_32;
-	pp[9] = (p[1] - p[14]) * cos3_32;
-	pp[10] = (p[2] - p[13]) * cos5_32;
-	pp[11] = (p[3] - p[12]) * cos7_32;
-	pp[12] = (p[4] - p[11]) * cos9_32;
-	pp[13] = (p[5] - p[10]) * cos11_32;
-	pp[14] = (p[6] - p[9]) * cos13_32;
-	pp[15] = (p[7] - p[8]) * cos15_32;
-
-	p[0] = pp[0] + pp[7];
-	p[1] = pp[1] + pp[6];
-	p[2] = pp[2] + pp[5];
-	p[3] = pp[3] + pp[4];
-	p[4] = (pp[0] - pp[7]) * cos1_16;
-	p[5] = (pp[1] - pp[6]) * cos3_16;
-	p[6] = (pp[2] - pp[5]) * cos5_16;
-	p[7] = (pp[3] - pp[4]) * cos7_16;
-	p[8] = pp[8] + pp[15];
-	p[9] = pp[9] + pp[14];
-	p[10] = pp[10] + pp[13];
-	p[11] = pp[11] + pp[12];
-	p[12] = (pp[8] - pp[15]) * cos1_16;
-	p[13] = (pp[9] - pp[14]) * cos3_16;
-	p[14] = (pp[10] - pp[13]) * cos5_16;
-	p[15] = (pp[11] - pp[12]) * cos7_16;
-	
-
-	pp[0] = p[0] + p[3];
-	pp[1] = p[1] + p[2];
-	pp[2] = (p[0] - p[3]) * cos1_8;
-	pp[3] = (p[1] - p[2]) * cos3_8;
-	pp[4] = p[4] + p[7];
-	pp[5] = p[5] + p[6];
-	pp[6] = (p[4] - p[7]) * cos1_8;
-	pp[7] = (p[5] - p[6]) * cos3_8;
-	pp[8] = p[8] + p[11];
-	pp[9] = p[9] + p[10];
-	pp[10] = (p[8] - p[11]) * cos1_8;
-	pp[11] = (p[9] - p[10]) * cos3_8;
-	pp[12] = p[12] + p[15];
-	pp[13] = p[13] + p[14];
-	pp[14] = (p[12] - p[15]) * cos1_8;
-	pp[15] = (p[13] - p[14]) * cos3_8;
-
-	p[0] = pp[0] + pp[1];
-	p[1] = (pp[0] - pp[1]) * cos1_4;
-	p[2] = pp[2] + pp[3];
-	p[3] = (pp[2] - pp[3]) * cos1_4;
-	p[4] = pp[4] + pp[5];
-	p[5] = (pp[4] - pp[5]) * cos1_4;
-	p[6] = pp[6] + pp[7];
-	p[7] = (pp[6] - pp[7]) * cos1_4;
-	p[8] = pp[8] + pp[9];
-	p[9] = (pp[8] - pp[9]) * cos1_4;
-	p[10] = pp[10] + pp[11];
-	p[11] = (pp[10] - pp[11]) * cos1_4;
-	p[12] = pp[12] + pp[13];
-	p[13] = (pp[12] - pp[13]) * cos1_4;
-	p[14] = pp[14] + pp[15];
-	p[15] = (pp[14] - pp[15]) * cos1_4;
-
-	// this is pretty insane coding
-	float tmp1;
-	new_v[36-17] = -(new_v[4] = (new_v[12] = p[7]) + p[5]) - p[6];
-	new_v[44-17] = -p[6] - p[7] - p[4];
-	new_v[6] = (new_v[10] = (new_v[14] = p[15]) + p[11]) + p[13];
-	new_v[34-17] = -(new_v[2] = p[15] + p[13] + p[9]) - p[14];
-	new_v[38-17] = (tmp1 = -p[14] - p[15] - p[10] - p[11]) - p[13];
-	new_v[46-17] = -p[14] - p[15] - p[12] - p[8];
-	new_v[42-17] = tmp1 - p[12];
-	new_v[48-17] = -p[0];
-	new_v[0] = p[1];
-	new_v[40-17] = -(new_v[8] = p[3]) - p[2];
-	
-	p[0] = (x1[0] - x1[31]) * cos1_64;
-	p[1] = (x1[1] - x1[30]) * cos3_64;
-	p[2] = (x1[2] - x1[29]) * cos5_64;
-	p[3] = (x1[3] - x1[28]) * cos7_64;
-	p[4] = (x1[4] - x1[27]) * cos9_64;
-	p[5] = (x1[5] - x1[26]) * cos11_64;
-	p[6] = (x1[6] - x1[25]) * cos13_64;
-	p[7] = (x1[7] - x1[24]) * cos15_64;
-	p[8] = (x1[8] - x1[23]) * cos17_64;
-	p[9] = (x1[9] - x1[22]) * cos19_64;
-	p[10] = (x1[10] - x1[21]) * cos21_64;
-	p[11] = (x1[11] - x1[20]) * cos23_64;
-	p[12] = (x1[12] - x1[19]) * cos25_64;
-	p[13] = (x1[13] - x1[18]) * cos27_64;
-	p[14] = (x1[14] - x1[17]) * cos29_64;
-	p[15] = (x1[15] - x1[16]) * cos31_64;
-
-	
-	pp[0] = p[0] + p[15];
-	pp[1] = p[1] + p[14];
-	pp[2] = p[2] + p[13];
-	pp[3] = p[3] + p[12];
-	pp[4] = p[4] + p[11];
-	pp[5] = p[5] + p[10];
-	pp[6] = p[6] + p[9];
-	pp[7] = p[7] + p[8];
-	pp[8] = (p[0] - p[15]) * cos1_32;
-	pp[9] = (p[1] - p[14]) * cos3_32;
-	pp[10] = (p[2] - p[13]) * cos5_32;
-	pp[11] = (p[3] - p[12]) * cos7_32;
-	pp[12] = (p[4] - p[11]) * cos9_32;
-	pp[13] = (p[5] - p[10]) * cos11_32;
-	pp[14] = (p[6] - p[9]) * cos13_32;
-	pp[15] = (p[7] - p[8]) * cos15_32;
-	
-
-	p[0] = pp[0] + pp[7];
-	p[1] = pp[1] + pp[6];
-	p[2] = pp[2] + pp[5];
-	p[3] = pp[3] + pp[4];
-	p[4] = (pp[0] - pp[7]) * cos1_16;
-	p[5] = (pp[1] - pp[6]) * cos3_16;
-	p[6] = (pp[2] - pp[5]) * cos5_16;
-	p[7] = (pp[3] - pp[4]) * cos7_16;
-	p[8] = pp[8] + pp[15];
-	p[9] = pp[9] + pp[14];
-	p[10] = pp[10] + pp[13];
-	p[11] = pp[11] + pp[12];
-	p[12] = (pp[8] - pp[15]) * cos1_16;
-	p[13] = (pp[9] - pp[14]) * cos3_16;
-	p[14] = (pp[10] - pp[13]) * cos5_16;
-	p[15] = (pp[11] - pp[12]) * cos7_16;
-
-
-	pp[0] = p[0] + p[3];
-	pp[1] = p[1] + p[2];
-	pp[2] = (p[0] - p[3]) * cos1_8;
-	pp[3] = (p[1] - p[2]) * cos3_8;
-	pp[4] = p[4] + p[7];
-	pp[5] = p[5] + p[6];
-	pp[6] = (p[4] - p[7]) * cos1_8;
-	pp[7] = (p[5] - p[6]) * cos3_8;
-	pp[8] = p[8] + p[11];
-	pp[9] = p[9] + p[10];
-	pp[10] = (p[8] - p[11]) * cos1_8;
-	pp[11] = (p[9] - p[10]) * cos3_8;
-	pp[12] = p[12] + p[15];
-	pp[13] = p[13] + p[14];
-	pp[14] = (p[12] - p[15]) * cos1_8;
-	pp[15] = (p[13] - p[14]) * cos3_8;
-
-	
-	p[0] = pp[0] + pp[1];
-	p[1] = (pp[0] - pp[1]) * cos1_4;
-	p[2] = pp[2] + pp[3];
-	p[3] = (pp[2] - pp[3]) * cos1_4;
-	p[4] = pp[4] + pp[5];
-	p[5] = (pp[4] - pp[5]) * cos1_4;
-	p[6] = pp[6] + pp[7];
-	p[7] = (pp[6] - pp[7]) * cos1_4;
-	p[8] = pp[8] + pp[9];
-	p[9] = (pp[8] - pp[9]) * cos1_4;
-	p[10] = pp[10] + pp[11];
-	p[11] = (pp[10] - pp[11]) * cos1_4;
-	p[12] = pp[12] + pp[13];
-	p[13] = (pp[12] - pp[13]) * cos1_4;
-	p[14] = pp[14] + pp[15];
-	p[15] = (pp[14] - pp[15]) * cos1_4;
-	
-
-	// manually doing something that a compiler should handle sucks
-	// coding like this is hard to read
-	float tmp2;
-	new_v[5] = (new_v[11] = (new_v[13] = (new_v[15] = p[15]) + p[7]) + p[11])
-							+ p[5] + p[13];
-	new_v[7] = (new_v[9] = p[15] + p[11] + p[3]) + p[13];
-	new_v[33-17] = -(new_v[1] = (tmp1 = p[13] + p[15] + p[9]) + p[1]) - p[14];
-	new_v[35-17] = -(new_v[3] = tmp1 + p[5] + p[7]) - p[6] - p[14];
-
-	new_v[39-17] = (tmp1 = -p[10] - p[11] - p[14] - p[15])
-									- p[13] - p[2] - p[3];
-	new_v[37-17] = tmp1 - p[13] - p[5] - p[6] - p[7];
-	new_v[41-17] = tmp1 - p[12] - p[2] - p[3];
-	new_v[43-17] = tmp1 - p[12] - (tmp2 = p[4] + p[6] + p[7]);
-	new_v[47-17] = (tmp1 = -p[8] - p[12] - p[14] - p[15]) - p[0];
-	new_v[45-17] = tmp1 - tmp2;
-
-	// insert V[0-15] (== new_v[0-15]) into actual v:
-	x1 = new_v;
-	// float[] x2 = actual_v + actual_write_pos;
-	float[] dest = actual_v;
-	
-	dest[0 + actual_write_pos] = x1[0];
-	dest[16 + actual_write_pos] = x1[1];
-	dest[32 + actual_write_pos] = x1[2];
-	dest[48 + actual_write_pos] = x1[3];
-	dest[64 + actual_write_pos] = x1[4];
-	dest[80 + actual_write_pos] = x1[5];
-	dest[96 + actual_write_pos] = x1[6];
-	dest[112 + actual_write_pos] = x1[7];
-	dest[128 + actual_write_pos] = x1[8];
-	dest[144 + actual_write_pos] = x1[9];
-	dest[160 + actual_write_pos] = x1[10];
-	dest[176 + actual_write_pos] = x1[11];
-	dest[192 + actual_write_pos] = x1[12];
-	dest[208 + actual_write_pos] = x1[13];
-	dest[224 + actual_write_pos] = x1[14];
-	dest[240 + actual_write_pos] = x1[15];
-
-	// V[16] is always 0.0:
-	dest[256 + actual_write_pos] = 0.0f;
-
-	// insert V[17-31] (== -new_v[15-1]) into actual v:
-	dest[272 + actual_write_pos] = -x1[15];
-	dest[288 + actual_write_pos] = -x1[14];
-	dest[304 + actual_write_pos] = -x1[13];
-	dest[320 + actual_write_pos] = -x1[12];
-	dest[336 + actual_write_pos] = -x1[11];
-	dest[352 + actual_write_pos] = -x1[10];
-	dest[368 + actual_write_pos] = -x1[9];
-	dest[384 + actual_write_pos] = -x1[8];
-	dest[400 + actual_write_pos] = -x1[7];
-	dest[416 + actual_write_pos] = -x1[6];
-	dest[432 + actual_write_pos] = -x1[5];
-	dest[448 + actual_write_pos] = -x1[4];
-	dest[464 + actual_write_pos] = -x1[3];
-	dest[480 + actual_write_pos] = -x1[2];
-	dest[496 + actual_write_pos] = -x1[1];
-
-	// insert V[32] (== -new_v[0]) into other v:
-	
-  }
-
   /**
    * Compute PCM Samples.
    */
@@ -1542,14 +1317,110 @@ private void compute_pcm_samples(Obuffer buffer)
 */	 
   }
 
+  /**
+   * Computes every 2nd or 4th sample of the windowing, adding the
+   * terms in the same order as the unrolled compute_pcm_samplesN()
+   * methods, for decoding at a reduced sample rate. The dropped
+   * subbands leave nothing above the reduced Nyquist frequency, so
+   * the samples can simply be skipped.
+   */
+  private void compute_pcm_samples_reduced(Obuffer buffer)
+  {
+	final float[] vp = actual_v;
+	final float[] tmpOut = _tmpOut;
+	final int pos = actual_write_pos;
+	final int step = 1 << down_sample;
+
+	// positions of the earlier V vectors the window coefficients apply to
+	final int o1 = (pos - 1) & 0xf;
+	final int o2 = (pos - 2) & 0xf;
+	final int o3 = (pos - 3) & 0xf;
+	final int o4 = (pos - 4) & 0xf;
+	final int o5 = (pos - 5) & 0xf;
+	final int o6 = (pos - 6) & 0xf;
+	final int o7 = (pos - 7) & 0xf;
+	final int o8 = (pos - 8) & 0xf;
+	final int o9 = (pos - 9) & 0xf;
+	final int o10 = (pos - 10) & 0xf;
+	final int o11 = (pos - 11) & 0xf;
+	final int o12 = (pos - 12) & 0xf;
+	final int o13 = (pos - 13) & 0xf;
+	final int o14 = (pos - 14) & 0xf;
+	final int o15 = (pos - 15) & 0xf;
+
+	int n = 0;
+	for (int i=0; i<32; i+=step)
+	{
+		final float[] dp = d16[i];
+		final int dvp = i << 4;
+		tmpOut[n++] = (float)(((vp[dvp + pos] * dp[0]) +
+			(vp[dvp + o1] * dp[1]) +
+			(vp[dvp + o2] * dp[2]) +
+			(vp[dvp + o3] * dp[3]) +
+			(vp[dvp + o4] * dp[4]) +
+			(vp[dvp + o5] * dp[5]) +
+			(vp[dvp + o6] * dp[6]) +
+			(vp[dvp + o7] * dp[7]) +
+			(vp[dvp + o8] * dp[8]) +
+			(vp[dvp + o9] * dp[9]) +
+			(vp[dvp + o10] * dp[10]) +
+			(vp[dvp + o11] * dp[11]) +
+			(vp[dvp + o12] * dp[12]) +
+			(vp[dvp + o13] * dp[13]) +
+			(vp[dvp + o14] * dp[14]) +
+			(vp[dvp + o15] * dp[15])
+			) * scalefactor);
+	}
+
+	if (buffer!=null)
+	{
+		buffer.appendSamples(channel, tmpOut, n);
+	}
+  }
+
+  /**
+   * Computes the samples with SynthesisVectors from the transposed V
+   * vectors. The terms of a sample are added in the same order as by
+   * the unrolled code, so the samples are the same. At a reduced sample
+   * rate all 32 are computed, and every 2nd or 4th is kept.
+   */
+  private void compute_pcm_samples_vectors(Obuffer buffer)
+  {
+	final float[] tmpOut = _tmpOut;
+	SynthesisVectors.window(actual_v, actual_write_pos, d_transposed, scalefactor, tmpOut);
+
+	if (down_sample != 0)
+	{
+		int n = 32 >>> down_sample;
+		for (int i=1; i<n; i++)
+			tmpOut[i] = tmpOut[i << down_sample];
+		if (buffer!=null)
+			buffer.appendSamples(channel, tmpOut, n);
+	}
+	else if (buffer!=null)
+	{
+		buffer.appendSamples(channel, tmpOut);
+	}
+  }
+
   /**
    * Calculate 32 PCM samples and put the into the Obuffer-object.
    */
 	
   public void calculate_pcm_samples(Obuffer buffer)
   {
-	compute_new_v();	
-	compute_pcm_samples(buffer);
+	if (down_sample != 0)
+	{
+		for (int p = 32 >>> down_sample; p < 32; p++)
+			samples[p] = 0.0f;
+	}
+	compute_new_v();
+	if (vectors)
+		compute_pcm_samples_vectors(buffer);
+	else if (down_sample != 0)
+		compute_pcm_samples_reduced(buffer);
+	else
+		compute_pcm_samples(buffer);
     
 	actual_write_pos = (actual_write_pos + 1) & 0xf;
 	actual_v = (actual_v == v1) ? v2 : v1;
@@ -1602,14 +1473,69 @@ private void compute_pcm_samples(Obuffer buffer)
   // as in Annex 3-B.3 of the ISO/IEC DIS 11172-3 
   // private float d[] = {0.000000000, -4.000442505};
   
-  private static float d[] = null;
+  // The tables are loaded when the class is loaded, so filters
+  // created on several threads share them safely.
+  private static final float d[] = load_d();
   
   /** 
    * d[] split into subarrays of length 16. This provides for
    * more faster access by allowing a block of 16 to be addressed
    * with constant offset. 
    **/
-  private static float d16[][] = null;	
+  private static final float d16[][] = splitArray(d, 16);
+
+  private static final boolean VECTORS_AVAILABLE = load_vectors();
+
+  /**
+   * Whether new filters use the vector API. The system property
+   * javazoom.jl.decoder.vectors=false keeps them on the scalar code.
+   */
+  private static final boolean VECTORS_DEFAULT = VECTORS_AVAILABLE
+		  && !"false".equals(vectors_property());
+
+  /**
+   * d16 transposed for the windowing with the vector API: coefficient
+   * j of sample i is at [j*32 + i].
+   */
+  private static final float d_transposed[] = VECTORS_AVAILABLE ? transpose_d() : null;
+
+  /**
+   * @return true if SynthesisVectors can be loaded and used. Without
+   *			the jdk.incubator.vector module, or before Java 17,
+   *			loading it fails or the stub says no.
+   */
+  static private boolean load_vectors()
+  {
+	  try
+	  {
+		  return SynthesisVectors.available();
+	  }
+	  catch (LinkageError ex)
+	  {
+		  return false;
+	  }
+  }
+
+  static private String vectors_property()
+  {
+	  try
+	  {
+		  return System.getProperty("javazoom.jl.decoder.vectors");
+	  }
+	  catch (SecurityException ex)
+	  {
+		  return null;
+	  }
+  }
+
+  static private float[] transpose_d()
+  {
+	  float[] transposed = new float[512];
+	  for (int i=0; i<32; i++)
+		  for (int j=0; j<16; j++)
+			  transposed[j*32 + i] = d16[i][j];
+	  return transposed;
+  }
   
   /**
    * Loads the data for the d[] from the resource SFd.ser. 
@@ -0,0 +1,58 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+/**
+ * The windowing of SynthesisFilter with SIMD instructions. This is
+ * the class for Java 6 to 16, which has no vector API, so the scalar
+ * code is always used. A multi-release jar replaces it on Java 17 and
+ * later with the class in src/main/java17, which is used when the
+ * jdk.incubator.vector module is added, e.g. with
+ * <code>java --add-modules jdk.incubator.vector</code>.
+ */
+final class SynthesisVectors
+{
+	private SynthesisVectors()
+	{
+	}
+
+	/**
+	 * @return true if <code>window()</code> can be used.
+	 */
+	static boolean available()
+	{
+		return false;
+	}
+
+	/**
+	 * Computes 32 PCM samples from the V vectors, which are stored
+	 * transposed: value k of sample i is at [k*32 + i].
+	 *
+	 * @param v				the transposed V vectors.
+	 * @param pos			the write position of the newest V vector, 0-15.
+	 * @param window		the window coefficients, transposed so that
+	 *						coefficient j of sample i is at [j*32 + i].
+	 * @param scalefactor	the factor all samples are scaled by.
+	 * @param out			receives the 32 samples.
+	 */
+	static void window(float[] v, int pos, float[] window, float scalefactor, float[] out)
+	{
+		throw new UnsupportedOperationException();
+	}
+}
@@ -46,6 +46,13 @@ final class huffcodetab
 {
   private static final int	 MXOFF=250;
   private static final int	 HTN=34;
+  private static final int	 DMASK = 1 << ((4 * 8) - 1);
+
+  /**
+   * Bits looked at at once. Longer codewords are rare, and are
+   * decoded bit by bit from where the lookup ends.
+   */
+  private static final int	 LOOKUP_BITS = 10;
   
   private char				 tablename0 = ' ';      /* string, containing table_description   */
   private char				 tablename1 = ' ';      /* string, containing table_description   */
@@ -60,42 +67,44 @@ final class huffcodetab
   private int[]   			 hlen=null;             /* pointer to array[xlen][ylen]		      */
   private int[][]			 val=null;		        /* decoder tree		    	              */
   private int 				 treelen;	            /* length of decoder tree  	              */
+  private int[]				 lookup=null;	        /* nodes reached by lookup_bits bits      */
+  private int				 lookup_bits;	        /* index bits of lookup                   */
 
-  private static int ValTab0[][] = {
+  private static final int ValTab0[][] = {
 	{0,0}	// dummy
 	};
 
-  private static int ValTab1[][] = {
+  private static final int ValTab1[][] = {
 	{2,1},{0,0},{2,1},{0,16},{2,1},{0,1},{0,17},
 	};
 	
-  private static int ValTab2[][] = {
+  private static final int ValTab2[][] = {
 	{2,1},{0,0},{4,1},{2,1},{0,16},{0,1},{2,1},{0,17},{4,1},{2,1},
 	{0,32},{0,33},{2,1},{0,18},{2,1},{0,2},{0,34},
 	};
 	
-  private static int ValTab3[][] = {
+  private static final int ValTab3[][] = {
 	{4,1},{2,1},{0,0},{0,1},{2,1},{0,17},{2,1},{0,16},{4,1},{2,1},
 	{0,32},{0,33},{2,1},{0,18},{2,1},{0,2},{0,34},
 	};
 
-  private static int ValTab4[][] = {{0,0}};	// dummy
+  private static final int ValTab4[][] = {{0,0}};	// dummy
 
-  private static int ValTab5[][] = {
+  private static final int ValTab5[][] = {
 	{2,1},{0,0},{4,1},{2,1},{0,16},{0,1},{2,1},{0,17},{8,1},{4,1},
 	{2,1},{0,32},{0,2},{2,1},{0,33},{0,18},{8,1},{4,1},{2,1},{0,34},
 	{0,48},{2,1},{0,3},{0,19},{2,1},{0,49},{2,1},{0,50},{2,1},{0,35},
 	{0,51},
 	};
 
-  private static int ValTab6[][] = {
+  private static final int ValTab6[][] = {
 	{6,1},{4,1},{2,1},{0,0},{0,16},{0,17},{6,1},{2,1},{0,1},{2,1},
 	{0,32},{0,33},{6,1},{2,1},{0,18},{2,1},{0,2},{0,34},{4,1},{2,1},
 	{0,49},{0,19},{4,1},{2,1},{0,48},{0,50},{2,1},{0,35},{2,1},{0,3},
 	{0,51},
 	};
 	
-  private static int ValTab7[][] = {
+  private static final int ValTab7[][] = {
 	{2,1},{0,0},{4,1},{2,1},{0,16},{0,1},{8,1},{2,1},{0,17},{4,1},
 	{2,1},{0,32},{0,2},{0,33},{18,1},{6,1},{2,1},{0,18},{2,1},{0,34},
 	{0,48},{4,1},{2,1},{0,49},{0,19},{4,1},{2,1},{0,3},{0,50},{2,1},
@@ -106,7 +115,7 @@ final class huffcodetab
 	{0,85},
 	};
 	
-  private static int ValTab8[][] = {
+  private static final int ValTab8[][] = {
 	{6,1},{2,1},{0,0},{2,1},{0,16},{0,1},{2,1},{0,17},{4,1},{2,1},
 	{0,33},{0,18},{14,1},{4,1},{2,1},{0,32},{0,2},{2,1},{0,34},{4,1},
 	{2,1},{0,48},{0,3},{2,1},{0,49},{0,19},{14,1},{8,1},{4,1},{2,1},
@@ -117,7 +126,7 @@ final class huffcodetab
 	{0,85},
 	};
 	
-  private static int ValTab9[][] = {
+  private static final int ValTab9[][] = {
 	{8,1},{4,1},{2,1},{0,0},{0,16},{2,1},{0,1},{0,17},{10,1},{4,1},
 	{2,1},{0,32},{0,33},{2,1},{0,18},{2,1},{0,2},{0,34},{12,1},{6,1},
 	{4,1},{2,1},{0,48},{0,3},{0,49},{2,1},{0,19},{2,1},{0,50},{0,35},
@@ -128,7 +137,7 @@ final class huffcodetab
 	{0,85},
 	};
 	
-  private static int ValTab10[][] = {
+  private static final int ValTab10[][] = {
 	{2,1},{0,0},{4,1},{2,1},{0,16},{0,1},{10,1},{2,1},{0,17},{4,1},
 	{2,1},{0,32},{0,2},{2,1},{0,33},{0,18},{28,1},{8,1},{4,1},{2,1},
 	{0,34},{0,48},{2,1},{0,49},{0,19},{8,1},{4,1},{2,1},{0,3},{0,50},
@@ -144,7 +153,7 @@ final class huffcodetab
 	{4,1},{2,1},{0,87},{0,118},{2,1},{0,103},{0,119},
 	};
 
-  private static int ValTab11[][] = {
+  private static final int ValTab11[][] = {
 	{6,1},{2,1},{0,0},{2,1},{0,16},{0,1},{8,1},{2,1},{0,17},{4,1},
 	{2,1},{0,32},{0,2},{0,18},{24,1},{8,1},{2,1},{0,33},{2,1},{0,34},
 	{2,1},{0,48},{0,3},{4,1},{2,1},{0,49},{0,19},{4,1},{2,1},{0,50},
@@ -160,7 +169,7 @@ final class huffcodetab
 	{4,1},{2,1},{0,117},{0,118},{2,1},{0,103},{0,119},
 	};
 
-  private static int ValTab12[][] = {
+  private static final int ValTab12[][] = {
 	{12,1},{4,1},{2,1},{0,16},{0,1},{2,1},{0,17},{2,1},{0,0},{2,1},
 	{0,32},{0,2},{16,1},{4,1},{2,1},{0,33},{0,18},{4,1},{2,1},{0,34},
 	{0,49},{2,1},{0,19},{2,1},{0,48},{2,1},{0,3},{0,64},{26,1},{8,1},
@@ -176,7 +185,7 @@ final class huffcodetab
 	{0,117},{0,87},{2,1},{0,118},{2,1},{0,103},{0,119},
 	};
 
-  private static int ValTab13[][] = {
+  private static final int ValTab13[][] = {
 	{2,1},{0,0},{6,1},{2,1},{0,16},{2,1},{0,1},{0,17},{28,1},{8,1},
 	{4,1},{2,1},{0,32},{0,2},{2,1},{0,33},{0,18},{8,1},{4,1},{2,1},
 	{0,34},{0,48},{2,1},{0,3},{0,49},{6,1},{2,1},{0,19},{2,1},{0,50},
@@ -231,11 +240,11 @@ final class huffcodetab
 	{0,254},
 	};
 
-  private static int ValTab14[][] = {
+  private static final int ValTab14[][] = {
 	{0,0}  // dummy
 	};
 
-  private static int ValTab15[][] = {
+  private static final int ValTab15[][] = {
 	{16,1},{6,1},{2,1},{0,0},{2,1},{0,16},{0,1},{2,1},{0,17},{4,1},
 	{2,1},{0,32},{0,2},{2,1},{0,33},{0,18},{50,1},{16,1},{6,1},{2,1},
 	{0,34},{2,1},{0,48},{0,49},{6,1},{2,1},{0,19},{2,1},{0,3},{0,64},
@@ -290,7 +299,7 @@ final class huffcodetab
 	{0,255},
 	};
 
-  private static int  ValTab16[][] = {
+  private static final int  ValTab16[][] = {
 	{2,1},{0,0},{6,1},{2,1},{0,16},{2,1},{0,1},{0,17},{42,1},{8,1},
 	{4,1},{2,1},{0,32},{0,2},{2,1},{0,33},{0,18},{10,1},{6,1},{2,1},
 	{0,34},{2,1},{0,48},{0,3},{2,1},{0,49},{0,19},{10,1},{4,1},{2,1},
@@ -345,7 +354,7 @@ final class huffcodetab
 	{0,239},
 	};
 	
-  private static int ValTab24[][] = {
+  private static final int ValTab24[][] = {
 	{60,1},{8,1},{4,1},{2,1},{0,0},{0,16},{2,1},{0,1},{0,17},{14,1},
 	{6,1},{4,1},{2,1},{0,32},{0,2},{0,33},{2,1},{0,18},{2,1},{0,34},
 	{2,1},{0,48},{0,3},{14,1},{4,1},{2,1},{0,49},{0,19},{4,1},{2,1},
@@ -400,14 +409,14 @@ final class huffcodetab
 	{0,254},{0,239},
 	};
 	
-  private static int ValTab32[][] = {
+  private static final int ValTab32[][] = {
 	{2,1},{0,0},{8,1},{4,1},{2,1},{0,8},{0,4},{2,1},{0,1},{0,2},
 	{8,1},{4,1},{2,1},{0,12},{0,10},{2,1},{0,3},{0,6},{6,1},{2,1},
 	{0,9},{2,1},{0,5},{0,7},{4,1},{2,1},{0,14},{0,13},{2,1},{0,15},
 	{0,11},
 	};
 
-  private static int ValTab33[][] = {
+  private static final int ValTab33[][] = {
 	{16,1},{8,1},{4,1},{2,1},{0,0},{0,1},{2,1},{0,2},{0,3},{4,1},
 	{2,1},{0,4},{0,5},{2,1},{0,6},{0,7},{8,1},{4,1},{2,1},{0,8},
 	{0,9},{2,1},{0,10},{0,11},{4,1},{2,1},{0,12},{0,13},{2,1},{0,14},
@@ -415,10 +424,12 @@ final class huffcodetab
 	};
 
 
-  public static huffcodetab[]  ht = null;     /* Simulate extern struct                 */
+  /**
+   * The tables, built when the class is loaded so that decoders on
+   * several threads can share them. They are not modified afterwards.
+   */
+  public static final huffcodetab[]  ht = create_tables();     /* Simulate extern struct */
 
-  private static int[] bitbuf = new int[32];
-  
   /**
    * Big Constructor : Computes all Huffman Tables.
    */
@@ -452,13 +463,6 @@ final class huffcodetab
 	// 0..31 Huffman code table 0..31
 	// 32,33 count1-tables
 
-	int dmask = 1 << ((4 * 8) - 1);
-	int hs    = 4 * 8;
-  	int level;
-  	int point = 0;
-  	int error = 1;
-  	level = dmask;
-
   	if (h.val == null) return 2;
 
      /* table 0 needs no bits */
@@ -468,54 +472,92 @@ final class huffcodetab
 	   return 0;
      }
 
-     /* Lookup in Huffman table. */
+     /* Lookup in Huffman table: the next lookup_bits bits give the
+        codeword and its length, or the node to go on from for
+        longer codewords. */
+	 int entry = h.lookup[br.hpeekbits(h.lookup_bits)];
+	 br.hskipbits(entry >>> 16);
+	 int point = entry & 0xFFFF;
+	 if (h.val[point][0] != 0)
+		point = walk(h, br, point, DMASK >>> h.lookup_bits);
 
-	 /*int bitsAvailable = 0;	 
-	 int bitIndex = 0;
-	 
-	 int bits[] = bitbuf;*/
+	 return signs(h, point, x, y, v, w, br);
+  }
+
+  /**
+   * Does the huffman-decoding one bit at a time, without the
+   * lookup table. Gives the same results as huffman_decoder().
+   */
+  static int huffman_decoder_tree(huffcodetab h, int[] x, int[] y, int[] v, int[] w, BitReserve br)
+  {
+  	if (h.val == null) return 2;
+
+     if ( h.treelen == 0)
+	 { 
+	   x[0] = y[0] = 0;
+	   return 0;
+     }
+
+	 return signs(h, walk(h, br, 0, DMASK), x, y, v, w, br);
+  }
+
+  /**
+   * Walks down the decoder tree from a node, reading one bit per
+   * level, for at most as many bits as level has shifts left.
+   * @return the leaf reached, or -1 if none was.
+   */
+  static private int walk(huffcodetab h, BitReserve br, int point, int level)
+  {
+	 int[][] val = h.val;
    	 do 
 	 {
-	    if (h.val[point][0]==0)
+	    if (val[point][0]==0)
 		{   /*end of tree*/
-		   x[0] = h.val[point][1] >>> 4;
-		   y[0] = h.val[point][1] & 0xf;
-		   error = 0;
-		   break;
+		   return point;
  	    }
-	    
 		// hget1bit() is called thousands of times, and so needs to be
 		// ultra fast. 
-		/*
-		if (bitIndex==bitsAvailable)
-		{
-			bitsAvailable = br.readBits(bits, 32);			
-			bitIndex = 0;
-		}
-		*/
-		//if (bits[bitIndex++]!=0)
-		if (br.hget1bit()!=0)
-		{
-		   while (h.val[point][1] >= MXOFF) point += h.val[point][1];
-		   point += h.val[point][1];
-	    }
-	    else
-		{
-		   while (h.val[point][0] >= MXOFF) point += h.val[point][0];
-		   point += h.val[point][0];
-	    }
+		point = follow(val, point, br.hget1bit());
 	    level >>>= 1;
 		// MDM: ht[0] is always 0;
 	 } while ((level !=0 )  || (point < 0 /*ht[0].treelen*/) );
-		
-		// put back any bits not consumed
-	/*	
-	 int unread = (bitsAvailable-bitIndex);
-		if (unread>0)
-			br.rewindNbits(unread);
-	 */
+	 return -1;
+  }
+
+  /**
+   * Returns the node a bit leads to from the given node.
+   */
+  static private int follow(int[][] val, int point, int bit)
+  {
+	 if (bit != 0)
+	 {
+	    while (val[point][1] >= MXOFF) point += val[point][1];
+	    point += val[point][1];
+	 }
+	 else
+	 {
+	    while (val[point][0] >= MXOFF) point += val[point][0];
+	    point += val[point][0];
+	 }
+	 return point;
+  }
+
+  /**
+   * Takes x and y from a leaf of the decoder tree and reads the
+   * sign and escape bits that follow the codeword. If no leaf was
+   * reached, x and y keep their values.
+   */
+  static private int signs(huffcodetab h, int point, int[] x, int[] y, int[] v, int[] w, BitReserve br)
+  {
+	  int error = 1;
+	  if (point >= 0)
+	  {
+		 x[0] = h.val[point][1] >>> 4;
+		 y[0] = h.val[point][1] & 0xf;
+		 error = 0;
+	  }
+
   	  /* Process sign encodings for quadruples tables. */
-      // System.out.println(h.tablename);
   	  if (h.tablename0 == '3' && (h.tablename1 == '2' || h.tablename1 == '3'))
 	  {
 	  	v[0] = (y[0]>>3) & 1;
@@ -555,13 +597,66 @@ final class huffcodetab
   	   return error;
   }
 
-  public static void inithuff()
+  /**
+   * Builds the lookup table of a decoder tree. Entry i holds the
+   * node reached by the bits of i, most significant first, in the
+   * low 16 bits and the number of bits taken to get there in the
+   * high bits; the walk stops early at a leaf.
+   */
+  static private int[] build_lookup(int[][] val, int bits)
   {
-	
-	if (ht!=null)
+	 int[] lookup = new int[1 << bits];
+	 for (int i = 0; i < lookup.length; i++)
+	 {
+		int point = 0;
+		int len = 0;
+		while (len < bits && val[point][0] != 0)
+		{
+		   point = follow(val, point, (i >>> (bits - 1 - len)) & 1);
+		   len++;
+		}
+		lookup[i] = (len << 16) | point;
+	 }
+	 return lookup;
+  }
+
+  /**
+   * Returns the length of the longest codeword below a node.
+   */
+  static private int depth(int[][] val, int point)
+  {
+	 if (val[point][0] == 0) return 0;
+	 return 1 + Math.max(depth(val, follow(val, point, 0)), depth(val, follow(val, point, 1)));
+  }
+
+  /**
+   * Sets up the lookup table, shared by tables with the same tree.
+   */
+  private void init_lookup(huffcodetab previous)
+  {
+	 if (treelen == 0)
 		return;
-	
-	ht = new huffcodetab[HTN];
+	 if (previous != null && previous.val == val)
+	 {
+		lookup_bits = previous.lookup_bits;
+		lookup = previous.lookup;
+		return;
+	 }
+	 lookup_bits = Math.min(LOOKUP_BITS, depth(val, 0));
+	 lookup = build_lookup(val, lookup_bits);
+  }
+
+  /**
+   * The tables are built when the class is loaded; kept for callers
+   * that initialized them explicitly.
+   */
+  public static void inithuff()
+  {
+  }
+
+  static private huffcodetab[] create_tables()
+  {
+	huffcodetab[] ht = new huffcodetab[HTN];
     ht[0] = new huffcodetab("0  ",0,0,0,0,-1,null,null,ValTab0,0);
     ht[1] = new huffcodetab("1  ",2,2,0,0,-1,null,null,ValTab1,7);
     ht[2] = new huffcodetab("2  ",3,3,0,0,-1,null,null,ValTab2,17);
@@ -596,5 +691,9 @@ final class huffcodetab
     ht[31] = new huffcodetab("31 ",16,16,13,8191,24,null,null,ValTab24,512);
     ht[32] = new huffcodetab("32 ",1,16,0,0,-1,null,null,ValTab32,31);
     ht[33] = new huffcodetab("33 ",1,16,0,0,-1,null,null,ValTab33,31);
+
+	for (int i = 0; i < HTN; i++)
+	  ht[i].init_lookup(i > 0 ? ht[i-1] : null);
+	return ht;
   }
 }
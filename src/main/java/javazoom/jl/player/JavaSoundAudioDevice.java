@@ -38,12 +38,36 @@ import javazoom.jl.decoder.JavaLayerException;
  */
 public class JavaSoundAudioDevice extends AudioDeviceBase
 {
-	private SourceDataLine	source = null;
+	private volatile SourceDataLine	source = null;
 
 	private AudioFormat		fmt = null;
 
 	private byte[]			byteBuf = new byte[4096];
 
+	private long			bytesWritten = 0;
+
+	private final SourceLineManager	lines;
+
+	private long			microsecondBase = 0;
+
+	public JavaSoundAudioDevice()
+	{
+		this(null);
+	}
+
+	/**
+	 * Creates a device that takes its line from a manager and gives it
+	 * back when it is closed, so the line stays open for the next
+	 * device playing in the same format.
+	 *
+	 * @param lines	the manager, or null to open and close a line of
+	 *				this device's own.
+	 */
+	public JavaSoundAudioDevice(SourceLineManager lines)
+	{
+		this.lines = lines;
+	}
+
 	protected void setAudioFormat(AudioFormat fmt0)
 	{
 		fmt = fmt0;
@@ -90,6 +114,12 @@ public class JavaSoundAudioDevice extends AudioDeviceBase
 	// createSource fix.
 	protected void createSource() throws JavaLayerException
     {
+		if (lines!=null)
+		{
+			source = lines.acquire(getAudioFormat());
+			microsecondBase = source.getMicrosecondPosition();
+			return;
+		}
         Throwable t = null;
         try
         {
@@ -129,10 +159,19 @@ public class JavaSoundAudioDevice extends AudioDeviceBase
 	}
 
 	protected void closeImpl()
+	{
+		closeSource();
+	}
+
+	private void closeSource()
 	{
 		if (source!=null)
 		{
-			source.close();
+			if (lines!=null)
+				lines.release(source);
+			else
+				source.close();
+			source = null;
 		}
 	}
 
@@ -144,6 +183,106 @@ public class JavaSoundAudioDevice extends AudioDeviceBase
 
 		byte[] b = toByteArray(samples, offs, len);
 		source.write(b, 0, len*2);
+		bytesWritten += len*2;
+	}
+
+	/**
+	 * Writes samples that are already in the format of the line, e.g.
+	 * from a <code>ByteSampleBuffer</code>, without converting them.
+	 * If the audio device is not open, this method does nothing.
+	 *
+	 * @param b		the samples
+	 * @param offs	the offset of the first byte to write
+	 * @param len	the number of bytes to write
+	 */
+	public void writeBytes(byte[] b, int offs, int len)
+		throws JavaLayerException
+	{
+		if (isOpen())
+		{
+			if (source==null)
+				createSource();
+			source.write(b, offs, len);
+			bytesWritten += len;
+		}
+	}
+
+	/**
+	 * Sets the format of the samples written next, so the device can be
+	 * kept open from one stream to the next. The line is kept if it
+	 * already has the format; otherwise it is drained and closed, and a
+	 * line in the new format is opened with the next write.
+	 *
+	 * @param frequency	the sample rate
+	 * @param channels	the number of channels
+	 * @return true if the line has been kept
+	 */
+	public boolean setFormat(int frequency, int channels)
+	{
+		AudioFormat f = fmt;
+		if (f!=null && f.getSampleRate()==frequency && f.getChannels()==channels)
+			return true;
+		if (source!=null)
+		{
+			source.drain();
+			closeSource();
+		}
+		fmt = new AudioFormat(frequency, 16, channels, true, false);
+		bytesWritten = 0;
+		return false;
+	}
+
+	/**
+	 * Stops the line, keeping the samples it holds. A write waits for
+	 * room in the line until the line is resumed or discarded.
+	 */
+	public void pauseLine()
+	{
+		SourceDataLine line = source;
+		if (line!=null)
+			line.stop();
+	}
+
+	/**
+	 * Starts the line again after <code>pauseLine()</code>.
+	 */
+	public void resumeLine()
+	{
+		SourceDataLine line = source;
+		if (line!=null)
+			line.start();
+	}
+
+	/**
+	 * Drops the samples the line holds, e.g. to let a write waiting on
+	 * a paused line finish before the device is closed.
+	 */
+	public void discard()
+	{
+		SourceDataLine line = source;
+		if (line!=null)
+			line.flush();
+	}
+
+	/**
+	 * @return the position in milliseconds the line reaches once the
+	 * samples written so far have been played
+	 */
+	public int getWrittenPosition()
+	{
+		AudioFormat f = fmt;
+		if (f==null)
+			return 0;
+		return (int)(bytesWritten*1000/(f.getFrameSize()*(long)f.getSampleRate()));
+	}
+
+	/**
+	 * @return true if the line takes the high byte of a sample first
+	 */
+	public boolean isBigEndian()
+	{
+		AudioFormat f = fmt;
+		return f!=null && f.isBigEndian();
 	}
 
 	protected byte[] getByteArray(int length)
@@ -180,9 +319,10 @@ public class JavaSoundAudioDevice extends AudioDeviceBase
 	public int getPosition()
 	{
 		int pos = 0;
-		if (source!=null)
+		SourceDataLine line = source;
+		if (line!=null)
 		{
-			pos = (int)(source.getMicrosecondPosition()/1000);
+			pos = (int)((line.getMicrosecondPosition()-microsecondBase)/1000);
 		}
 		return pos;
 	}
@@ -211,9 +351,10 @@ public class JavaSoundAudioDevice extends AudioDeviceBase
         // gainPercent = gibt die Lautstärke in Prozent an.  (0% = -80dB und 100% = 6dB) 
         public void setLineGain(float gain)
         {
-            if (source != null) {
+            SourceDataLine line = source;
+            if (line != null) {
                 try {
-                    FloatControl volControl = (FloatControl) source.getControl(FloatControl.Type.MASTER_GAIN);
+                    FloatControl volControl = (FloatControl) line.getControl(FloatControl.Type.MASTER_GAIN);
                     volControl.setValue(gain);
                 } 
                 catch (Exception ex) 
@@ -9,6 +9,10 @@ import javazoom.jl.decoder.*;
  * @see <a href="http://www.javazoom.net/index.shtml">Javazoom JLayer (Java MP3 Player)</a>
  */
 public class MP3Player {
+    /**
+     * Default number of frames decoded ahead of the audio device, about half a second at 44.1 kHz.
+     */
+    public static final int DEFAULT_DECODE_AHEAD = 20;
     /**
      * The MPEG audio bitstream.
      */
@@ -33,6 +37,11 @@ public class MP3Player {
      * The current frame.
      */
     protected int currentFrame = 0;
+    /**
+     * The number of frames written to the audio device. Behind <code>currentFrame</code> by the
+     * frames decoded ahead.
+     */
+    private volatile int playedFrame = 0;
     /**
      * The current position in milliseconds.
      */
@@ -41,6 +50,53 @@ public class MP3Player {
      * Listener for the playback process.
      */
     protected PlaybackListener listener;
+    /**
+     * Byte offsets of the frames read so far, used to seek.
+     */
+    protected final FrameIndex index;
+    /**
+     * Are frames read at exactly known frame numbers, so their offsets can be indexed?
+     */
+    private boolean indexing = true;
+    /**
+     * Number of frames decoded ahead of the audio device, 0 to decode on the playing thread.
+     */
+    private int decodeAhead = DEFAULT_DECODE_AHEAD;
+    /**
+     * The frames decoded ahead during the last call to <code>play</code>.
+     */
+    private volatile PcmRing ring;
+    /**
+     * The audio device if it is a <code>JavaSoundAudioDevice</code>, which frames are decoded for
+     * as bytes in the format of its line; {@code null} otherwise.
+     */
+    private final JavaSoundAudioDevice lineDevice;
+    /**
+     * Are the encoder delay and padding, and a Xing/Info header frame, left out of the output?
+     */
+    private boolean gapless = true;
+    /**
+     * The samples of each channel of the frame just decoded that are played, from
+     * <code>playFrom</code> to <code>playTo</code>.
+     */
+    private int playFrom, playTo;
+    /**
+     * Is the audio device left open for the player of the next stream once all frames are played?
+     */
+    private boolean continued = false;
+    /**
+     * Has the last call to <code>play</code> ended?
+     */
+    private boolean ended = false;
+    /**
+     * The position of the audio device in milliseconds at which this stream starts, if the
+     * device was left open by the player of the previous stream.
+     */
+    private volatile int positionBase;
+    /**
+     * Is playback paused? Frames are not written to the audio device meanwhile.
+     */
+    private volatile boolean paused = false;
 
     /**
      * Creates a new <code>Player</code> instance.
@@ -60,12 +116,44 @@ public class MP3Player {
      * @throws JavaLayerException on decode errors
      */
     public MP3Player(InputStream stream, AudioDevice device) throws JavaLayerException {
-        bitstream = new Bitstream(stream);
+        this(stream, device, null);
+    }
+
+    /**
+     * Creates a new <code>Player</code> instance.
+     *
+     * @param stream input
+     * @param device audio device
+     * @param index  frame index of the stream from an earlier player, or {@code null}
+     * @throws JavaLayerException on decode errors
+     */
+    public MP3Player(InputStream stream, AudioDevice device, FrameIndex index) throws JavaLayerException {
+        this(new Bitstream(stream), device, index);
+    }
+
+    /**
+     * Creates a new <code>Player</code> instance reading from a <code>Source</code>, e.g. a
+     * {@link javazoom.jl.decoder.MappedFileSource}. Seekable sources can also seek backwards.
+     *
+     * @param source input
+     * @param device audio device
+     * @param index  frame index of the source from an earlier player, or {@code null}
+     * @throws JavaLayerException on decode errors
+     */
+    public MP3Player(Source source, AudioDevice device, FrameIndex index) throws JavaLayerException {
+        this(new Bitstream(source), device, index);
+    }
+
+    private MP3Player(Bitstream bitstream, AudioDevice device, FrameIndex index) throws JavaLayerException {
+        this.index = index != null ? index : new FrameIndex();
+        this.bitstream = bitstream;
         if (device != null)
             audio = device;
         else
             audio = new JavaSoundAudioDevice();
+        lineDevice = audio instanceof JavaSoundAudioDevice ? (JavaSoundAudioDevice) audio : null;
         audio.open(decoder = new Decoder());
+        positionBase = lineDevice != null ? lineDevice.getWrittenPosition() : 0;
     }
 
     /**
@@ -89,7 +177,7 @@ public class MP3Player {
     public int getCurrentAudioDevicePosition() {
         AudioDevice out = audio;
         if (out != null) {
-            return out.getPosition();
+            return position(out);
         } else {
             return 0;
         }
@@ -110,11 +198,140 @@ public class MP3Player {
         this.currentPosition = currentPosition;
     }
 
+    /**
+     * @return the frame index of the stream, which can be handed to a new player to resume playback.
+     */
+    public FrameIndex getFrameIndex() {
+        return index;
+    }
+
     /**
      * @return the number of the last played MPEG audio frame.
      */
     public int getCurrentFrame() {
-        return currentFrame;
+        return playedFrame;
+    }
+
+    /**
+     * Sets how many frames are decoded ahead on a separate thread, so that stalls while reading
+     * or decoding the stream do not interrupt the audio device. Takes effect with the next call
+     * to <code>play</code>.
+     *
+     * @param frames the number of frames, or 0 to decode on the playing thread
+     */
+    public void setDecodeAhead(int frames) {
+        if (frames < 0)
+            throw new IllegalArgumentException("frames");
+        decodeAhead = frames;
+    }
+
+    public int getDecodeAhead() {
+        return decodeAhead;
+    }
+
+    /**
+     * Sets whether the encoder delay and padding given in the LAME tag of the stream, and the
+     * Xing/Info header frame, are left out, so that consecutive tracks play without a gap.
+     * Takes effect with the next frame decoded.
+     *
+     * @param gapless true to leave them out, which is the default
+     */
+    public void setGapless(boolean gapless) {
+        this.gapless = gapless;
+    }
+
+    public boolean isGapless() {
+        return gapless;
+    }
+
+    /**
+     * Sets whether the audio device is left open once all frames have been played, so the next
+     * stream can be written to it by a new player without a gap. The device is not drained then,
+     * and has to be handed to the next player or closed.
+     *
+     * @param continued true to leave the audio device open
+     * @return false if playback has already ended or been stopped
+     */
+    public synchronized boolean setContinued(boolean continued) {
+        if (ended || closeForced)
+            return false;
+        this.continued = continued;
+        return true;
+    }
+
+    /**
+     * @return true if the audio device is left open for the next stream, or has been once
+     * playback has ended
+     */
+    public synchronized boolean isContinued() {
+        return continued;
+    }
+
+    /**
+     * @return how often the audio device had to wait for a decoded frame, while playing frames
+     * decoded ahead
+     */
+    public int getUnderruns() {
+        PcmRing r = ring;
+        return r != null ? r.underruns() : 0;
+    }
+
+    /**
+     * @return the number of frames decoded but not yet written to the audio device
+     */
+    public int getFramesAhead() {
+        PcmRing r = ring;
+        return r != null ? r.available() : 0;
+    }
+
+    /**
+     * Pauses playback: no more frames are written to the audio device, and the line of a
+     * <code>JavaSoundAudioDevice</code> is stopped with the samples it holds. The decoder, the
+     * stream and the frames decoded ahead are kept, so <code>resume()</code> continues at once.
+     */
+    public void pause() {
+        paused = true;
+        if (lineDevice != null)
+            lineDevice.pauseLine();
+    }
+
+    /**
+     * Continues playback paused with <code>pause()</code>.
+     */
+    public void resume() {
+        if (!paused)
+            return;
+        paused = false;
+        // the line is started first, as a write waiting for room in it holds the lock
+        if (lineDevice != null)
+            lineDevice.resumeLine();
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Waits while playback is paused.
+     *
+     * @return false if the player has been stopped or the thread interrupted meanwhile
+     */
+    private boolean awaitResume() {
+        if (!paused)
+            return true;
+        synchronized (this) {
+            try {
+                while (paused && audio != null)
+                    wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return audio != null;
+        }
     }
 
     /**
@@ -128,6 +345,7 @@ public class MP3Player {
 
     public void play() throws JavaLayerException {
         currentFrame = 0;
+        playedFrame = 0;
         play(Integer.MAX_VALUE);
     }
 
@@ -140,30 +358,74 @@ public class MP3Player {
      * @throws JavaLayerException on decode errors
      */
     public boolean play(final int start, final int end) throws JavaLayerException {
-        boolean ret = true;
-        int offset = start;
-        while (offset-- > 0 && ret)
-            ret = skipFrame();
+        seek(start);
         currentFrame = start;
+        playedFrame = start;
+        currentPosition = start * index.ms_per_frame();
         return play(end - start);
     }
 
+    /**
+     * Positions the stream at a frame. Frames with a known offset are reached
+     * directly. Otherwise the offset is estimated from the Xing/VBRI table of
+     * contents or the CBR frame size, or as a last resort the frames after the
+     * last known one are skipped one by one. The frames just before the target
+     * are decoded without output to prime the Layer III bit reservoir.
+     *
+     * @param frame the frame to position the stream at
+     * @return true if there are more frames to decode, false otherwise.
+     * @throws JavaLayerException on decode errors
+     */
+    protected boolean seek(int frame) throws JavaLayerException {
+        int first = index.priming_frame(frame);
+        long offset = index.offset(first);
+        if (offset >= 0) {
+            if ((first > currentFrame || bitstream.isSeekable()) && bitstream.seek(offset))
+                currentFrame = first;
+        } else {
+            long estimate = index.estimate(first);
+            int last = index.size() - 1;
+            if (estimate >= 0 && bitstream.seek(estimate)) {
+                // frame numbers are approximate from here on
+                currentFrame = first;
+                indexing = false;
+            } else if (last > currentFrame && bitstream.seek(index.offset(last))) {
+                currentFrame = last;
+            }
+        }
+        boolean ret = true;
+        while (ret && currentFrame < frame)
+            ret = currentFrame < first ? skipFrame() : primeFrame();
+        return ret;
+    }
+
     /**
      * Stops this player. Any audio currently playing is stopped immediately.
-     * Input and (audio) output streams get closed.
+     * Input and (audio) output streams get closed. Waits for a frame being written
+     * to the audio device, so the device is not closed while it is written to.
      */
     public void stop() {
-        AudioDevice out = audio;
-        if (out != null) {
-            closeForced = true;
-            audio = null;
-            out.close();
-            try {
-                bitstream.close();
-            }
-            catch (BitstreamException ex) {
-                // ignore
+        // a write waiting on a paused line would never finish otherwise
+        if (paused && lineDevice != null)
+            lineDevice.discard();
+        synchronized (this) {
+            AudioDevice out = audio;
+            if (out != null) {
+                closeForced = true;
+                audio = null;
+                out.close();
+                closeBitstream();
             }
+            notifyAll();
+        }
+    }
+
+    private void closeBitstream() {
+        try {
+            bitstream.close();
+        }
+        catch (BitstreamException ex) {
+            // ignore
         }
     }
 
@@ -181,18 +443,35 @@ public class MP3Player {
             // report to listeners
             firePlaybackStartedEvent(audio);
 
-            while (frames-- > 0 && ret) {
-                ret = decodeFrame();
-                firePositionChangedEvent(audio);
+            if (decodeAhead > 0) {
+                ret = playDecodedAhead(frames);
+            } else {
+                while (frames-- > 0 && ret) {
+                    ret = decodeFrame();
+                    firePositionChangedEvent(audio);
+                }
             }
 
-            // last frame, ensure all data flushed to the audio device.
+            // last frame, ensure all data flushed to the audio device, unless it is kept open for
+            // the next stream.
             AudioDevice out = audio;
             if (out != null) {
-                out.flush();
+                boolean keep;
+                synchronized (this) {
+                    ended = true;
+                    keep = continued && !closeForced;
+                }
+                if (!keep)
+                    out.flush();
                 synchronized (this) {
                     complete = !closeForced && currentFrame > 0;
-                    stop();
+                    if (keep && complete) {
+                        audio = null;
+                        closeBitstream();
+                    } else {
+                        continued = false;
+                        stop();
+                    }
                 }
 
                 // report to listeners
@@ -207,6 +486,85 @@ public class MP3Player {
         }
     }
 
+    /**
+     * Plays a number of MPEG audio frames, decoding them on a separate thread into a ring of
+     * <code>decodeAhead</code> frames while this thread writes them to the audio device.
+     *
+     * @param frames The number of frames to play.
+     * @return true if there are more frames to decode, false otherwise.
+     * @throws Exception on decode errors
+     */
+    private boolean playDecodedAhead(final int frames) throws Exception {
+        final PcmRing ahead = new PcmRing(decodeAhead, Obuffer.OBUFFERSIZE, lineDevice != null);
+        final boolean[] more = {true};
+        final Exception[] failure = {null};
+        ring = ahead;
+        Thread producer = new Thread("decoder") {
+            @Override
+            public void run() {
+                try {
+                    boolean ret = true;
+                    for (int n = frames; n > 0 && ret; n--)
+                        ret = decodeFrame(ahead);
+                    more[0] = ret;
+                } catch (Exception ex) {
+                    failure[0] = ex;
+                } finally {
+                    ahead.finish();
+                }
+            }
+        };
+        producer.setDaemon(true);
+        producer.setPriority(Thread.currentThread().getPriority());
+        producer.start();
+        boolean drained = false;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                int slot = ahead.next();
+                if (slot < 0) {
+                    drained = true;
+                    break;
+                }
+                if (!awaitResume())
+                    break;
+                synchronized (this) {
+                    AudioDevice out = audio;
+                    if (out == null)
+                        break;
+                    if (ahead.length(slot) > 0) {
+                        if (ahead.asBytes())
+                            lineDevice.writeBytes(ahead.bytes(slot), 0, ahead.length(slot));
+                        else
+                            out.write(ahead.samples(slot), 0, ahead.length(slot));
+                    }
+                }
+                playedFrame = ahead.frame(slot);
+                currentPosition = ahead.position(slot);
+                ahead.release();
+                firePositionChangedEvent(audio);
+            }
+        } finally {
+            // wakes up the producer also if it waits for input
+            ahead.close();
+            producer.interrupt();
+            boolean interrupted = false;
+            while (producer.isAlive()) {
+                try {
+                    producer.join();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+        if (!drained)
+            return false;
+        if (failure[0] != null)
+            throw failure[0];
+        return more[0];
+    }
+
     /**
      * Decodes a single frame.
      *
@@ -214,6 +572,16 @@ public class MP3Player {
      * @throws JavaLayerException on decode errors
      */
     protected boolean decodeFrame() throws JavaLayerException {
+        return decodeFrame(null);
+    }
+
+    /**
+     * Decodes a single frame and writes it to the audio device, or to the ring if one is given.
+     *
+     * @return true if there are more frames to decode, false otherwise.
+     * @throws JavaLayerException on decode errors
+     */
+    private boolean decodeFrame(PcmRing ahead) throws JavaLayerException {
         try {
             AudioDevice out = audio;
             if (out == null)
@@ -225,19 +593,43 @@ public class MP3Player {
             Header h = bitstream.readFrame();
             if (h == null)
                 return false;
+            indexFrame(h);
 
-            // sample buffer set when decoder constructed
-            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(h, bitstream);
+            Obuffer output = decode(h);
+            if (ahead == null && !awaitResume())
+                return false;
+            boolean asBytes = output instanceof ByteSampleBuffer;
+            int unit = decoder.getOutputChannels() * (asBytes ? 2 : 1);
+            int length = asBytes ? ((ByteSampleBuffer) output).getBufferLength() : ((SampleBuffer) output).getBufferLength();
+            trim(length / unit);
+            int from = playFrom * unit;
+            int count = (playTo - playFrom) * unit;
 
-            synchronized (this) {
-                out = audio;
-                if (out != null) {
-                    out.write(output.getBuffer(), 0, output.getBufferLength());
+            if (ahead != null) {
+                int played = currentFrame + 1;
+                boolean put;
+                if (asBytes)
+                    put = ahead.put(((ByteSampleBuffer) output).getBuffer(), from, count, played, played * h.ms_per_frame());
+                else
+                    put = ahead.put(((SampleBuffer) output).getBuffer(), from, count, played, played * h.ms_per_frame());
+                if (!put)
+                    return false;
+                currentFrame++;
+            } else {
+                synchronized (this) {
+                    out = audio;
+                    if (out != null && count > 0) {
+                        if (asBytes)
+                            lineDevice.writeBytes(((ByteSampleBuffer) output).getBuffer(), from, count);
+                        else
+                            out.write(((SampleBuffer) output).getBuffer(), from, count);
+                    }
                 }
-            }
 
-            currentFrame++;
-            currentPosition = currentFrame * h.ms_per_frame();
+                currentFrame++;
+                playedFrame = currentFrame;
+                currentPosition = currentFrame * h.ms_per_frame();
+            }
             bitstream.closeFrame();
         }
         catch (RuntimeException ex) {
@@ -246,6 +638,26 @@ public class MP3Player {
         return true;
     }
 
+    /**
+     * Sets <code>playFrom</code> and <code>playTo</code> to the samples of the frame just decoded
+     * that are played. In gapless mode, samples before the start or after the end of the encoded
+     * audio given by the frame index are left out; this needs exact frame numbers.
+     *
+     * @param samples the number of samples of each channel in the frame
+     */
+    private void trim(int samples) {
+        playFrom = 0;
+        playTo = samples;
+        long start = index.gapless_start();
+        if (!gapless || !indexing || start < 0)
+            return;
+        long position = (long) (currentFrame - index.tag_frames()) * samples;
+        playFrom = (int) Math.max(0, Math.min(samples, start - position));
+        long end = index.gapless_end();
+        if (end >= 0)
+            playTo = (int) Math.max(playFrom, Math.min(samples, end - position));
+    }
+
     /**
      * skips over a single frame
      *
@@ -255,23 +667,80 @@ public class MP3Player {
     protected boolean skipFrame() throws JavaLayerException {
         Header h = bitstream.readFrame();
         if (h == null) return false;
+        indexFrame(h);
         bitstream.closeFrame();
+        currentFrame++;
         return true;
     }
 
+    /**
+     * Decodes a single frame without sending it to the audio device, to bring
+     * the decoder state up to date after a seek.
+     *
+     * @return false if there are no more frames to decode, true otherwise.
+     * @throws JavaLayerException on decode errors
+     */
+    protected boolean primeFrame() throws JavaLayerException {
+        try {
+            Header h = bitstream.readFrame();
+            if (h == null) return false;
+            indexFrame(h);
+            decode(h);
+            bitstream.closeFrame();
+            currentFrame++;
+        }
+        catch (RuntimeException ex) {
+            throw new JavaLayerException("Exception decoding audio frame", ex);
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a frame. Before the first frame, the output buffer of the decoder is set up: a
+     * <code>ByteSampleBuffer</code> in the format of the line for a
+     * <code>JavaSoundAudioDevice</code>, so the samples need not be converted again, or else the
+     * <code>SampleBuffer</code> the decoder creates. A line left open by the player of the
+     * previous stream is kept if it has the format of this stream.
+     */
+    private Obuffer decode(Header h) throws DecoderException {
+        if (lineDevice != null && decoder.getOutputFrequency() == 0) {
+            int channels = h.mode() == Header.SINGLE_CHANNEL ? 1 : 2;
+            if (!lineDevice.setFormat(h.frequency(), channels))
+                positionBase = 0;
+            decoder.setOutputBuffer(new ByteSampleBuffer(h.frequency(), channels, lineDevice.isBigEndian()));
+        }
+        return decoder.decodeFrame(h, bitstream);
+    }
+
+    private void indexFrame(Header h) {
+        if (!indexing)
+            return;
+        if (currentFrame == 0)
+            index.set_first_frame(h, bitstream.frame_pos());
+        index.add(currentFrame, bitstream.frame_pos());
+    }
+
     protected void firePlaybackStartedEvent(AudioDevice dev) {
         if (listener != null)
-            listener.playbackStarted(this, dev != null ? dev.getPosition() : -1);
+            listener.playbackStarted(this, dev != null ? position(dev) : -1);
     }
 
     protected void firePlaybackFinishedEvent(AudioDevice dev) {
         if (listener != null)
-            listener.playbackFinished(this, dev != null ? dev.getPosition() : -1);
+            listener.playbackFinished(this, dev != null ? position(dev) : -1);
     }
 
     protected void firePositionChangedEvent(AudioDevice dev) {
         if (listener != null && dev != null)
-            listener.positionChanged(this, dev.getPosition());
+            listener.positionChanged(this, position(dev));
+    }
+
+    /**
+     * @return the position of the audio device in milliseconds, counted from the start of this
+     * stream
+     */
+    private int position(AudioDevice dev) {
+        return Math.max(0, dev.getPosition() - positionBase);
     }
 
     protected void fireExceptionEvent(Exception ex) {
@@ -0,0 +1,200 @@
+package javazoom.jl.player;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ring of pre-allocated PCM frames between one decoding thread and one thread writing to the
+ * audio device. Neither side takes a lock: each side only advances its own counter, and a side
+ * that has to wait parks until the other side has made progress.
+ */
+final class PcmRing {
+
+    /**
+     * Upper bound for one park, so a missed wake-up only delays a side a little.
+     */
+    private static final long MAX_PARK_NANOS = 10000000L;
+
+    private final int depth;
+    private final short[][] samples;
+    private final byte[][] bytes;
+    private final int[] lengths;
+    private final int[] frames;
+    private final float[] positions;
+
+    /**
+     * Number of frames put so far, written by the producer only.
+     */
+    private volatile long head;
+    /**
+     * Number of frames taken so far, written by the consumer only.
+     */
+    private volatile long tail;
+    private volatile boolean finished;
+    private volatile boolean closed;
+    private volatile Thread producer;
+    private volatile Thread consumer;
+    private volatile int underruns;
+
+    /**
+     * @param depth       number of frames that can be decoded ahead
+     * @param frameLength maximum number of samples in a frame
+     * @param asBytes     true to keep the frames as bytes in the format of the audio line, false
+     *                    to keep them as 16-bit samples
+     */
+    PcmRing(int depth, int frameLength, boolean asBytes) {
+        if (depth < 1)
+            throw new IllegalArgumentException("depth");
+        this.depth = depth;
+        samples = asBytes ? null : new short[depth][frameLength];
+        bytes = asBytes ? new byte[depth][frameLength * 2] : null;
+        lengths = new int[depth];
+        frames = new int[depth];
+        positions = new float[depth];
+    }
+
+    /**
+     * Copies a decoded frame into the ring, waiting while the ring is full.
+     *
+     * @param pcm      the samples
+     * @param offset   the first sample to copy
+     * @param length   the number of samples
+     * @param frame    the number of frames played once this frame has been played
+     * @param position the position in milliseconds once this frame has been played
+     * @return false if the ring has been closed
+     */
+    boolean put(short[] pcm, int offset, int length, int frame, float position) {
+        int slot = free();
+        if (slot < 0)
+            return false;
+        System.arraycopy(pcm, offset, samples[slot], 0, length);
+        return commit(slot, length, frame, position);
+    }
+
+    /**
+     * Copies a frame of bytes into the ring, waiting while the ring is full.
+     *
+     * @param pcm      the samples in the format of the audio line
+     * @param offset   the first byte to copy
+     * @param length   the number of bytes
+     * @param frame    the number of frames played once this frame has been played
+     * @param position the position in milliseconds once this frame has been played
+     * @return false if the ring has been closed
+     */
+    boolean put(byte[] pcm, int offset, int length, int frame, float position) {
+        int slot = free();
+        if (slot < 0)
+            return false;
+        System.arraycopy(pcm, offset, bytes[slot], 0, length);
+        return commit(slot, length, frame, position);
+    }
+
+    /**
+     * Waits while the ring is full.
+     *
+     * @return the slot to put the next frame in, or -1 if the ring has been closed
+     */
+    private int free() {
+        producer = Thread.currentThread();
+        long h = head;
+        while (h - tail == depth) {
+            if (closed)
+                return -1;
+            LockSupport.parkNanos(this, MAX_PARK_NANOS);
+        }
+        return closed ? -1 : (int) (h % depth);
+    }
+
+    private boolean commit(int slot, int length, int frame, float position) {
+        lengths[slot] = length;
+        frames[slot] = frame;
+        positions[slot] = position;
+        head = head + 1;
+        LockSupport.unpark(consumer);
+        return true;
+    }
+
+    /**
+     * Marks the end of the frames; the consumer gets the frames put so far, then -1.
+     */
+    void finish() {
+        finished = true;
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Returns the slot of the next frame, waiting while the ring is empty. Waiting for a frame
+     * after the first one counts as an underrun.
+     *
+     * @return the slot, or -1 if all frames have been taken or the ring has been closed
+     */
+    int next() {
+        consumer = Thread.currentThread();
+        long t = tail;
+        if (head == t && !finished && t > 0)
+            underruns++;
+        while (head == t) {
+            if (finished && head == t || closed)
+                return -1;
+            LockSupport.parkNanos(this, MAX_PARK_NANOS);
+        }
+        return closed ? -1 : (int) (t % depth);
+    }
+
+    /**
+     * @return true if the frames are kept as bytes
+     */
+    boolean asBytes() {
+        return bytes != null;
+    }
+
+    short[] samples(int slot) {
+        return samples[slot];
+    }
+
+    byte[] bytes(int slot) {
+        return bytes[slot];
+    }
+
+    int length(int slot) {
+        return lengths[slot];
+    }
+
+    int frame(int slot) {
+        return frames[slot];
+    }
+
+    float position(int slot) {
+        return positions[slot];
+    }
+
+    /**
+     * Frees the slot returned by the last call to <code>next()</code>.
+     */
+    void release() {
+        tail = tail + 1;
+        LockSupport.unpark(producer);
+    }
+
+    /**
+     * Wakes up and stops both sides; frames not taken yet are dropped.
+     */
+    void close() {
+        closed = true;
+        LockSupport.unpark(producer);
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * @return the number of times the consumer found the ring empty while playing
+     */
+    int underruns() {
+        return underruns;
+    }
+
+    /**
+     * @return the number of frames decoded but not played yet
+     */
+    int available() {
+        return (int) (head - tail);
+    }
+}
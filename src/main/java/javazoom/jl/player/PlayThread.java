@@ -1,5 +1,6 @@
 package javazoom.jl.player;
 
+import javazoom.jl.decoder.FrameIndex;
 import javazoom.jl.decoder.JavaLayerException;
 
 import java.io.IOException;
@@ -16,20 +17,39 @@ import java.io.InputStream;
  * int lastFrame = playThread.forceStop(); // stops player, closes file stream
  * ...
  * mp3Stream = new FileInputStream(mp3File);
- * playThread = new PlayThread(mp3Stream, lastFrame);
+ * playThread = new PlayThread(mp3Stream, lastFrame, playThread.getFrameIndex());
  * playThread.start(); // reopenes stream and resumes play at last position
  * ...
+ * playThread.pausePlayback(); // keeps the decoder, the stream and the audio line
+ * ...
+ * playThread.resumePlayback(); // continues at once
+ * ...
  * playThread.forceStop();
  * </pre>
+ * Another stream can be queued while a stream plays; it follows on the same audio device without
+ * a gap once the current stream has been played completely.
  */
 public class PlayThread extends Thread {
 
-    private final InputStream inputStream;
+    private volatile InputStream inputStream;
     private final int firstFrame;
     private final AudioDevice audioDevice;
+    private volatile FrameIndex frameIndex;
+    /**
+     * The stream queued to play next, guarded by this thread.
+     */
+    private InputStream nextStream;
+    private FrameIndex nextFrameIndex;
+    private PlaybackListener nextPlaybackListener;
+    /**
+     * Has a player been started? Guarded by this thread.
+     */
+    private boolean started;
     private volatile MP3Player player;
     private volatile boolean stopForced;
+    private volatile boolean paused;
     private volatile PlaybackListener playbackListener;
+    private volatile int decodeAhead = MP3Player.DEFAULT_DECODE_AHEAD;
 
     public PlayThread() {
         this(null);
@@ -43,13 +63,37 @@ public class PlayThread extends Thread {
         this(inputStream, firstFrame, new JavaSoundAudioDevice());
     }
 
+    public PlayThread(InputStream inputStream, int firstFrame, FrameIndex frameIndex) {
+        this(inputStream, firstFrame, new JavaSoundAudioDevice(), frameIndex);
+    }
+
     public PlayThread(InputStream inputStream, int firstFrame, AudioDevice audioDevice) {
+        this(inputStream, firstFrame, audioDevice, null);
+    }
+
+    /**
+     * @param inputStream the stream to play
+     * @param firstFrame  the frame to start playing at
+     * @param audioDevice the device to play on, kept open from one queued stream to the next;
+     *                    {@code null} for a <code>JavaSoundAudioDevice</code>
+     * @param frameIndex  frame index kept from an earlier thread playing the same stream, used to seek
+     *                    to <code>firstFrame</code> directly; {@code null} to start a new index
+     */
+    public PlayThread(InputStream inputStream, int firstFrame, AudioDevice audioDevice, FrameIndex frameIndex) {
         super("player");
         setDaemon(true);
         setPriority(NORM_PRIORITY + 2);
         this.inputStream = inputStream;
         this.firstFrame = firstFrame;
-        this.audioDevice = audioDevice;
+        this.audioDevice = audioDevice != null ? audioDevice : new JavaSoundAudioDevice();
+        this.frameIndex = frameIndex != null ? frameIndex : new FrameIndex();
+    }
+
+    /**
+     * @return the frame index of the stream playing, filled in while playing
+     */
+    public FrameIndex getFrameIndex() {
+        return frameIndex;
     }
 
     public PlaybackListener getPlaybackListener() {
@@ -60,6 +104,24 @@ public class PlayThread extends Thread {
         this.playbackListener = playbackListener;
     }
 
+    /**
+     * Sets how many frames are decoded ahead of the audio device, see
+     * {@link MP3Player#setDecodeAhead(int)}. Must be called before the thread is started.
+     *
+     * @param frames the number of frames, or 0 to decode on the player thread
+     */
+    public void setDecodeAhead(int frames) {
+        decodeAhead = frames;
+    }
+
+    /**
+     * @return how often the audio device had to wait for a decoded frame
+     */
+    public int getUnderruns() {
+        MP3Player p = player;
+        return p != null ? p.getUnderruns() : 0;
+    }
+
     /**
      * Retrieves the position in milliseconds of the current audio sample being played.
      *
@@ -73,42 +135,152 @@ public class PlayThread extends Thread {
         player.setCurrentPosition(currentPosition);
     }
 
+    /**
+     * @return the number of the last frame played, or 0 if no stream is playing
+     */
+    public int getCurrentFrame() {
+        MP3Player p = player;
+        return p != null ? p.getCurrentFrame() : 0;
+    }
+
     public boolean isStopForced() {
         return stopForced;
     }
 
+    /**
+     * Pauses playback, see {@link MP3Player#pause()}. Also applies to a queued stream once it
+     * starts.
+     */
+    public synchronized void pausePlayback() {
+        paused = true;
+        if (player != null)
+            player.pause();
+    }
+
+    /**
+     * Continues playback paused with <code>pausePlayback()</code>.
+     */
+    public synchronized void resumePlayback() {
+        paused = false;
+        if (player != null)
+            player.resume();
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Queues a stream to play from its start once the current stream has been played completely.
+     * It is written to the same audio device, which is kept open in between, so there is no gap.
+     * A stream queued before is replaced and closed.
+     *
+     * @param stream           the stream to play next
+     * @param index            frame index of the stream, or {@code null} to start a new index
+     * @param playbackListener listener for the stream, or {@code null} to keep the current listener
+     * @return false if the current stream has ended or been stopped, so the stream is not queued
+     */
+    public synchronized boolean queue(InputStream stream, FrameIndex index, PlaybackListener playbackListener) {
+        if (stopForced || inputStream == null)
+            return false;
+        if (player != null ? !player.setContinued(true) : started)
+            return false;
+        closeQueued();
+        nextStream = stream;
+        nextFrameIndex = index != null ? index : new FrameIndex();
+        nextPlaybackListener = playbackListener;
+        return true;
+    }
+
+    /**
+     * Removes and closes the stream queued to play next, if any. The current stream is played to its
+     * end and the audio device drained as usual.
+     */
+    public synchronized void clearQueue() {
+        closeQueued();
+        if (player != null)
+            player.setContinued(false);
+    }
+
+    private void closeQueued() {
+        if (nextStream != null) {
+            try {
+                nextStream.close();
+            } catch (IOException ignore) {
+                // nothing to do
+            }
+        }
+        nextStream = null;
+        nextFrameIndex = null;
+        nextPlaybackListener = null;
+    }
+
     @Override
     public void run() {
         if (inputStream == null)
             return;
+        int frame = firstFrame;
+        PlaybackListener listener = playbackListener;
+        MP3Player current = null;
         try {
-            try {
-                player = new MP3Player(inputStream, audioDevice);
-                LocalPlaybackListener localPlaybackListener = new LocalPlaybackListener();
-                if (playbackListener != null)
-                    localPlaybackListener.otherListener = playbackListener;
-                player.setPlayBackListener(localPlaybackListener);
-                player.play(firstFrame, Integer.MAX_VALUE);
-            } finally {
-                inputStream.close();
+            while (true) {
+                try {
+                    current = new MP3Player(inputStream, audioDevice, frameIndex);
+                    current.setDecodeAhead(decodeAhead);
+                    LocalPlaybackListener localPlaybackListener = new LocalPlaybackListener();
+                    localPlaybackListener.otherListener = listener;
+                    current.setPlayBackListener(localPlaybackListener);
+                    synchronized (this) {
+                        if (stopForced)
+                            break;
+                        current.setContinued(nextStream != null);
+                        if (paused)
+                            current.pause();
+                        player = current;
+                        started = true;
+                    }
+                    current.play(frame, Integer.MAX_VALUE);
+                } finally {
+                    inputStream.close();
+                }
+                synchronized (this) {
+                    if (stopForced || nextStream == null || !current.isContinued())
+                        break;
+                    inputStream = nextStream;
+                    frameIndex = nextFrameIndex;
+                    if (nextPlaybackListener != null)
+                        listener = nextPlaybackListener;
+                    nextStream = null;
+                    nextFrameIndex = null;
+                    nextPlaybackListener = null;
+                    frame = 0;
+                }
             }
         } catch (JavaLayerException ex) {
-            if (playbackListener != null)
-                playbackListener.exception(player, new RuntimeException(ex.getMessage(), ex.getException()));
+            if (listener != null)
+                listener.exception(current, new RuntimeException(ex.getMessage(), ex.getException()));
             else
                 throw new RuntimeException(ex);
         } catch (Exception ex) {
-            if (playbackListener != null)
-                playbackListener.exception(player, ex);
+            if (listener != null)
+                listener.exception(current, ex);
             else
                 throw new RuntimeException(ex);
         } finally {
+            synchronized (this) {
+                closeQueued();
+            }
+            // a device kept open for a stream that is not played any more
+            audioDevice.close();
             System.out.println("thread ends");
         }
     }
 
     public int forceStop() {
         stopForced = true;
+        synchronized (this) {
+            closeQueued();
+        }
         if (inputStream != null) {
             try {
                 inputStream.close();
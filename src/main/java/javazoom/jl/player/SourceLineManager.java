@@ -0,0 +1,143 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.player;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+import javazoom.jl.decoder.JavaLayerException;
+
+/**
+ * The <code>SourceLineManager</code> class keeps an audio line open
+ * from one track to the next. Getting and opening a
+ * <code>SourceDataLine</code> takes tens to hundreds of milliseconds
+ * with some mixers, so a <code>JavaSoundAudioDevice</code> created
+ * with a manager takes its line from the manager and gives it back
+ * when it is closed, instead of opening and closing a line of its own.
+ * <p>
+ * A line given back is stopped, emptied and kept open. It is lent
+ * again to the next device playing in the same format; a device
+ * playing in another format makes the manager close it and open a
+ * new line. <code>close()</code> closes the line kept, e.g. when
+ * playback stops for good.
+ * <p>
+ * Instances are thread-safe.
+ *
+ * @see JavaSoundAudioDevice#JavaSoundAudioDevice(SourceLineManager)
+ */
+public class SourceLineManager
+{
+	private SourceDataLine	idle;
+
+	private int				opened;
+
+	public SourceLineManager()
+	{
+	}
+
+	/**
+	 * Lends a started line in the given format: the line kept open
+	 * if it has the format, or else a newly opened line.
+	 *
+	 * @throws	JavaLayerException if no line could be opened.
+	 */
+	public synchronized SourceDataLine acquire(AudioFormat format)
+		throws JavaLayerException
+	{
+		SourceDataLine line = idle;
+		idle = null;
+		if (line!=null && !(line.isOpen() && line.getFormat().matches(format)))
+		{
+			line.close();
+			line = null;
+		}
+		if (line==null)
+			line = open(format);
+		line.start();
+		return line;
+	}
+
+	/**
+	 * Takes back a line lent by <code>acquire()</code>. Samples not
+	 * played yet are dropped; drain the line before to play them.
+	 */
+	public synchronized void release(SourceDataLine line)
+	{
+		line.stop();
+		line.flush();
+		if (idle!=null && idle!=line)
+			idle.close();
+		idle = line.isOpen() ? line : null;
+	}
+
+	/**
+	 * Closes the line kept open, if any. Lines lent are not affected,
+	 * and the manager can still be used.
+	 */
+	public synchronized void close()
+	{
+		if (idle!=null)
+		{
+			idle.close();
+			idle = null;
+		}
+	}
+
+	/**
+	 * Returns the number of lines opened so far.
+	 */
+	public synchronized int getOpenedCount()
+	{
+		return opened;
+	}
+
+	protected SourceDataLine open(AudioFormat format)
+		throws JavaLayerException
+	{
+		Throwable t = null;
+		try
+		{
+			Line line = AudioSystem.getLine(new DataLine.Info(SourceDataLine.class, format));
+			if (line instanceof SourceDataLine)
+			{
+				SourceDataLine source = (SourceDataLine)line;
+				source.open(format);
+				opened++;
+				return source;
+			}
+		}
+		catch (RuntimeException ex)
+		{
+			t = ex;
+		}
+		catch (LinkageError ex)
+		{
+			t = ex;
+		}
+		catch (LineUnavailableException ex)
+		{
+			t = ex;
+		}
+		throw new JavaLayerException("cannot obtain source audio line", t);
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The windowing of SynthesisFilter with the vector API of Java 17.
+ * This class is packed into the multi-release jar for Java 17 and
+ * later; the jdk.incubator.vector module has to be added, e.g. with
+ * <code>java --add-modules jdk.incubator.vector</code>, or loading it
+ * fails and the scalar code is used.
+ *
+ * The V vectors are stored transposed, so each vector operation
+ * computes a term of several consecutive samples. The terms are added
+ * in the same order as by the scalar code, and separate multiplies and
+ * adds are used rather than fused ones, so the samples are the same.
+ */
+final class SynthesisVectors
+{
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	private SynthesisVectors()
+	{
+	}
+
+	/**
+	 * @return true if <code>window()</code> can be used, i.e. the
+	 *			vectors have 4 to 32 lanes.
+	 */
+	static boolean available()
+	{
+		int lanes = SPECIES.length();
+		return lanes >= 4 && lanes <= 32;
+	}
+
+	/**
+	 * Computes 32 PCM samples from the V vectors, which are stored
+	 * transposed: value k of sample i is at [k*32 + i].
+	 *
+	 * @param v				the transposed V vectors.
+	 * @param pos			the write position of the newest V vector, 0-15.
+	 * @param window		the window coefficients, transposed so that
+	 *						coefficient j of sample i is at [j*32 + i].
+	 * @param scalefactor	the factor all samples are scaled by.
+	 * @param out			receives the 32 samples.
+	 */
+	static void window(float[] v, int pos, float[] window, float scalefactor, float[] out)
+	{
+		final int lanes = SPECIES.length();
+		for (int i=0; i<32; i+=lanes)
+		{
+			FloatVector sum = FloatVector.fromArray(SPECIES, v, (pos << 5) + i)
+				.mul(FloatVector.fromArray(SPECIES, window, i));
+			for (int j=1; j<16; j++)
+			{
+				// coefficient j applies to the V vector written j blocks ago
+				sum = sum.add(FloatVector.fromArray(SPECIES, v, (((pos - j) & 0xf) << 5) + i)
+					.mul(FloatVector.fromArray(SPECIES, window, (j << 5) + i)));
+			}
+			sum.mul(scalefactor).intoArray(out, i);
+		}
+	}
+}
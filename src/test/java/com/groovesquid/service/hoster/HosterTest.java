@@ -0,0 +1,214 @@
+package com.groovesquid.service.hoster;
+
+import com.google.gson.Gson;
+import com.groovesquid.Groovesquid;
+import com.groovesquid.model.Artist;
+import com.groovesquid.model.FileStore;
+import com.groovesquid.model.PartialDownload;
+import com.groovesquid.model.Song;
+import com.groovesquid.model.Track;
+import com.groovesquid.service.DownloadService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.client.HttpResponseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+/**
+ * Downloads with Hoster.download from a local stand-in for a CDN that stops sending after a number of bytes, and
+ * checks that the partial download is recorded and continued with a range request only while the file is the same.
+ */
+public class HosterTest extends TestCase {
+
+    private static final int LENGTH = 256 * 1024;
+    private static final int CUT = 100000;
+    private static final String LAST_MODIFIED = "Sat, 17 Oct 2026 10:00:00 GMT";
+
+    private HttpServer server;
+    private File downloadDir;
+    private DownloadService downloadService;
+    private Hoster hoster;
+    private String url;
+
+    // what the stand-in sends
+    private volatile byte[] body;
+    private volatile String eTag;
+    private volatile int cutAfter;
+    private volatile boolean rangeNotSatisfiable;
+
+    // what the last request asked for
+    private volatile String range;
+    private volatile String ifRange;
+
+    protected void setUp() throws Exception {
+        Groovesquid.loadConfig();
+        body = body(1);
+        eTag = "\"v1\"";
+        cutAfter = -1;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/track.mp3";
+        downloadDir = File.createTempFile("hoster", "");
+        downloadDir.delete();
+        downloadDir.mkdirs();
+        downloadService = new DownloadService();
+        hoster = new Hoster();
+        hoster.setName("local");
+    }
+
+    protected void tearDown() throws Exception {
+        server.stop(0);
+        FileUtils.deleteDirectory(downloadDir);
+    }
+
+    public void testContinuesWithStrongETag() throws Exception {
+        downloadCut();
+        assertEquals(CUT, recordedBytes());
+
+        Track track = download();
+        assertEquals("bytes=" + CUT + "-", range);
+        assertEquals("\"v1\"", ifRange);
+        assertEquals(LENGTH, track.getDownloadedBytes());
+        assertTrue(Arrays.equals(body, downloaded()));
+    }
+
+    public void testContinuesWithLastModifiedForWeakETag() throws Exception {
+        eTag = "W/\"v1\"";
+        downloadCut();
+
+        download();
+        assertEquals("bytes=" + CUT + "-", range);
+        // weak entity tags cannot be used for ranges
+        assertEquals(LAST_MODIFIED, ifRange);
+        assertTrue(Arrays.equals(body, downloaded()));
+    }
+
+    public void testStartsOverWhenFileChanged() throws Exception {
+        downloadCut();
+        body = body(2);
+        eTag = "\"v2\"";
+
+        Track track = download();
+        assertEquals("\"v1\"", ifRange);
+        assertEquals(LENGTH, track.getDownloadedBytes());
+        assertTrue(Arrays.equals(body, downloaded()));
+    }
+
+    public void testForgetsPartialDownloadOnRangeNotSatisfiable() throws Exception {
+        downloadCut();
+        rangeNotSatisfiable = true;
+
+        Track track = track();
+        try {
+            hoster.download(track, downloadService.new DownloadTask(track, null, null));
+            fail("range not satisfiable");
+        } catch (HttpResponseException ex) {
+            assertEquals(416, ex.getStatusCode());
+        }
+        assertNull(track.getStore().getPartialDownload());
+    }
+
+    public void testRecordsOnlyBytesOfStoppedAttempt() throws Exception {
+        Track track = track();
+        // counted for the track by a hoster that failed before
+        track.incDownloadedBytes(12345);
+        cutAfter = CUT;
+        try {
+            hoster.download(track, downloadService.new DownloadTask(track, null, null));
+            fail("download not cut");
+        } catch (IOException expected) {
+        }
+        assertEquals(CUT, recordedBytes());
+        assertEquals(12345 + CUT, track.getDownloadedBytes());
+    }
+
+    private void downloadCut() throws Exception {
+        cutAfter = CUT;
+        Track track = track();
+        try {
+            hoster.download(track, downloadService.new DownloadTask(track, null, null));
+            fail("download not cut");
+        } catch (IOException expected) {
+        }
+        cutAfter = -1;
+    }
+
+    private Track download() throws IOException {
+        Track track = track();
+        hoster.download(track, downloadService.new DownloadTask(track, null, null));
+        return track;
+    }
+
+    private Track track() {
+        Track track = new Track(new Song(null, "track", new ArrayList<Artist>()), new FileStore("track.mp3", downloadDir));
+        track.setDownloadUrl(url);
+        return track;
+    }
+
+    private static byte[] body(long seed) {
+        byte[] body = new byte[LENGTH];
+        new Random(seed).nextBytes(body);
+        return body;
+    }
+
+    private byte[] downloaded() throws IOException {
+        return FileUtils.readFileToByteArray(new File(downloadDir, "track.mp3"));
+    }
+
+    /**
+     * @return the bytes in the resume file, rather than the length of the download file the store takes
+     */
+    private long recordedBytes() throws IOException {
+        File resumeFile = new File(downloadDir, "track.mp3.download.resume");
+        return new Gson().fromJson(FileUtils.readFileToString(resumeFile, "UTF-8"), PartialDownload.class).getBytes();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        range = exchange.getRequestHeaders().getFirst("Range");
+        ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        byte[] body = this.body;
+        String eTag = this.eTag;
+        int start = 0;
+        exchange.getResponseHeaders().add("ETag", eTag);
+        exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+        boolean same = ifRange == null || ifRange.equals(eTag) && !eTag.startsWith("W/") || ifRange.equals(LAST_MODIFIED);
+        if (range != null && same) {
+            if (rangeNotSatisfiable) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            start = Integer.parseInt(range.substring(6, range.indexOf('-')));
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (LENGTH - 1) + "/" + LENGTH);
+            exchange.sendResponseHeaders(206, LENGTH - start);
+        } else {
+            exchange.sendResponseHeaders(200, LENGTH);
+        }
+        OutputStream outputStream = exchange.getResponseBody();
+        try {
+            int end = cutAfter >= 0 ? start + cutAfter : LENGTH;
+            outputStream.write(body, start, end - start);
+            outputStream.flush();
+        } catch (IOException ignore) {
+            // the client went away
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.groovesquid.service.hoster;
+
+import com.google.gson.Gson;
+import com.groovesquid.Groovesquid;
+import com.groovesquid.model.Artist;
+import com.groovesquid.model.FileStore;
+import com.groovesquid.model.PartialDownload;
+import com.groovesquid.model.Song;
+import com.groovesquid.model.Track;
+import com.groovesquid.service.DownloadService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads a file long enough to be split with Hoster.download from a local stand-in for a CDN that sends ranges,
+ * and checks the file, how far a download that failed in one segment has come, and that it is continued from there.
+ * The segment that fails is sent once the first segment has been read, so the bytes kept are known.
+ */
+public class SegmentedTransferTest extends TestCase {
+
+    private static final int LENGTH = (int) SegmentedTransfer.MIN_LENGTH + 1024 * 1024;
+    private static final int SEGMENT_LENGTH = (LENGTH + SegmentedTransfer.MAX_SEGMENTS - 1) / SegmentedTransfer.MAX_SEGMENTS;
+    private static final int CUT = 100000;
+    private static final String ETAG = "\"v1\"";
+
+    private HttpServer server;
+    private File downloadDir;
+    private DownloadService downloadService;
+    private Hoster hoster;
+    private String url;
+    private byte[] body;
+
+    // the start of the range that is cut short after CUT bytes, or -1
+    private volatile int cutStart = -1;
+    // counted down when the response for the whole file has ended, after the client has read the first segment
+    private final CountDownLatch wholeFileSent = new CountDownLatch(1);
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+
+    protected void setUp() throws Exception {
+        Groovesquid.loadConfig();
+        body = new byte[LENGTH];
+        new Random(1).nextBytes(body);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/track.mp3";
+        downloadDir = File.createTempFile("segments", "");
+        downloadDir.delete();
+        downloadDir.mkdirs();
+        downloadService = new DownloadService();
+        hoster = new Hoster();
+        hoster.setName("local");
+    }
+
+    protected void tearDown() throws Exception {
+        server.stop(0);
+        FileUtils.deleteDirectory(downloadDir);
+    }
+
+    public void testDownloadsSameBytes() throws Exception {
+        Track track = download();
+        assertEquals(LENGTH, track.getDownloadedBytes());
+        assertTrue(Arrays.equals(body, FileUtils.readFileToByteArray(new File(downloadDir, "track.mp3"))));
+        assertTrue("segments asked for: " + ranges, ranges.contains("bytes=" + SEGMENT_LENGTH + "-" + (2 * SEGMENT_LENGTH - 1)));
+        assertFalse(new File(downloadDir, "track.mp3.download.resume").exists());
+    }
+
+    public void testKeepsStartOfFileWhenSegmentFails() throws Exception {
+        cutStart = SEGMENT_LENGTH;
+        try {
+            download();
+            fail("segment not cut");
+        } catch (IOException expected) {
+        }
+
+        File downloadFile = new File(downloadDir, "track.mp3.download");
+        PartialDownload partialDownload = new Gson().fromJson(
+                FileUtils.readFileToString(new File(downloadDir, "track.mp3.download.resume"), "UTF-8"), PartialDownload.class);
+        long bytes = partialDownload.getBytes();
+        assertTrue(partialDownload.isTracked());
+        assertEquals(SEGMENT_LENGTH + CUT, bytes);
+        assertEquals(bytes, downloadFile.length());
+        assertTrue(Arrays.equals(Arrays.copyOf(body, (int) bytes), FileUtils.readFileToByteArray(downloadFile)));
+        assertEquals(ETAG, partialDownload.getETag());
+
+        cutStart = -1;
+        ranges.clear();
+        Track track = download();
+        assertEquals("bytes=" + bytes + "-", ranges.get(0));
+        assertEquals(LENGTH, track.getDownloadedBytes());
+        assertTrue(Arrays.equals(body, FileUtils.readFileToByteArray(new File(downloadDir, "track.mp3"))));
+    }
+
+    private Track download() throws IOException {
+        Track track = new Track(new Song(null, "track", new ArrayList<Artist>()), new FileStore("track.mp3", downloadDir));
+        track.setDownloadUrl(url);
+        hoster.download(track, downloadService.new DownloadTask(track, null, null));
+        return track;
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        ranges.add(range);
+        int start = 0;
+        int end = LENGTH;
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().add("ETag", ETAG);
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(ETAG))) {
+            String[] bounds = range.substring(6).split("-");
+            start = Integer.parseInt(bounds[0]);
+            end = bounds.length > 1 ? Integer.parseInt(bounds[1]) + 1 : LENGTH;
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + LENGTH);
+            exchange.sendResponseHeaders(206, end - start);
+        } else {
+            exchange.sendResponseHeaders(200, LENGTH);
+        }
+        OutputStream outputStream = exchange.getResponseBody();
+        try {
+            if (start == cutStart) {
+                wholeFileSent.await(10, TimeUnit.SECONDS);
+                end = start + CUT;
+            }
+            outputStream.write(body, start, end - start);
+            outputStream.flush();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ignore) {
+            // the client aborts the first response after the first segment
+        } finally {
+            exchange.close();
+            if (range == null) {
+                wholeFileSent.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package javazoom.jl.converter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.MappedFileSource;
+import javazoom.jl.decoder.MpegFixtures;
+import javazoom.jl.decoder.Obuffer;
+
+import junit.framework.TestCase;
+
+/**
+ * Converts the standard fixtures in parallel and checks that the wave
+ * files are byte for byte the same as those of the sequential
+ * conversion. Short segments split a file at almost every frame, so
+ * every segment has to rebuild the bit reservoir, overlap-add and
+ * synthesis state of the frames before it. Batches must only leave
+ * complete wave files under the output name.
+ */
+public class ConverterTest
+    extends TestCase
+{
+    private static final int FRAMES = 400;
+    private static final int[] THREADS = { 1, 2, 8 };
+    private static final int[] SEGMENT_FRAMES = { 1, 512 };
+
+    private File source;
+    private File dest;
+    private File dir;
+
+    protected void setUp() throws Exception
+    {
+        source = File.createTempFile("converter", ".mp3");
+        dest = File.createTempFile("converter", ".wav");
+        dir = File.createTempFile("converter", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        source.delete();
+        dest.delete();
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            File[] nested = files[i].listFiles();
+            for (int k = 0; nested != null && k < nested.length; k++) {
+                nested[k].delete();
+            }
+            files[i].delete();
+        }
+        dir.delete();
+    }
+
+    public void testParallelMatchesSequential() throws Exception
+    {
+        // small mono VBR frames need main data from several frames back
+        String[] names = Arrays.copyOf(MpegFixtures.STANDARD, MpegFixtures.STANDARD.length + 2);
+        names[names.length - 2] = "mpeg1-l3-mono-vbr";
+        names[names.length - 1] = "mpeg1-l3-stereo-loud";
+        for (String name : names) {
+            write(source, MpegFixtures.generate(name, FRAMES));
+            Converter converter = new Converter();
+            byte[] expected = convert(converter);
+            for (int threads : THREADS) {
+                for (int segmentFrames : SEGMENT_FRAMES) {
+                    converter.setThreads(threads);
+                    converter.segmentFrames = segmentFrames;
+                    MappedFileSource in = new MappedFileSource(source);
+                    try {
+                        converter.convertParallel(in, dest.getPath(), new QuietListener(), null);
+                    } finally {
+                        in.close();
+                    }
+                    assertTrue(name + " with " + threads + " threads and segments of " + segmentFrames
+                            + " frames", Arrays.equals(expected, read(dest)));
+                }
+            }
+        }
+    }
+
+    public void testBatchReplacesPartialOutput() throws Exception
+    {
+        write(source, MpegFixtures.generate("mpeg1-l3-stereo-cbr", FRAMES));
+        Converter converter = new Converter();
+        byte[] expected = convert(converter);
+        File output = Converter.destination(source, dir);
+        File part = new File(output.getPath() + ".part");
+        // left over from a conversion that was cut short
+        write(part, new byte[100]);
+
+        assertEquals(1, converter.convertBatch(new File[] { source }, dir, new QuietListener(), null));
+        assertFalse(part.exists());
+        assertTrue(Arrays.equals(expected, read(output)));
+    }
+
+    public void testBatchFailureLeavesNoOutput() throws Exception
+    {
+        write(source, MpegFixtures.generate("mpeg1-l3-stereo-cbr", FRAMES));
+        File output = Converter.destination(source, dir);
+        File part = new File(output.getPath() + ".part");
+        // the complete output cannot replace a directory that is not empty
+        output.mkdir();
+        write(new File(output, "file"), new byte[1]);
+        output.setLastModified(0);
+
+        try {
+            new Converter().convertBatch(new File[] { source }, dir, new QuietListener(), null);
+            fail("output renamed onto a directory");
+        } catch (JavaLayerException expected) {
+        }
+        assertFalse(part.exists());
+        assertTrue(output.isDirectory());
+    }
+
+    /**
+     * Converts the source sequentially to <code>dest</code>.
+     */
+    private byte[] convert(Converter converter) throws Exception
+    {
+        MappedFileSource in = new MappedFileSource(source);
+        try {
+            converter.convert(in, dest.getPath(), new QuietListener(), null);
+        } finally {
+            in.close();
+        }
+        return read(dest);
+    }
+
+    private static void write(File file, byte[] data) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] read(File file) throws IOException
+    {
+        MappedFileSource in = new MappedFileSource(file);
+        try {
+            byte[] data = new byte[(int) in.length()];
+            int length = 0;
+            while (length < data.length) {
+                length += in.read(data, length, data.length - length);
+            }
+            return data;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Ignores progress and stops at the first exception.
+     */
+    private static class QuietListener implements Converter.ProgressListener
+    {
+        public void converterUpdate(int updateID, int param1, int param2)
+        {
+        }
+
+        public void parsedFrame(int frameNo, Header header)
+        {
+        }
+
+        public void readFrame(int frameNo, Header header)
+        {
+        }
+
+        public void decodedFrame(int frameNo, Header header, Obuffer o)
+        {
+        }
+
+        public boolean converterException(Throwable t)
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package javazoom.jl.decoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+/**
+ * Decodes the standard fixtures on several threads at once with
+ * decoders from a <code>DecoderPool</code>, and checks that every
+ * stream decodes exactly as it does with a new decoder on one thread.
+ * A decoder is reused for streams of other layers, channel modes and
+ * sample rates, so resetting it is checked as well.
+ */
+public class DecoderPoolTest
+    extends TestCase
+{
+    private static final int THREADS = 8;
+    private static final int STREAMS_PER_THREAD = 40;
+    private static final int FRAMES = 40;
+
+    private byte[][] fixtures;
+    private long[] expected;
+
+    protected void setUp() throws Exception
+    {
+        String[] names = MpegFixtures.STANDARD;
+        fixtures = new byte[names.length][];
+        expected = new long[names.length];
+        for (int i = 0; i < names.length; i++) {
+            fixtures[i] = MpegFixtures.generate(names[i], FRAMES);
+            expected[i] = decode(new Decoder(), fixtures[i]);
+        }
+    }
+
+    public void testConcurrentDecoding() throws Exception
+    {
+        final DecoderPool pool = new DecoderPool(null, THREADS / 2);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int t = 0; t < THREADS; t++) {
+                final long seed = t;
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception
+                    {
+                        return decodeStreams(pool, new Random(seed));
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                assertNull(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(pool.getIdleCount() <= THREADS / 2);
+    }
+
+    public void testReleaseResetsDecoder() throws Exception
+    {
+        DecoderPool pool = new DecoderPool(null, 1);
+        Decoder decoder = pool.acquire();
+        decode(decoder, fixtures[0]);
+        pool.release(decoder);
+        assertEquals(1, pool.getIdleCount());
+
+        assertSame(decoder, pool.acquire());
+        assertEquals(0, pool.getIdleCount());
+        for (int i = fixtures.length - 1; i >= 0; i--) {
+            assertEquals(MpegFixtures.STANDARD[i], expected[i], decode(decoder, fixtures[i]));
+            decoder.reset();
+        }
+    }
+
+    public void testReleaseDropsClientBuffer() throws Exception
+    {
+        int mono = Arrays.asList(MpegFixtures.STANDARD).indexOf("mpeg1-l3-mono-cbr");
+        int stereo = Arrays.asList(MpegFixtures.STANDARD).indexOf("mpeg1-l3-stereo-cbr");
+        DecoderPool pool = new DecoderPool(null, 1);
+        Decoder decoder = pool.acquire();
+        SampleBuffer client = new SampleBuffer(44100, 1);
+        decoder.setOutputBuffer(client);
+        assertEquals(expected[mono], decode(decoder, fixtures[mono]));
+        pool.release(decoder);
+
+        assertSame(decoder, pool.acquire());
+        assertEquals(expected[stereo], decode(decoder, fixtures[stereo]));
+        assertEquals(2, decoder.getOutputChannels());
+    }
+
+    /**
+     * @return a description of the first stream decoded wrongly, or null
+     */
+    private String decodeStreams(DecoderPool pool, Random random) throws Exception
+    {
+        for (int n = 0; n < STREAMS_PER_THREAD; n++) {
+            int i = random.nextInt(fixtures.length);
+            Decoder decoder = pool.acquire();
+            long actual = decode(decoder, fixtures[i]);
+            pool.release(decoder);
+            if (actual != expected[i]) {
+                return MpegFixtures.STANDARD[i] + " decoded differently on stream " + n;
+            }
+        }
+        return null;
+    }
+
+    private static long decode(Decoder decoder, byte[] data) throws Exception
+    {
+        Bitstream stream = MpegFixtures.open(data);
+        long hash = 17;
+        Header header;
+        while ((header = stream.readFrame()) != null) {
+            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, stream);
+            short[] samples = output.getBuffer();
+            for (int i = 0; i < output.getBufferLength(); i++) {
+                hash = 31 * hash + samples[i];
+            }
+            stream.closeFrame();
+        }
+        stream.close();
+        return hash;
+    }
+}
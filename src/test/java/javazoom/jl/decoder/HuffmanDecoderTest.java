@@ -0,0 +1,94 @@
+package javazoom.jl.decoder;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that the table-driven huffman_decoder() decodes exactly as
+ * the bit-by-bit walk of the decoder tree does.
+ */
+public class HuffmanDecoderTest
+    extends TestCase
+{
+    private static final int CODEWORDS = 20000;
+
+    protected void setUp()
+    {
+        huffcodetab.inithuff();
+    }
+
+    /**
+     * Random reserve contents, which also give long and invalid codewords.
+     */
+    public void testRandomBits()
+    {
+        for (int table = 0; table < huffcodetab.ht.length; table++) {
+            for (long seed = 0; seed < 4; seed++) {
+                assertSameDecoding(table, randomBytes(seed, 4096));
+            }
+        }
+    }
+
+    /**
+     * Runs of zero and one bits, which lead to the longest paths of the trees.
+     */
+    public void testUniformBits()
+    {
+        byte[] zeros = new byte[4096];
+        byte[] ones = new byte[4096];
+        java.util.Arrays.fill(ones, (byte) 0xFF);
+        for (int table = 0; table < huffcodetab.ht.length; table++) {
+            assertSameDecoding(table, zeros);
+            assertSameDecoding(table, ones);
+        }
+    }
+
+    /**
+     * A reserve that is only partly filled, so lookups reach past the
+     * bytes written and wrap around the end of the buffer.
+     */
+    public void testPartialReserve()
+    {
+        for (int table = 0; table < huffcodetab.ht.length; table++) {
+            assertSameDecoding(table, randomBytes(table, 1000));
+        }
+    }
+
+    private static byte[] randomBytes(long seed, int length)
+    {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static BitReserve reserve(byte[] bytes)
+    {
+        BitReserve br = new BitReserve();
+        for (int i = 0; i < bytes.length; i++) {
+            br.hputbuf(bytes[i] & 0xFF);
+        }
+        return br;
+    }
+
+    private static void assertSameDecoding(int table, byte[] bytes)
+    {
+        huffcodetab h = huffcodetab.ht[table];
+        BitReserve expectedReserve = reserve(bytes);
+        BitReserve actualReserve = reserve(bytes);
+        int[] ex = new int[1], ey = new int[1], ev = new int[1], ew = new int[1];
+        int[] ax = new int[1], ay = new int[1], av = new int[1], aw = new int[1];
+
+        for (int i = 0; i < CODEWORDS; i++) {
+            String at = "table " + table + ", codeword " + i;
+            int expectedError = huffcodetab.huffman_decoder_tree(h, ex, ey, ev, ew, expectedReserve);
+            int actualError = huffcodetab.huffman_decoder(h, ax, ay, av, aw, actualReserve);
+            assertEquals(at, expectedError, actualError);
+            assertEquals(at, ex[0], ax[0]);
+            assertEquals(at, ey[0], ay[0]);
+            assertEquals(at, ev[0], av[0]);
+            assertEquals(at, ew[0], aw[0]);
+            assertEquals(at, expectedReserve.hsstell(), actualReserve.hsstell());
+        }
+    }
+}
@@ -0,0 +1,554 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * Generates synthetic MPEG audio bitstreams for tests and benchmarks.
+ *
+ * The streams are not encoded from real audio, but every frame is
+ * syntactically legal: allocations, scalefactors, grouped sample codes
+ * and Layer III side information are drawn at random within the limits
+ * the decoder accepts, so each frame exercises the same code paths as
+ * an encoded file. Generation is deterministic for a given name.
+ *
+ * Fixtures are named <code>version-layer-mode-rate</code>, e.g.
+ * <code>mpeg1-l3-joint-vbr</code>, where version is one of
+ * <code>mpeg1</code>, <code>mpeg2</code>, <code>mpeg25</code>, layer is
+ * <code>l1</code>, <code>l2</code> or <code>l3</code>, mode is
+ * <code>stereo</code>, <code>joint</code>, <code>dual</code> or
+ * <code>mono</code> and rate is <code>cbr</code>, <code>vbr</code> or
+ * <code>loud</code>. Layer III VBR fixtures start with a Xing frame.
+ * Layer III frames leave part of their main data bytes unused and
+ * the next frame starts its main data there, through main_data_begin,
+ * as encoders use the bit reservoir.
+ * Loud fixtures are CBR at the highest bitrate; in Layer III they use
+ * only the Huffman tables with 13 linbits and a high global gain, like
+ * heavily compressed music.
+ */
+public final class MpegFixtures
+{
+	/**
+	 * A representative set of fixtures covering all versions, layers,
+	 * channel modes and CBR/VBR.
+	 */
+	public static final String[] STANDARD = {
+		"mpeg1-l1-stereo-cbr",
+		"mpeg1-l2-joint-cbr",
+		"mpeg1-l2-mono-vbr",
+		"mpeg1-l3-stereo-cbr",
+		"mpeg1-l3-joint-vbr",
+		"mpeg1-l3-mono-cbr",
+		"mpeg2-l1-mono-cbr",
+		"mpeg2-l2-dual-cbr",
+		"mpeg2-l3-joint-cbr",
+		"mpeg25-l3-stereo-vbr",
+		"mpeg25-l3-mono-cbr"
+	};
+
+	public static final int	DEFAULT_FRAMES = 200;
+
+	// Table B.2/B.1 quantization classes, mirrored from LayerIIDecoder
+	private static final int[]		ab234_grouped_codes = { 0, 27, 125, 0, 729, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+	private static final int[]		ab1_grouped_codes = { 0, 27, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+	private static final int[]		cd_grouped_codes = { 0, 27, 125, 729, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+	// Huffman tables 4 and 14 are unused by the standard.
+	private static final int[]		big_value_tables = {
+		0, 1, 2, 3, 5, 6, 7, 8, 9, 10, 11, 12, 13, 15,
+		16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31
+	};
+
+	// The tables with the most linbits, for the widest value range.
+	private static final int[]		loud_tables = { 23, 31 };
+
+	// Longest Huffman code word plus sign bits of a big_values pair, and an
+	// upper bound of the scalefactor bits preceding the Huffman data.
+	private static final int	MAX_PAIR_BITS = 19 + 2;
+	private static final int	MAX_PART2_BITS = 36 * 4 + 2 * 18;
+
+	// Largest main_data_begin, in MPEG-1 and in MPEG-2/2.5 LSF.
+	private static final int	MAX_MAIN_DATA_BEGIN = 511;
+	private static final int	MAX_MAIN_DATA_BEGIN_LSF = 255;
+
+	private static final int[]		linbits_16 = { 1, 2, 3, 4, 6, 8, 10, 13 };
+	private static final int[]		linbits_24 = { 4, 5, 6, 7, 8, 9, 11, 13 };
+
+	private final int			version;
+	private final int			layer;
+	private final int			mode;
+	private final boolean		vbr;
+	private final boolean		loud;
+	private final Random		random;
+
+	private final ByteArrayOutputStream	out = new ByteArrayOutputStream();
+	private final BitWriter		bits = new BitWriter();
+
+	// Layer III main data bytes at the end of the frames written so far
+	// that no granule uses, i.e. the bit reservoir of the next frame.
+	private int					reservoir;
+
+	private MpegFixtures(String name)
+	{
+		String[] parts = name.split("-");
+		if (parts.length != 4)
+			throw new IllegalArgumentException("Invalid fixture name: " + name);
+		if ("mpeg1".equals(parts[0])) version = Header.MPEG1;
+		else if ("mpeg2".equals(parts[0])) version = Header.MPEG2_LSF;
+		else if ("mpeg25".equals(parts[0])) version = Header.MPEG25_LSF;
+		else throw new IllegalArgumentException("Invalid version: " + parts[0]);
+		if ("l1".equals(parts[1])) layer = 1;
+		else if ("l2".equals(parts[1])) layer = 2;
+		else if ("l3".equals(parts[1])) layer = 3;
+		else throw new IllegalArgumentException("Invalid layer: " + parts[1]);
+		if ("stereo".equals(parts[2])) mode = Header.STEREO;
+		else if ("joint".equals(parts[2])) mode = Header.JOINT_STEREO;
+		else if ("dual".equals(parts[2])) mode = Header.DUAL_CHANNEL;
+		else if ("mono".equals(parts[2])) mode = Header.SINGLE_CHANNEL;
+		else throw new IllegalArgumentException("Invalid mode: " + parts[2]);
+		loud = "loud".equals(parts[3]);
+		if ("cbr".equals(parts[3]) || loud) vbr = false;
+		else if ("vbr".equals(parts[3])) vbr = true;
+		else throw new IllegalArgumentException("Invalid rate: " + parts[3]);
+		random = new Random(name.hashCode());
+	}
+
+	/**
+	 * Generates the named fixture with the default number of frames.
+	 */
+	public static byte[] generate(String name)
+	{
+		return generate(name, DEFAULT_FRAMES);
+	}
+
+	/**
+	 * Generates the named fixture.
+	 *
+	 * @param name		fixture name, see the class description.
+	 * @param frames	number of audio frames (a Xing frame is not counted).
+	 */
+	public static byte[] generate(String name, int frames)
+	{
+		MpegFixtures f = new MpegFixtures(name);
+		return f.stream(frames);
+	}
+
+	/**
+	 * Opens a bitstream over fixture data.
+	 */
+	public static Bitstream open(byte[] data)
+	{
+		return new Bitstream(new ByteArrayInputStream(data));
+	}
+
+	private int channels()
+	{
+		return (mode == Header.SINGLE_CHANNEL) ? 1 : 2;
+	}
+
+	private int cbrBitrateIndex()
+	{
+		if (loud) return 14;
+		if (version == Header.MPEG1)
+			return (layer == 1) ? 8 : (layer == 2) ? 10 : 9;	// 256, 192, 128 kbps
+		return (layer == 1) ? 10 : 8;						// 144, 64 kbps
+	}
+
+	private int nextBitrateIndex()
+	{
+		if (!vbr) return cbrBitrateIndex();
+		// keep the lowest rates out so every frame has room for audio data
+		return 5 + random.nextInt(10);
+	}
+
+	private byte[] stream(int count)
+	{
+		int[] offsets = new int[count];
+		byte[] xing = null;
+		if (vbr && layer == 3)
+		{
+			xing = frame(xingBitrateIndex(), true);
+		}
+		for (int i = 0; i < count; i++)
+		{
+			offsets[i] = out.size();
+			byte[] f = frame(nextBitrateIndex(), false);
+			out.write(f, 0, f.length);
+		}
+		byte[] audio = out.toByteArray();
+		if (xing == null)
+			return audio;
+
+		int total = xing.length + audio.length;
+		int pos = 4 + sideInfoLength();
+		pos = putTag(xing, pos, "Xing");
+		pos = putInt(xing, pos, 0x0F);			// frames, bytes, TOC, scale
+		pos = putInt(xing, pos, count);
+		pos = putInt(xing, pos, total);
+		for (int i = 0; i < 100; i++)
+		{
+			int frame = (int) ((long) i * count / 100);
+			long bytes = xing.length + offsets[frame];
+			xing[pos++] = (byte) Math.min(255, (bytes * 256) / total);
+		}
+		putInt(xing, pos, 50);
+
+		byte[] result = new byte[total];
+		System.arraycopy(xing, 0, result, 0, xing.length);
+		System.arraycopy(audio, 0, result, xing.length, audio.length);
+		return result;
+	}
+
+	private int xingBitrateIndex()
+	{
+		// large enough for the tag after the side information
+		return (version == Header.MPEG1) ? 9 : 8;
+	}
+
+	private int sideInfoLength()
+	{
+		if (version == Header.MPEG1)
+			return (mode == Header.SINGLE_CHANNEL) ? 17 : 32;
+		return (mode == Header.SINGLE_CHANNEL) ? 9 : 17;
+	}
+
+	private static int putTag(byte[] b, int pos, String tag)
+	{
+		for (int i = 0; i < tag.length(); i++)
+			b[pos++] = (byte) tag.charAt(i);
+		return pos;
+	}
+
+	private static int putInt(byte[] b, int pos, int v)
+	{
+		b[pos++] = (byte) (v >>> 24);
+		b[pos++] = (byte) (v >>> 16);
+		b[pos++] = (byte) (v >>> 8);
+		b[pos++] = (byte) v;
+		return pos;
+	}
+
+	/**
+	 * Returns the frame size in bytes including the header,
+	 * as computed by Header.calculate_framesize().
+	 */
+	private int frameBytes(int bitrateIndex)
+	{
+		int frequency = Header.frequencies[version][0];
+		if (layer == 1)
+			return ((12 * Header.bitrates[version][0][bitrateIndex]) / frequency) << 2;
+		int size = (144 * Header.bitrates[version][layer - 1][bitrateIndex]) / frequency;
+		if (version != Header.MPEG1) size >>= 1;
+		return size;
+	}
+
+	private byte[] frame(int bitrateIndex, boolean silent)
+	{
+		int size = frameBytes(bitrateIndex);
+		int modeExtension = (mode == Header.JOINT_STEREO && !silent) ? random.nextInt(4) : 0;
+
+		bits.reset(size);
+		bits.put(0x7FF, 11);
+		bits.put(version == Header.MPEG25_LSF ? 0 : version == Header.MPEG1 ? 3 : 2, 2);
+		bits.put(4 - layer, 2);
+		bits.put(1, 1);							// no CRC
+		bits.put(bitrateIndex, 4);
+		bits.put(0, 2);							// 44.1/22.05/11.025 kHz
+		bits.put(0, 1);							// no padding
+		bits.put(0, 1);
+		bits.put(mode, 2);
+		bits.put(modeExtension, 2);
+		bits.put(0, 4);							// copyright, original, emphasis
+
+		int budget = (size - 4) * 8;
+		if (!silent)
+		{
+			if (layer == 1)
+				layer1(budget, modeExtension);
+			else if (layer == 2)
+				layer2(budget, bitrateIndex, modeExtension);
+			else
+				layer3(size);
+		}
+		return bits.toByteArray();
+	}
+
+	private void layer1(int budget, int modeExtension)
+	{
+		int nch = channels();
+		int bound = (mode == Header.JOINT_STEREO) ? (modeExtension << 2) + 4 : (nch == 1 ? 0 : 32);
+		int[][] alloc = new int[2][32];
+		int[][] scf = new int[2][32];
+
+		budget -= (nch == 1) ? 32 * 4 : bound * 8 + (32 - bound) * 4;
+		for (int sb = 0; sb < 32; sb++)
+		{
+			int ch_count = (sb < bound) ? nch : 1;
+			for (int ch = 0; ch < ch_count; ch++)
+			{
+				int a = 1 + random.nextInt(14);
+				int cost = 12 * (a + 1) + ((sb >= bound && nch == 2) ? 12 : 6);
+				if (cost > budget) continue;
+				budget -= cost;
+				alloc[ch][sb] = a;
+				scf[ch][sb] = random.nextInt(63);
+			}
+		}
+
+		for (int sb = 0; sb < 32; sb++)
+			for (int ch = 0; ch < ((sb < bound) ? nch : 1); ch++)
+				bits.put(alloc[ch][sb], 4);
+		for (int sb = 0; sb < 32; sb++)
+		{
+			if (sb < bound || nch == 1)
+			{
+				for (int ch = 0; ch < nch; ch++)
+					if (alloc[ch][sb] != 0) bits.put(scf[ch][sb], 6);
+			}
+			else if (alloc[0][sb] != 0)
+			{
+				bits.put(scf[0][sb], 6);
+				bits.put(random.nextInt(63), 6);
+			}
+		}
+		for (int s = 0; s < 12; s++)
+			for (int sb = 0; sb < 32; sb++)
+				for (int ch = 0; ch < ((sb < bound) ? nch : 1); ch++)
+				{
+					int a = alloc[ch][sb];
+					if (a != 0)
+						bits.put(random.nextInt((1 << (a + 1)) - 1), a + 1);
+				}
+	}
+
+	private void layer2(int budget, int bitrateIndex, int modeExtension)
+	{
+		int nch = channels();
+		int channel_bitrate = bitrateIndex;
+		if (mode != Header.SINGLE_CHANNEL)
+			channel_bitrate = (channel_bitrate == 4) ? 1 : channel_bitrate - 4;
+		boolean cd = (channel_bitrate == 1 || channel_bitrate == 2);
+		int sblimit;
+		if (cd) sblimit = 8;					// 44.1 kHz
+		else if (channel_bitrate >= 3 && channel_bitrate <= 5) sblimit = 27;
+		else sblimit = 30;
+		int bound = (mode == Header.JOINT_STEREO) ? Math.min((modeExtension << 2) + 4, sblimit)
+				: (nch == 1 ? 0 : sblimit);
+
+		int[][] alloc = new int[2][32];
+		int[][] scfsi = new int[2][32];
+
+		for (int sb = 0; sb < sblimit; sb++)
+			budget -= allocationLength(sb, cd) * ((sb < bound) ? nch : 1);
+
+		for (int sb = 0; sb < sblimit; sb++)
+		{
+			int nbal = allocationLength(sb, cd);
+			boolean intensity = sb >= bound && nch == 2;
+			for (int ch = 0; ch < ((sb < bound) ? nch : 1); ch++)
+			{
+				int a = 1 + random.nextInt((1 << nbal) - 1);
+				int s = random.nextInt(4);
+				int nscf = (s == 0) ? 3 : (s == 2) ? 1 : 2;
+				int cost = 2 + 6 * nscf + 12 * sampleBits(sb, a, cd);
+				if (intensity) cost += 2 + 6 * nscf;
+				if (cost > budget) continue;
+				budget -= cost;
+				alloc[ch][sb] = a;
+				scfsi[ch][sb] = s;
+			}
+		}
+
+		for (int sb = 0; sb < sblimit; sb++)
+			for (int ch = 0; ch < ((sb < bound) ? nch : 1); ch++)
+				bits.put(alloc[ch][sb], allocationLength(sb, cd));
+		for (int sb = 0; sb < sblimit; sb++)
+			for (int ch = 0; ch < nch; ch++)
+				if (alloc[(sb < bound) ? ch : 0][sb] != 0)
+					bits.put(scfsi[(sb < bound) ? ch : 0][sb], 2);
+		for (int sb = 0; sb < sblimit; sb++)
+			for (int ch = 0; ch < nch; ch++)
+			{
+				int c = (sb < bound) ? ch : 0;
+				if (alloc[c][sb] == 0) continue;
+				int s = scfsi[c][sb];
+				int nscf = (s == 0) ? 3 : (s == 2) ? 1 : 2;
+				for (int i = 0; i < nscf; i++)
+					bits.put(random.nextInt(63), 6);
+			}
+		for (int gr = 0; gr < 12; gr++)
+			for (int sb = 0; sb < sblimit; sb++)
+				for (int ch = 0; ch < ((sb < bound) ? nch : 1); ch++)
+				{
+					int a = alloc[ch][sb];
+					if (a == 0) continue;
+					int length = codeLength(sb, a, cd);
+					int codes = groupedCodes(sb, a, cd);
+					if (codes != 0)
+						bits.put(random.nextInt(codes), length);
+					else
+						for (int i = 0; i < 3; i++)
+							bits.put(random.nextInt((1 << length) - 1), length);
+				}
+	}
+
+	private int allocationLength(int sb, boolean cd)
+	{
+		if (version == Header.MPEG1)
+		{
+			if (cd) return (sb <= 1) ? 4 : 3;
+			return (sb <= 10) ? 4 : (sb <= 22) ? 3 : 2;
+		}
+		return (sb <= 3) ? 4 : (sb <= 10) ? 3 : 2;
+	}
+
+	private static int codeLength(int sb, int a, boolean cd)
+	{
+		if (cd) return LayerIIDecoder.SubbandLayer2.table_cd_codelength[a];
+		if (sb <= 2) return LayerIIDecoder.SubbandLayer2.table_ab1_codelength[a];
+		if (sb <= 10) return LayerIIDecoder.SubbandLayer2.table_ab2_codelength[a];
+		if (sb <= 22) return LayerIIDecoder.SubbandLayer2.table_ab3_codelength[a];
+		return LayerIIDecoder.SubbandLayer2.table_ab4_codelength[a];
+	}
+
+	private static int groupedCodes(int sb, int a, boolean cd)
+	{
+		if (cd) return cd_grouped_codes[a];
+		if (sb <= 2) return ab1_grouped_codes[a];
+		return ab234_grouped_codes[a];
+	}
+
+	private static int linbits(int table)
+	{
+		if (table >= 24) return linbits_24[table - 24];
+		if (table >= 16) return linbits_16[table - 16];
+		return 0;
+	}
+
+	private static int sampleBits(int sb, int a, boolean cd)
+	{
+		int length = codeLength(sb, a, cd);
+		return (groupedCodes(sb, a, cd) != 0) ? length : 3 * length;
+	}
+
+	private void layer3(int size)
+	{
+		int nch = channels();
+		boolean mpeg1 = (version == Header.MPEG1);
+		int granules = mpeg1 ? 2 : 1;
+		int mainBytes = size - 4 - sideInfoLength();
+		int mainDataBegin = Math.min(reservoir, mpeg1 ? MAX_MAIN_DATA_BEGIN : MAX_MAIN_DATA_BEGIN_LSF);
+		int share = Math.min(4095, ((mainDataBegin + mainBytes) * 8) / (granules * nch));
+		int used = 0;
+
+		bits.put(mainDataBegin, mpeg1 ? 9 : 8);
+		bits.put(0, mpeg1 ? (nch == 1 ? 5 : 3) : (nch == 1 ? 1 : 2));
+		// in joint stereo both channels of a granule have the same block
+		// type, as encoders do
+		int[][] blockTypes = new int[granules][nch];
+		for (int gr = 0; gr < granules; gr++)
+			for (int ch = 0; ch < nch; ch++)
+				blockTypes[gr][ch] = (ch > 0 && mode == Header.JOINT_STEREO) ? blockTypes[gr][0]
+						: (random.nextInt(5) == 0) ? 1 + random.nextInt(3) : 0;
+		// scalefactors of short blocks cannot be shared between granules
+		if (mpeg1)
+			for (int ch = 0; ch < nch; ch++)
+				bits.put((blockTypes[0][ch] == 2 || blockTypes[1][ch] == 2) ? 0 : random.nextInt(16), 4);	// scfsi
+		for (int gr = 0; gr < granules; gr++)
+			for (int ch = 0; ch < nch; ch++)
+			{
+				int blockType = blockTypes[gr][ch];
+				boolean switched = blockType != 0;
+				int[] tables = new int[switched ? 2 : 3];
+				int widest = 0;
+				for (int i = 0; i < tables.length; i++)
+				{
+					tables[i] = loud ? loud_tables[random.nextInt(loud_tables.length)]
+							: big_value_tables[random.nextInt(big_value_tables.length)];
+					widest = Math.max(widest, MAX_PAIR_BITS + 2 * linbits(tables[i]));
+				}
+				// keep the big_values region inside part2_3_length, so random
+				// main data never reads past the granule into bytes of the
+				// next frame, which are not in the reservoir yet
+				int length = share / 2 + random.nextInt(share / 2 + 1);
+				used += length;
+				bits.put(length, 12);
+				bits.put(Math.min(288, Math.max(0, length - MAX_PART2_BITS) / widest), 9);
+				bits.put((loud ? 200 : 150) + random.nextInt(50), 8);
+				bits.put(random.nextInt(mpeg1 ? 16 : 512), mpeg1 ? 4 : 9);
+				bits.put(switched ? 1 : 0, 1);
+				if (switched)
+				{
+					bits.put(blockType, 2);
+					bits.put(0, 1);				// no mixed blocks, like common encoders
+					for (int i = 0; i < 2; i++)
+						bits.put(tables[i], 5);
+					for (int i = 0; i < 3; i++)
+						bits.put(random.nextInt(8), 3);
+				}
+				else
+				{
+					for (int i = 0; i < 3; i++)
+						bits.put(tables[i], 5);
+					bits.put(random.nextInt(16), 4);
+					bits.put(random.nextInt(8), 3);
+				}
+				// [preflag,] scalefac_scale, count1table_select; LSF short blocks
+				// keep scalefac_scale clear so 5-bit scalefactors stay in range
+				if (mpeg1) bits.put(random.nextInt(8), 3);
+				else bits.put(switched ? random.nextInt(2) : random.nextInt(4), 2);
+			}
+		for (int i = 0; i < mainBytes; i++)
+			bits.put(random.nextInt(256), 8);
+		reservoir = mainDataBegin + mainBytes - (used + 7) / 8;
+	}
+
+	/**
+	 * Big-endian bit packer for one frame.
+	 */
+	private static final class BitWriter
+	{
+		private byte[]	buf;
+		private int		bitpos;
+
+		void reset(int size)
+		{
+			buf = new byte[size];
+			bitpos = 0;
+		}
+
+		void put(int value, int n)
+		{
+			for (int i = n - 1; i >= 0; i--)
+			{
+				if (((value >>> i) & 1) != 0)
+					buf[bitpos >>> 3] |= (byte) (0x80 >>> (bitpos & 7));
+				bitpos++;
+			}
+		}
+
+		byte[] toByteArray()
+		{
+			return buf;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package javazoom.jl.decoder;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares the windowing of SynthesisFilter at 1/2 and 1/4 of the
+ * sample rate with the unrolled code at the full rate. With the upper
+ * subbands dropped, every 2nd or 4th sample is the same, as the terms
+ * of a sample are added in the same order, so the tolerance is 0 ulp.
+ */
+public class SynthesisFilterDownSampleTest
+    extends TestCase
+{
+    private static final int MAX_ULPS = 0;
+
+    /** Enough blocks for every write position to be used many times. */
+    private static final int BLOCKS = 16 * 40;
+
+    public void testRandomSamples()
+    {
+        Random random = new Random(7);
+        float[][] samples = new float[BLOCKS][32];
+        for (int i = 0; i < BLOCKS; i++) {
+            for (int sb = 0; sb < 32; sb++) {
+                samples[i][sb] = (random.nextFloat() * 2.0f - 1.0f) / (sb + 1);
+            }
+        }
+        assertSameOutput(samples, 1);
+        assertSameOutput(samples, 2);
+    }
+
+    public void testFullScaleSamples()
+    {
+        float[][] samples = new float[BLOCKS][32];
+        for (int i = 0; i < BLOCKS; i++) {
+            for (int sb = 0; sb < 32; sb++) {
+                samples[i][sb] = ((i + sb) & 1) == 0 ? 1.0f : -1.0f;
+            }
+        }
+        assertSameOutput(samples, 1);
+        assertSameOutput(samples, 2);
+    }
+
+    private static void assertSameOutput(float[][] samples, int downSample)
+    {
+        int subbands = 32 >>> downSample;
+        SynthesisFilter full = new SynthesisFilter(0, 32700.0f, null);
+        SynthesisFilter reduced = new SynthesisFilter(0, 32700.0f, null);
+        reduced.set_down_sample(downSample);
+        FloatBuffer expected = new FloatBuffer();
+        FloatBuffer actual = new FloatBuffer();
+
+        for (int i = 0; i < samples.length; i++) {
+            float[] lower = new float[32];
+            System.arraycopy(samples[i], 0, lower, 0, subbands);
+            full.input_samples(lower);
+            full.calculate_pcm_samples(expected);
+            reduced.input_samples(samples[i]);
+            reduced.calculate_pcm_samples(actual);
+            assertEquals(subbands, actual.count);
+            for (int k = 0; k < subbands; k++) {
+                float e = expected.samples[k << downSample];
+                float a = actual.samples[k];
+                int ulps = Math.abs(Float.floatToIntBits(e) - Float.floatToIntBits(a));
+                assertTrue("block " + i + ", sample " + k + ": " + e + " != " + a, ulps <= MAX_ULPS);
+            }
+        }
+    }
+
+    /**
+     * Keeps the unclipped float samples of the last block.
+     */
+    private static class FloatBuffer extends Obuffer
+    {
+        final float[] samples = new float[32];
+        int count;
+
+        public void appendSamples(int channel, float[] f)
+        {
+            appendSamples(channel, f, 32);
+        }
+
+        public void appendSamples(int channel, float[] f, int count)
+        {
+            System.arraycopy(f, 0, samples, 0, count);
+            this.count = count;
+        }
+
+        public void append(int channel, short value)
+        {
+        }
+
+        public void write_buffer(int val)
+        {
+        }
+
+        public void close()
+        {
+        }
+
+        public void clear_buffer()
+        {
+        }
+
+        public void set_stop_flag()
+        {
+        }
+    }
+}
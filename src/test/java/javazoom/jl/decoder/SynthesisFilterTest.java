@@ -0,0 +1,130 @@
+package javazoom.jl.decoder;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares the windowing of SynthesisFilter with the vector API to
+ * the unrolled scalar code, at the full sample rate and at 1/2 and 1/4
+ * of it. The vector code adds the terms of a sample in the same order,
+ * so the tolerance is 0 ulp. Without the vector API, only the fallback
+ * to the scalar code is checked.
+ */
+public class SynthesisFilterTest
+    extends TestCase
+{
+    private static final int MAX_ULPS = 0;
+
+    /** Enough blocks for every write position to be used many times. */
+    private static final int BLOCKS = 16 * 40;
+
+    public void testRandomSamples()
+    {
+        Random random = new Random(7);
+        float[][] samples = new float[BLOCKS][32];
+        for (int i = 0; i < BLOCKS; i++) {
+            for (int sb = 0; sb < 32; sb++) {
+                samples[i][sb] = (random.nextFloat() * 2.0f - 1.0f) / (sb + 1);
+            }
+        }
+        for (int downSample = 0; downSample <= 2; downSample++) {
+            assertSameOutput(samples, downSample);
+        }
+    }
+
+    public void testFullScaleSamples()
+    {
+        float[][] samples = new float[BLOCKS][32];
+        for (int i = 0; i < BLOCKS; i++) {
+            for (int sb = 0; sb < 32; sb++) {
+                samples[i][sb] = ((i + sb) & 1) == 0 ? 1.0f : -1.0f;
+            }
+        }
+        for (int downSample = 0; downSample <= 2; downSample++) {
+            assertSameOutput(samples, downSample);
+        }
+    }
+
+    public void testFallback()
+    {
+        SynthesisFilter filter = new SynthesisFilter(0, 32700.0f, null);
+        filter.set_vectors(false);
+        if (!SynthesisFilter.vectors_available()) {
+            try {
+                filter.set_vectors(true);
+                fail("vectors selected without the vector API");
+            } catch (UnsupportedOperationException expected) {
+            }
+        }
+    }
+
+    private static void assertSameOutput(float[][] samples, int downSample)
+    {
+        if (!SynthesisFilter.vectors_available()) {
+            return;
+        }
+        SynthesisFilter scalar = new SynthesisFilter(0, 32700.0f, null);
+        SynthesisFilter vectors = new SynthesisFilter(0, 32700.0f, null);
+        scalar.set_vectors(false);
+        vectors.set_vectors(true);
+        scalar.set_down_sample(downSample);
+        vectors.set_down_sample(downSample);
+        FloatBuffer expected = new FloatBuffer();
+        FloatBuffer actual = new FloatBuffer();
+
+        for (int i = 0; i < samples.length; i++) {
+            scalar.input_samples(samples[i]);
+            scalar.calculate_pcm_samples(expected);
+            vectors.input_samples(samples[i]);
+            vectors.calculate_pcm_samples(actual);
+            assertEquals(expected.count, actual.count);
+            for (int k = 0; k < actual.count; k++) {
+                float e = expected.samples[k];
+                float a = actual.samples[k];
+                int ulps = Math.abs(Float.floatToIntBits(e) - Float.floatToIntBits(a));
+                assertTrue("block " + i + ", sample " + k + ": " + e + " != " + a, ulps <= MAX_ULPS);
+            }
+        }
+    }
+
+    /**
+     * Keeps the unclipped float samples of the last block.
+     */
+    private static class FloatBuffer extends Obuffer
+    {
+        final float[] samples = new float[32];
+        int count;
+
+        public void appendSamples(int channel, float[] f)
+        {
+            appendSamples(channel, f, 32);
+        }
+
+        public void appendSamples(int channel, float[] f, int count)
+        {
+            System.arraycopy(f, 0, samples, 0, count);
+            this.count = count;
+        }
+
+        public void append(int channel, short value)
+        {
+        }
+
+        public void write_buffer(int val)
+        {
+        }
+
+        public void close()
+        {
+        }
+
+        public void clear_buffer()
+        {
+        }
+
+        public void set_stop_flag()
+        {
+        }
+    }
+}